@@ -0,0 +1,88 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * Synthetic TS3 server responses for the benchmarks.
+ */
+final class BenchmarkData
+{
+	private BenchmarkData()
+	{
+	}
+	
+	static String clientList(int rows)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 1; i <= rows; i++)
+		{
+			if (i > 1)
+			{
+				sb.append('|');
+			}
+			sb.append("clid=").append(i).append(" cid=").append(1 + i % 20).append(" client_database_id=").append(1000 + i)
+				.append(" client_nickname=User\\s").append(i).append("\\s[AFK] client_type=").append(i % 7 == 0 ? 1 : 0);
+		}
+		return sb.toString();
+	}
+	
+	static String clientDBList(int rows)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 1; i <= rows; i++)
+		{
+			if (i > 1)
+			{
+				sb.append('|');
+			}
+			sb.append("cldbid=").append(i).append(" client_unique_identifier=").append(Integer.toHexString(i * 7919)).append("abcdefghijk=")
+				.append(" client_nickname=Nick\\s").append(i).append(" client_created=1300000000 client_lastconnected=1310000000 client_totalconnections=").append(i % 100)
+				.append(" client_description client_lastip=10.0.").append(i % 256).append('.').append(i / 256 % 256);
+		}
+		return sb.toString();
+	}
+	
+	static String notifyLines(int lines)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 1; i <= lines; i++)
+		{
+			if (i % 2 == 0)
+			{
+				sb.append("notifyclientmoved ctid=").append(1 + i % 20).append(" reasonid=0 clid=").append(i).append("\n\r");
+			}
+			else
+			{
+				sb.append("notifytextmessage targetmode=3 msg=Hello\\severyone,\\sthis\\sis\\smessage\\s").append(i)
+					.append(" invokerid=").append(i).append(" invokername=User\\s").append(i).append(" invokeruid=").append(Integer.toHexString(i * 7919)).append("abcdefghijk=\n\r");
+			}
+		}
+		return sb.toString();
+	}
+	
+	static String serverInfo()
+	{
+		return "virtualserver_unique_identifier=abcdefghijklmnopqrstuvwxyz0= virtualserver_name=Benchmark\\sServer\\s\\p\\sTest"
+			+ " virtualserver_welcomemessage=Welcome\\sto\\sthe\\sserver,\\splease\\sread\\sthe\\srules\\/FAQ virtualserver_platform=Linux"
+			+ " virtualserver_version=3.0.13.8\\s[Build:\\s1500452811] virtualserver_maxclients=512 virtualserver_password"
+			+ " virtualserver_clientsonline=123 virtualserver_channelsonline=45 virtualserver_created=1300000000 virtualserver_uptime=1234567"
+			+ " virtualserver_codec_encryption_mode=0 virtualserver_hostmessage virtualserver_hostmessage_mode=0 virtualserver_filebase=files\\/virtualserver_1"
+			+ " virtualserver_default_server_group=8 virtualserver_default_channel_group=8 virtualserver_flag_password=0 virtualserver_id=1 virtualserver_port=9987";
+	}
+}
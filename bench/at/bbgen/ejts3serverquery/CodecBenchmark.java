@@ -0,0 +1,104 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing and escaping of TS3 server responses, without any I/O.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark
+{
+	@Param({ "10", "500" })
+	public int rows;
+	
+	private EJTS3ServerQuery query;
+	private String clientList;
+	private String serverInfo;
+	private String cleanText;
+	private String escapedText;
+	private String plainText;
+	
+	@Setup
+	public void setup()
+	{
+		query = new EJTS3ServerQuery();
+		clientList = BenchmarkData.clientList(rows);
+		serverInfo = BenchmarkData.serverInfo();
+		cleanText = "Welcome_to_the_server_please_read_the_rules";
+		plainText = "Welcome to the server | please read the rules\\/ \u00e4\u00f6\u00fc";
+		escapedText = query.encodeTS3String(plainText);
+	}
+	
+	@Benchmark
+	public Vector<HashMap<String, String>> parseRawData()
+	{
+		return query.parseRawData(clientList);
+	}
+	
+	@Benchmark
+	public Vector<ClientInfo> parseTypedRows()
+	{
+		return TS3Codec.parseRows(clientList, ClientInfo.ROWS);
+	}
+	
+	@Benchmark
+	public HashMap<String, String> parseLine()
+	{
+		return TS3Codec.parseLine(serverInfo);
+	}
+	
+	@Benchmark
+	public String encodeClean()
+	{
+		return query.encodeTS3String(cleanText);
+	}
+	
+	@Benchmark
+	public String encodeEscaped()
+	{
+		return query.encodeTS3String(plainText);
+	}
+	
+	@Benchmark
+	public String decodeTS3String()
+	{
+		return query.decodeTS3String(escapedText);
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Framing of large responses into lines and streamed entries, like the readers of the transports do it,
+ * and of event streams with decoded or skipped notify lines.
+ * The data is passed in chunks of the size the socket reader uses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramingBenchmark
+{
+	private static final int CHUNK_SIZE = 8192;
+	
+	@Param({ "10000" })
+	public int rows;
+	
+	private byte[] response;
+	private byte[] events;
+	
+	@Setup
+	public void setup()
+	{
+		response = (BenchmarkData.clientDBList(rows) + "\n\rerror id=0 msg=ok\n\r").getBytes(LineFramer.UTF8);
+		events = BenchmarkData.notifyLines(rows).getBytes(LineFramer.UTF8);
+	}
+	
+	@Benchmark
+	public void frameLines(final Blackhole blackhole)
+	{
+		frame(blackhole, false);
+	}
+	
+	@Benchmark
+	public void frameEntries(final Blackhole blackhole)
+	{
+		frame(blackhole, true);
+	}
+	
+	@Benchmark
+	public void decodeNotifyLines(final Blackhole blackhole)
+	{
+		frameEvents(blackhole, true);
+	}
+	
+	@Benchmark
+	public void skipNotifyLines(final Blackhole blackhole)
+	{
+		frameEvents(blackhole, false);
+	}
+	
+	@Benchmark
+	public void frameAndParseEntries(final Blackhole blackhole)
+	{
+		LineFramer framer = new LineFramer();
+		LineFramer.Sink sink = new LineFramer.Sink()
+		{
+			public boolean wantsLine(int lineType, byte[] line, int length)
+			{
+				return true;
+			}
+			
+			public void lineReceived(String line)
+			{
+				blackhole.consume(TS3Codec.parseLine(line));
+			}
+			
+			public boolean wantsEntries()
+			{
+				return true;
+			}
+			
+			public void entryReceived(String entry)
+			{
+				blackhole.consume(TS3Codec.parseLine(entry));
+			}
+		};
+		
+		for (int pos = 0; pos < response.length; pos += CHUNK_SIZE)
+		{
+			framer.frame(ByteBuffer.wrap(response, pos, Math.min(CHUNK_SIZE, response.length - pos)), sink);
+		}
+	}
+	
+	private void frame(final Blackhole blackhole, final boolean entries)
+	{
+		LineFramer framer = new LineFramer();
+		LineFramer.Sink sink = new LineFramer.Sink()
+		{
+			public boolean wantsLine(int lineType, byte[] line, int length)
+			{
+				return true;
+			}
+			
+			public void lineReceived(String line)
+			{
+				blackhole.consume(line);
+			}
+			
+			public boolean wantsEntries()
+			{
+				return entries;
+			}
+			
+			public void entryReceived(String entry)
+			{
+				blackhole.consume(entry);
+			}
+		};
+		
+		for (int pos = 0; pos < response.length; pos += CHUNK_SIZE)
+		{
+			framer.frame(ByteBuffer.wrap(response, pos, Math.min(CHUNK_SIZE, response.length - pos)), sink);
+		}
+	}
+	
+	private void frameEvents(final Blackhole blackhole, final boolean decode)
+	{
+		LineFramer framer = new LineFramer();
+		LineFramer.Sink sink = new LineFramer.Sink()
+		{
+			public boolean wantsLine(int lineType, byte[] line, int length)
+			{
+				blackhole.consume(lineType);
+				return decode;
+			}
+			
+			public void lineReceived(String line)
+			{
+				blackhole.consume(line);
+			}
+			
+			public boolean wantsEntries()
+			{
+				return false;
+			}
+			
+			public void entryReceived(String entry)
+			{
+				blackhole.consume(entry);
+			}
+		};
+		
+		for (int pos = 0; pos < events.length; pos += CHUNK_SIZE)
+		{
+			framer.frame(ByteBuffer.wrap(events, pos, Math.min(CHUNK_SIZE, events.length - pos)), sink);
+		}
+	}
+}
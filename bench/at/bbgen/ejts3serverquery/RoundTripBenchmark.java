@@ -0,0 +1,112 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end command throughput against the MockServerQueryServer over the loopback interface,
+ * with the blocking socket and the QueryReactor transport.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundTripBenchmark
+{
+	private static final int PIPELINE_DEPTH = 100;
+	
+	@Param({ "socket", "reactor" })
+	public String transport;
+	
+	private MockServerQueryServer server;
+	private QueryReactor reactor;
+	private EJTS3ServerQuery query;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		server = new MockServerQueryServer(0);
+		server.setClientCount(200);
+		server.start();
+		reactor = transport.equals("reactor") ? new QueryReactor() : null;
+		query = new EJTS3ServerQuery();
+		query.setPipelining(true);
+		query.connectTS3Query("127.0.0.1", server.getPort(), reactor);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception
+	{
+		query.closeTS3Connection();
+		if (reactor != null)
+		{
+			reactor.shutdown();
+		}
+		server.stop();
+	}
+	
+	@Benchmark
+	public HashMap<String, String> singleCommand() throws EJTS3ServerQueryException
+	{
+		return query.doCommand("whoami");
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(PIPELINE_DEPTH)
+	public void pipelinedCommands() throws Exception
+	{
+		Vector<CompletableFuture<HashMap<String, String>>> futures = new Vector<CompletableFuture<HashMap<String, String>>>();
+		for (int i = 0; i < PIPELINE_DEPTH; i++)
+		{
+			futures.addElement(query.doCommandAsync("whoami"));
+		}
+		
+		for (CompletableFuture<HashMap<String, String>> future : futures)
+		{
+			future.get();
+		}
+	}
+	
+	@Benchmark
+	public Vector<ClientInfo> clientList() throws EJTS3ServerQueryException
+	{
+		return query.getClientList(null);
+	}
+}
@@ -0,0 +1,929 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process fake of the TS3 ServerQuery interface for tests, load tests and benchmarks.<br><br>
+ * It speaks the telnet protocol of the TS3 server: the <code>TS3</code> greeting, escaped key / value responses and the <code>error id=</code> line after every response.
+ * The following commands are known: <code>login</code>, <code>logout</code>, <code>use</code>, <code>whoami</code>, <code>clientlist</code>, <code>channellist</code>,
+ * <code>clientdblist</code>, <code>serverlist</code>, <code>serverinfo</code>, <code>version</code>, <code>clientupdate</code>, <code>clientmove</code>,
+ * <code>sendtextmessage</code>, <code>servernotifyregister</code>, <code>servernotifyunregister</code> and <code>quit</code>.
+ * Other commands can be added with setCommandHandler().<br><br>
+ * The lists are synthetic and have a configurable size, every command can get an artificial latency and notify events can be sent to the connected clients at any time.<br><br>
+ * Example:<br>
+ * <code>
+ * MockServerQueryServer server = new MockServerQueryServer(0);<br>
+ * server.setClientCount(500);<br>
+ * server.setLatency("clientlist", 20);<br>
+ * server.start();<br>
+ * query.connectTS3Query("127.0.0.1", server.getPort());
+ * </code>
+ * @since 1.2
+ */
+public final class MockServerQueryServer
+{
+	/**
+	 * Answers a command which is not built in or replaces a built in command.
+	 */
+	public interface CommandHandler
+	{
+		/**
+		 * Called for every received command with this name.
+		 * @param session The connection which sent the command
+		 * @param parameters The unescaped parameters of the command, options like <code>-uid</code> are keys with an empty value.
+		 * @return The response without the <code>error</code> line, may be empty. Use MockServerQueryServer.formatEntries() to build it.
+		 * @throws CommandException to answer with an error id
+		 */
+		public String handleCommand(Session session, HashMap<String, String> parameters) throws CommandException;
+	}
+	
+	/**
+	 * Thrown by a CommandHandler to answer a command with an error.
+	 */
+	public static final class CommandException extends Exception
+	{
+		private static final long serialVersionUID = 1L;
+		private final int errorID;
+		
+		/**
+		 * @param errorID The TS3 error id, like 512 for an invalid client ID
+		 * @param message The error message
+		 */
+		public CommandException(int errorID, String message)
+		{
+			super(message);
+			this.errorID = errorID;
+		}
+		
+		/**
+		 * @return The TS3 error id
+		 */
+		public int getErrorID()
+		{
+			return errorID;
+		}
+	}
+	
+	/**
+	 * The state of one connected query client.
+	 */
+	public final class Session
+	{
+		private final Socket socket;
+		private final OutputStream out;
+		private final int clientID;
+		private volatile boolean loggedIn = false;
+		private volatile int serverID = 0;
+		private volatile int channelID = 0;
+		private volatile String nickname;
+		private final Vector<String> registeredEvents = new Vector<String>();
+		
+		Session(Socket socket) throws IOException
+		{
+			this.socket = socket;
+			this.out = socket.getOutputStream();
+			this.clientID = nextClientID.getAndIncrement();
+			this.nickname = "Unknown from " + socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+		}
+		
+		/**
+		 * @return The client ID of the query client
+		 */
+		public int getClientID()
+		{
+			return clientID;
+		}
+		
+		/**
+		 * @return The selected virtual server ID, 0 if no virtual server was selected.
+		 */
+		public int getServerID()
+		{
+			return serverID;
+		}
+		
+		/**
+		 * @return The channel ID of the query client, 0 if no virtual server was selected.
+		 */
+		public int getChannelID()
+		{
+			return channelID;
+		}
+		
+		/**
+		 * @return <code>true</code> after a successful <code>login</code>
+		 */
+		public boolean isLoggedIn()
+		{
+			return loggedIn;
+		}
+		
+		/**
+		 * @return The events registered with <code>servernotifyregister</code>, like <code>server</code> or <code>textprivate</code>.
+		 */
+		public Vector<String> getRegisteredEvents()
+		{
+			return new Vector<String>(registeredEvents);
+		}
+		
+		/**
+		 * Send a raw line to the query client.
+		 * @param line The line without line separator
+		 */
+		public void sendLine(String line)
+		{
+			write(line + "\n\r");
+		}
+		
+		/**
+		 * Close the connection, like the TS3 server does it on a ban or shutdown.
+		 */
+		public void close()
+		{
+			try
+			{
+				socket.close();
+			}
+			catch (IOException e)
+			{
+				// Already closed
+			}
+		}
+		
+		private void write(String data)
+		{
+			byte[] bytes = data.getBytes(LineFramer.UTF8);
+			bytesSent.addAndGet(bytes.length);
+			try
+			{
+				synchronized (out)
+				{
+					out.write(bytes);
+					out.flush();
+				}
+			}
+			catch (IOException e)
+			{
+				close();
+			}
+		}
+	}
+	
+	private static final String GREETING = "TS3\n\rWelcome to the TeamSpeak 3 ServerQuery interface, type \"help\" for a list of commands and \"help <command>\" for information on a specific command.\n\r";
+	private static final int CLIENTDB_MAX_DURATION = 200;
+	
+	private final int port;
+	private ServerSocket serverSocket = null;
+	private volatile boolean running = false;
+	private final CopyOnWriteArrayList<Session> sessions = new CopyOnWriteArrayList<Session>();
+	private final ConcurrentHashMap<String, CommandHandler> handlers = new ConcurrentHashMap<String, CommandHandler>();
+	private final ConcurrentHashMap<String, Long> latencies = new ConcurrentHashMap<String, Long>();
+	private final AtomicInteger nextClientID = new AtomicInteger(1000);
+	private final AtomicLong commandCount = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+	
+	private volatile long defaultLatency = 0;
+	private volatile String loginName = null;
+	private volatile String password = null;
+	private volatile int serverCount = 1;
+	private volatile int clientCount = 10;
+	private volatile int channelCount = 5;
+	private volatile int clientDBCount = 100;
+	private volatile int floodCommands = 0;
+	private volatile long floodMillis = 0;
+	
+	/**
+	 * Create a server, it does not listen before start() was called.
+	 * @param port The TCP port on the loopback interface, use 0 for any free port.
+	 */
+	public MockServerQueryServer(int port)
+	{
+		this.port = port;
+	}
+	
+	/**
+	 * Start listening on the loopback interface.
+	 * @throws IOException 
+	 */
+	public synchronized void start() throws IOException
+	{
+		if (running)
+		{
+			return;
+		}
+		
+		serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		running = true;
+		
+		Thread acceptor = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				acceptConnections();
+			}
+		}, "MockServerQueryServer-Acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+	
+	/**
+	 * Stop listening and close all connections.
+	 */
+	public synchronized void stop()
+	{
+		running = false;
+		if (serverSocket != null)
+		{
+			try
+			{
+				serverSocket.close();
+			}
+			catch (IOException e)
+			{
+				// Already closed
+			}
+		}
+		
+		for (Session session : sessions)
+		{
+			session.close();
+		}
+	}
+	
+	/**
+	 * @return The TCP port the server listens on, useful after start() with port 0.
+	 */
+	public int getPort()
+	{
+		return (serverSocket == null) ? port : serverSocket.getLocalPort();
+	}
+	
+	/**
+	 * Require a login with these credentials for all commands except <code>login</code>, <code>version</code>, <code>whoami</code> and <code>quit</code>.
+	 * @param loginName The login name or <code>null</code> to allow all commands without login (default).
+	 * @param password The password
+	 */
+	public void setLogin(String loginName, String password)
+	{
+		this.loginName = loginName;
+		this.password = password;
+	}
+	
+	/**
+	 * @param serverCount The number of virtual servers, with the IDs 1 to serverCount. Default is 1.
+	 */
+	public void setServerCount(int serverCount)
+	{
+		this.serverCount = serverCount;
+	}
+	
+	/**
+	 * @param clientCount The number of synthetic clients in <code>clientlist</code> of every virtual server, the query clients are not included. Default is 10.
+	 */
+	public void setClientCount(int clientCount)
+	{
+		this.clientCount = clientCount;
+	}
+	
+	/**
+	 * @param channelCount The number of channels in <code>channellist</code> of every virtual server. Default is 5.
+	 */
+	public void setChannelCount(int channelCount)
+	{
+		this.channelCount = channelCount;
+	}
+	
+	/**
+	 * @param clientDBCount The number of entries in the client database of every virtual server, see <code>clientdblist</code>. Default is 100.
+	 * Like the TS3 server, <code>clientdblist</code> returns at most 200 entries per command.
+	 */
+	public void setClientDBCount(int clientDBCount)
+	{
+		this.clientDBCount = clientDBCount;
+	}
+	
+	/**
+	 * Delay the response of a command.
+	 * @param command The command name, like <code>clientlist</code>
+	 * @param millis The delay in milliseconds
+	 */
+	public void setLatency(String command, long millis)
+	{
+		latencies.put(command, millis);
+	}
+	
+	/**
+	 * Delay the responses of all commands without an own latency.
+	 * @param millis The delay in milliseconds, default is 0.
+	 */
+	public void setDefaultLatency(long millis)
+	{
+		this.defaultLatency = millis;
+	}
+	
+	/**
+	 * Answer commands with error 524 (client is flooding), if a connection sends more than <code>commands</code> commands within <code>seconds</code> seconds.
+	 * @param commands The number of allowed commands, 0 to disable the flood limit (default).
+	 * @param seconds The time in seconds
+	 */
+	public void setFloodLimit(int commands, int seconds)
+	{
+		this.floodCommands = commands;
+		this.floodMillis = seconds * 1000L;
+	}
+	
+	/**
+	 * Add a command or replace a built in command.
+	 * @param command The command name
+	 * @param handler Answers the command, or <code>null</code> to remove an added handler.
+	 */
+	public void setCommandHandler(String command, CommandHandler handler)
+	{
+		if (handler == null)
+		{
+			handlers.remove(command);
+		}
+		else
+		{
+			handlers.put(command, handler);
+		}
+	}
+	
+	/**
+	 * Send a notify event to all connections which registered the event type.
+	 * @param eventType The event name, like <code>notifyclientmoved</code>
+	 * @param values The values of the event, they will be escaped.
+	 * @param registeredEvent The event registration needed to receive this event, like <code>server</code>, <code>channel</code> or <code>textprivate</code>, or <code>null</code> to send it to all connections.
+	 * @return The number of connections the event was sent to.
+	 */
+	public int sendEvent(String eventType, Map<String, String> values, String registeredEvent)
+	{
+		Vector<Map<String, String>> entries = new Vector<Map<String, String>>();
+		entries.addElement(values);
+		String line = eventType + " " + formatEntries(entries);
+		
+		int count = 0;
+		for (Session session : sessions)
+		{
+			if (registeredEvent == null || session.registeredEvents.contains(registeredEvent))
+			{
+				session.sendLine(line);
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * @return All connected query clients
+	 */
+	public Vector<Session> getSessions()
+	{
+		return new Vector<Session>(sessions);
+	}
+	
+	/**
+	 * @return The number of commands received from all connections.
+	 */
+	public long getCommandCount()
+	{
+		return commandCount.get();
+	}
+	
+	/**
+	 * @return The number of bytes sent to all connections.
+	 */
+	public long getBytesSent()
+	{
+		return bytesSent.get();
+	}
+	
+	/**
+	 * Build a response from entries, escaping all values and joining the entries with <code>|</code>.
+	 * @param entries The entries, a <code>null</code> or empty value writes only the key.
+	 * @return The response line
+	 */
+	public static String formatEntries(Vector<? extends Map<String, String>> entries)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < entries.size(); i++)
+		{
+			if (i > 0)
+			{
+				sb.append('|');
+			}
+			
+			boolean first = true;
+			for (Map.Entry<String, String> field : entries.elementAt(i).entrySet())
+			{
+				if (!first)
+				{
+					sb.append(' ');
+				}
+				first = false;
+				
+				sb.append(field.getKey());
+				if (field.getValue() != null && field.getValue().length() > 0)
+				{
+					TS3Codec.encode(field.getValue(), sb.append('='));
+				}
+			}
+		}
+		return sb.toString();
+	}
+	
+	private void acceptConnections()
+	{
+		while (running)
+		{
+			try
+			{
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				final Session session = new Session(socket);
+				sessions.add(session);
+				
+				Thread handler = new Thread(new Runnable()
+				{
+					public void run()
+					{
+						serve(session);
+					}
+				}, "MockServerQueryServer-Client-" + session.getClientID());
+				handler.setDaemon(true);
+				handler.start();
+			}
+			catch (IOException e)
+			{
+				// Server socket closed by stop()
+			}
+		}
+	}
+	
+	private void serve(final Session session)
+	{
+		final long[] floodWindow = new long[floodCommands > 0 ? floodCommands : 1];
+		final int[] floodIndex = { 0 };
+		
+		try
+		{
+			session.write(GREETING);
+			
+			InputStream in = session.socket.getInputStream();
+			LineFramer framer = new LineFramer();
+			final Vector<String> lines = new Vector<String>();
+			LineFramer.Sink sink = new LineFramer.Sink()
+			{
+				public boolean wantsLine(int lineType, byte[] line, int length)
+				{
+					return true;
+				}
+				
+				public void lineReceived(String line)
+				{
+					lines.addElement(line);
+				}
+				
+				public boolean wantsEntries()
+				{
+					return false;
+				}
+				
+				public void entryReceived(String entry)
+				{
+				}
+			};
+			
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				framer.frame(ByteBuffer.wrap(buffer, 0, read), sink);
+				for (String line : lines)
+				{
+					if (line.trim().equals("quit"))
+					{
+						session.write("error id=0 msg=ok\n\r");
+						return;
+					}
+					
+					if (isFlooding(floodWindow, floodIndex))
+					{
+						session.write("error id=524 msg=client\\sis\\sflooding extra_msg=please\\swait\\s1\\sseconds\n\r");
+						continue;
+					}
+					
+					session.write(execute(session, line.trim()));
+				}
+				lines.clear();
+			}
+		}
+		catch (SocketException e)
+		{
+			// Connection closed
+		}
+		catch (IOException e)
+		{
+			// Connection lost
+		}
+		finally
+		{
+			sessions.remove(session);
+			session.close();
+		}
+	}
+	
+	private boolean isFlooding(long[] floodWindow, int[] floodIndex)
+	{
+		int commands = floodCommands;
+		if (commands <= 0 || floodWindow.length != commands)
+		{
+			return false;
+		}
+		
+		// Ring of the times of the last commands, flooding if the oldest one is within the flood time.
+		long now = System.currentTimeMillis();
+		long oldest = floodWindow[floodIndex[0]];
+		if (oldest != 0 && now - oldest < floodMillis)
+		{
+			return true;
+		}
+		
+		floodWindow[floodIndex[0]] = now;
+		floodIndex[0] = (floodIndex[0] + 1) % commands;
+		return false;
+	}
+	
+	private String execute(Session session, String line)
+	{
+		commandCount.incrementAndGet();
+		
+		int end = line.indexOf(' ');
+		String command = (end == -1) ? line : line.substring(0, end);
+		HashMap<String, String> parameters = parseParameters((end == -1) ? "" : line.substring(end + 1));
+		
+		Long latency = latencies.get(command);
+		long delay = (latency != null) ? latency : defaultLatency;
+		if (delay > 0)
+		{
+			try
+			{
+				Thread.sleep(delay);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		String response;
+		try
+		{
+			CommandHandler handler = handlers.get(command);
+			if (handler != null)
+			{
+				response = handler.handleCommand(session, parameters);
+			}
+			else
+			{
+				response = executeBuiltIn(session, command, parameters);
+			}
+		}
+		catch (CommandException e)
+		{
+			return "error id=" + e.getErrorID() + " msg=" + TS3Codec.encode(e.getMessage()) + "\n\r";
+		}
+		
+		if (response == null || response.length() == 0)
+		{
+			return "error id=0 msg=ok\n\r";
+		}
+		return response + "\n\rerror id=0 msg=ok\n\r";
+	}
+	
+	/**
+	 * Parse the parameters of a command. Entries separated by <code>|</code> are merged, their values are joined with <code>|</code>.
+	 */
+	private HashMap<String, String> parseParameters(String data)
+	{
+		HashMap<String, String> parameters = new HashMap<String, String>();
+		if (data.length() == 0)
+		{
+			return parameters;
+		}
+		
+		for (HashMap<String, String> entry : TS3Codec.parseRows(data))
+		{
+			for (Map.Entry<String, String> field : entry.entrySet())
+			{
+				String old = parameters.get(field.getKey());
+				parameters.put(field.getKey(), (old == null) ? field.getValue() : old + "|" + field.getValue());
+			}
+		}
+		return parameters;
+	}
+	
+	private String executeBuiltIn(Session session, String command, HashMap<String, String> parameters) throws CommandException
+	{
+		if (command.equals("login"))
+		{
+			String name = parameters.get("client_login_name");
+			String pass = parameters.get("client_login_password");
+			if (name == null)
+			{
+				// Short form: login name password
+				for (String key : parameters.keySet())
+				{
+					if (name == null)
+					{
+						name = key;
+					}
+					else
+					{
+						pass = key;
+					}
+				}
+			}
+			
+			if (loginName != null && !(loginName.equals(name) && password != null && password.equals(pass)))
+				throw new CommandException(520, "invalid loginname or password");
+			
+			session.loggedIn = true;
+			return "";
+		}
+		
+		if (command.equals("version"))
+		{
+			return "version=3.0.0 build=0 platform=MockServerQueryServer";
+		}
+		
+		if (command.equals("whoami"))
+		{
+			return "virtualserver_status=" + (session.serverID > 0 ? "online" : "unknown") + " virtualserver_id=" + session.serverID
+				+ " virtualserver_unique_identifier virtualserver_port=" + (session.serverID > 0 ? 9986 + session.serverID : 0)
+				+ " client_id=" + (session.serverID > 0 ? session.clientID : 0) + " client_channel_id=" + session.channelID
+				+ " client_nickname=" + TS3Codec.encode(session.nickname) + " client_database_id=1 client_login_name client_unique_identifier client_origin_server_id=0";
+		}
+		
+		if (loginName != null && !session.loggedIn)
+			throw new CommandException(518, "not logged in");
+		
+		if (command.equals("logout"))
+		{
+			session.loggedIn = false;
+			return "";
+		}
+		
+		if (command.equals("use"))
+		{
+			int serverID = getInt(parameters, "sid", -1);
+			if (serverID == -1 && parameters.containsKey("port"))
+			{
+				serverID = getInt(parameters, "port", 0) - 9986;
+			}
+			if (serverID == -1)
+			{
+				// Short form: use 1
+				for (String key : parameters.keySet())
+				{
+					serverID = QueryEntry.parseInt(key, -1);
+				}
+			}
+			
+			if (serverID < 1 || serverID > serverCount)
+				throw new CommandException(1024, "invalid serverID");
+			
+			session.serverID = serverID;
+			session.channelID = 1;
+			session.registeredEvents.clear();
+			return "";
+		}
+		
+		if (command.equals("serverlist"))
+		{
+			Vector<Map<String, String>> entries = new Vector<Map<String, String>>();
+			for (int i = 1; i <= serverCount; i++)
+			{
+				LinkedHashMap<String, String> entry = new LinkedHashMap<String, String>();
+				entry.put("virtualserver_id", Integer.toString(i));
+				entry.put("virtualserver_port", Integer.toString(9986 + i));
+				entry.put("virtualserver_status", "online");
+				entry.put("virtualserver_clientsonline", Integer.toString(clientCount));
+				entry.put("virtualserver_queryclientsonline", Integer.toString(countQueryClients(i)));
+				entry.put("virtualserver_maxclients", "512");
+				entry.put("virtualserver_uptime", "123456");
+				entry.put("virtualserver_name", "Mock Server " + i);
+				entry.put("virtualserver_autostart", "1");
+				entries.addElement(entry);
+			}
+			return formatEntries(entries);
+		}
+		
+		if (session.serverID == 0)
+			throw new CommandException(1280, "no virtual server selected");
+		
+		if (command.equals("serverinfo"))
+		{
+			LinkedHashMap<String, String> entry = new LinkedHashMap<String, String>();
+			entry.put("virtualserver_unique_identifier", "mockserver" + session.serverID + "=");
+			entry.put("virtualserver_name", "Mock Server " + session.serverID);
+			entry.put("virtualserver_welcomemessage", "Welcome to the mock server | have fun");
+			entry.put("virtualserver_platform", "Java");
+			entry.put("virtualserver_version", "3.0.0 [Build: 0]");
+			entry.put("virtualserver_maxclients", "512");
+			entry.put("virtualserver_clientsonline", Integer.toString(clientCount + countQueryClients(session.serverID)));
+			entry.put("virtualserver_channelsonline", Integer.toString(channelCount));
+			entry.put("virtualserver_uptime", "123456");
+			entry.put("virtualserver_port", Integer.toString(9986 + session.serverID));
+			entry.put("virtualserver_id", Integer.toString(session.serverID));
+			Vector<Map<String, String>> entries = new Vector<Map<String, String>>();
+			entries.addElement(entry);
+			return formatEntries(entries);
+		}
+		
+		if (command.equals("clientlist"))
+		{
+			Vector<Map<String, String>> entries = new Vector<Map<String, String>>();
+			for (int i = 1; i <= clientCount; i++)
+			{
+				LinkedHashMap<String, String> entry = new LinkedHashMap<String, String>();
+				entry.put("clid", Integer.toString(i));
+				entry.put("cid", Integer.toString(1 + i % Math.max(1, channelCount)));
+				entry.put("client_database_id", Integer.toString(100 + i));
+				entry.put("client_nickname", "Client " + i);
+				entry.put("client_type", "0");
+				if (parameters.containsKey("-uid"))
+				{
+					entry.put("client_unique_identifier", "uid" + i + "=");
+				}
+				entries.addElement(entry);
+			}
+			for (Session other : sessions)
+			{
+				if (other.serverID == session.serverID)
+				{
+					LinkedHashMap<String, String> entry = new LinkedHashMap<String, String>();
+					entry.put("clid", Integer.toString(other.clientID));
+					entry.put("cid", Integer.toString(other.channelID));
+					entry.put("client_database_id", "1");
+					entry.put("client_nickname", other.nickname);
+					entry.put("client_type", "1");
+					if (parameters.containsKey("-uid"))
+					{
+						entry.put("client_unique_identifier", "serveradmin");
+					}
+					entries.addElement(entry);
+				}
+			}
+			return formatEntries(entries);
+		}
+		
+		if (command.equals("channellist"))
+		{
+			Vector<Map<String, String>> entries = new Vector<Map<String, String>>();
+			for (int i = 1; i <= channelCount; i++)
+			{
+				LinkedHashMap<String, String> entry = new LinkedHashMap<String, String>();
+				entry.put("cid", Integer.toString(i));
+				entry.put("pid", "0");
+				entry.put("channel_order", Integer.toString(i - 1));
+				entry.put("channel_name", "Channel " + i);
+				entry.put("total_clients", "0");
+				entry.put("channel_needed_subscribe_power", "0");
+				if (parameters.containsKey("-topic"))
+				{
+					entry.put("channel_topic", "Topic of channel " + i);
+				}
+				entries.addElement(entry);
+			}
+			return formatEntries(entries);
+		}
+		
+		if (command.equals("clientdblist"))
+		{
+			int start = getInt(parameters, "start", 0);
+			int duration = Math.min(getInt(parameters, "duration", 25), CLIENTDB_MAX_DURATION);
+			if (start >= clientDBCount)
+				throw new CommandException(1281, "database empty result set");
+			
+			Vector<Map<String, String>> entries = new Vector<Map<String, String>>();
+			for (int i = start; i < Math.min(clientDBCount, start + duration); i++)
+			{
+				LinkedHashMap<String, String> entry = new LinkedHashMap<String, String>();
+				entry.put("cldbid", Integer.toString(i + 1));
+				entry.put("client_unique_identifier", "dbuid" + (i + 1) + "=");
+				entry.put("client_nickname", "Database Client " + (i + 1));
+				entry.put("client_created", "1300000000");
+				entry.put("client_lastconnected", Integer.toString(1300000000 + i));
+				entry.put("client_totalconnections", Integer.toString(1 + i % 50));
+				entry.put("client_description", "");
+				entry.put("client_lastip", "10.0." + (i / 256 % 256) + "." + (i % 256));
+				entries.addElement(entry);
+			}
+			return formatEntries(entries);
+		}
+		
+		if (command.equals("clientupdate"))
+		{
+			if (parameters.containsKey("client_nickname"))
+			{
+				session.nickname = parameters.get("client_nickname");
+			}
+			return "";
+		}
+		
+		if (command.equals("clientmove"))
+		{
+			int channelID = getInt(parameters, "cid", 0);
+			if (channelID < 1 || channelID > channelCount)
+				throw new CommandException(768, "invalid channelID");
+			
+			for (String clid : parameters.get("clid").split("\\|"))
+			{
+				if (QueryEntry.parseInt(clid, -1) == session.clientID)
+				{
+					session.channelID = channelID;
+				}
+			}
+			return "";
+		}
+		
+		if (command.equals("sendtextmessage"))
+		{
+			if (!parameters.containsKey("msg") || !parameters.containsKey("targetmode"))
+				throw new CommandException(1538, "invalid parameter");
+			return "";
+		}
+		
+		if (command.equals("servernotifyregister"))
+		{
+			String event = parameters.get("event");
+			if (event == null)
+				throw new CommandException(1538, "invalid parameter");
+			if (!session.registeredEvents.contains(event))
+			{
+				session.registeredEvents.addElement(event);
+			}
+			return "";
+		}
+		
+		if (command.equals("servernotifyunregister"))
+		{
+			session.registeredEvents.clear();
+			return "";
+		}
+		
+		throw new CommandException(256, "command not found");
+	}
+	
+	private int countQueryClients(int serverID)
+	{
+		int count = 0;
+		for (Session session : sessions)
+		{
+			if (session.serverID == serverID)
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	private static int getInt(HashMap<String, String> parameters, String key, int defaultValue)
+	{
+		return QueryEntry.parseInt(parameters.get(key), defaultValue);
+	}
+}
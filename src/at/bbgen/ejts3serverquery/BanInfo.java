@@ -0,0 +1,175 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * An entry of <code>banlist</code>.<br><br>
+ * Returned by getBanList().
+ * All other keys of the TS3 server response can be read with get(), getInt() and getLong().
+ * @since 1.2
+ */
+public final class BanInfo extends QueryEntry
+{
+	static final Rows<BanInfo> ROWS = new Rows<BanInfo>()
+	{
+		public BanInfo newRow()
+		{
+			return new BanInfo();
+		}
+	};
+	
+	private int banID = -1;
+	private int invokerDatabaseID = -1;
+	private int enforcements = -1;
+	private long created = -1;
+	private long duration = -1;
+	private String ip = null;
+	private String name = null;
+	private String uniqueIdentifier = null;
+	private String invokerName = null;
+	private String reason = null;
+	
+	BanInfo()
+	{
+	}
+	
+	void setField(String key, String value)
+	{
+		if (key.equals("banid"))
+		{
+			banID = parseInt(value, -1);
+		}
+		else if (key.equals("invokercldbid"))
+		{
+			invokerDatabaseID = parseInt(value, -1);
+		}
+		else if (key.equals("enforcements"))
+		{
+			enforcements = parseInt(value, -1);
+		}
+		else if (key.equals("created"))
+		{
+			created = parseLong(value, -1);
+		}
+		else if (key.equals("duration"))
+		{
+			duration = parseLong(value, -1);
+		}
+		else if (key.equals("ip"))
+		{
+			ip = value;
+		}
+		else if (key.equals("name"))
+		{
+			name = value;
+		}
+		else if (key.equals("uid"))
+		{
+			uniqueIdentifier = value;
+		}
+		else if (key.equals("invokername"))
+		{
+			invokerName = value;
+		}
+		else if (key.equals("reason"))
+		{
+			reason = value;
+		}
+	}
+	
+	/**
+	 * @return The ban ID.
+	 */
+	public int getBanID()
+	{
+		return banID;
+	}
+	
+	/**
+	 * @return The client database ID of the client who created the ban.
+	 */
+	public int getInvokerDatabaseID()
+	{
+		return invokerDatabaseID;
+	}
+	
+	/**
+	 * @return How often the ban was enforced.
+	 */
+	public int getEnforcements()
+	{
+		return enforcements;
+	}
+	
+	/**
+	 * @return The creation time as unix timestamp.
+	 */
+	public long getCreated()
+	{
+		return created;
+	}
+	
+	/**
+	 * @return The duration in seconds, 0 for a permanent ban.
+	 */
+	public long getDuration()
+	{
+		return duration;
+	}
+	
+	/**
+	 * @return The banned IP address regex, may be empty.
+	 */
+	public String getIp()
+	{
+		return ip;
+	}
+	
+	/**
+	 * @return The banned nickname regex, may be empty.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * @return The banned unique identifier, may be empty.
+	 */
+	public String getUniqueIdentifier()
+	{
+		return uniqueIdentifier;
+	}
+	
+	/**
+	 * @return The nickname of the client who created the ban.
+	 */
+	public String getInvokerName()
+	{
+		return invokerName;
+	}
+	
+	/**
+	 * @return The ban reason, may be empty.
+	 */
+	public String getReason()
+	{
+		return reason;
+	}
+}
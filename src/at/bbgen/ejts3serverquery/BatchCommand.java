@@ -0,0 +1,259 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.Collection;
+import java.util.Vector;
+
+/**
+ * Builds commands for many targets at once, like <code>clientkick clid=1|clid=2|clid=3 reasonid=5</code>.<br><br>
+ * The TS3 server accepts many commands with a list of targets separated by <code>|</code>, so one command replaces one round trip per target.
+ * The targets are split into as many commands as needed to stay below the maximum line length of the TS3 server.
+ * A target which does not fit into a command line on its own is not sent, its result is the error id <code>-1</code>.
+ * Use EJTS3ServerQuery.executeBatch() to send them.<br><br>
+ * Example:<br>
+ * <code>
+ * BatchCommand batch = new BatchCommand("clientkick", "clid").setParameter("reasonid", 5).setParameter("reasonmsg", "Maintenance");<br>
+ * batch.addTargets(clientIDs);<br>
+ * BatchResult result = query.executeBatch(batch);
+ * </code><br><br>
+ * <b>Notice:</b><br>
+ * The TS3 server answers a command with many targets with a single error, so all targets of a failed command are reported with this error,
+ * even if the TS3 server already executed the command for some of them. Use setIsolateFailures() to find the failing targets.
+ * @since 1.2
+ * @see EJTS3ServerQuery#executeBatch(BatchCommand)
+ * @see BatchResult
+ */
+public final class BatchCommand
+{
+	/** The default maximum length of a single command line. */
+	public static final int DEFAULT_MAX_LINE_LENGTH = 8192;
+	
+	private final String command;
+	private final String targetKey;
+	private final Vector<String> targets = new Vector<String>();
+	private final StringBuilder parameters = new StringBuilder();
+	private int maxLineLength = DEFAULT_MAX_LINE_LENGTH;
+	private boolean isolateFailures = false;
+	
+	/**
+	 * Create a batch for a TS3 server command.
+	 * @param command The command name, like <code>clientkick</code>, <code>clientpoke</code>, <code>servergroupaddclient</code> or <code>channeldelete</code>.
+	 * @param targetKey The key of the targets, like <code>clid</code>, <code>cldbid</code> or <code>cid</code>.
+	 */
+	public BatchCommand(String command, String targetKey)
+	{
+		if (command == null || command.length() == 0 || targetKey == null || targetKey.length() == 0)
+			throw new IllegalArgumentException("BatchCommand(): No command or target key given!");
+		
+		this.command = command;
+		this.targetKey = targetKey;
+	}
+	
+	/**
+	 * Add a target.
+	 * @param targetID A client, client database, channel or other ID, depending on the target key.
+	 * @return This batch
+	 */
+	public BatchCommand addTarget(int targetID)
+	{
+		targets.addElement(Integer.toString(targetID));
+		return this;
+	}
+	
+	/**
+	 * Add a target.
+	 * @param targetValue The value for the target key, it will be escaped.
+	 * @return This batch
+	 */
+	public BatchCommand addTarget(String targetValue)
+	{
+		targets.addElement(TS3Codec.encode(targetValue));
+		return this;
+	}
+	
+	/**
+	 * Add many targets.
+	 * @param targetIDs Client, client database, channel or other IDs, depending on the target key.
+	 * @return This batch
+	 */
+	public BatchCommand addTargets(Collection<Integer> targetIDs)
+	{
+		for (int targetID : targetIDs)
+		{
+			addTarget(targetID);
+		}
+		return this;
+	}
+	
+	/**
+	 * Add a parameter which is used for all targets, like <code>reasonmsg</code>.
+	 * @param key The parameter key
+	 * @param value The parameter value, it will be escaped.
+	 * @return This batch
+	 */
+	public BatchCommand setParameter(String key, String value)
+	{
+		parameters.append(' ').append(key).append('=');
+		TS3Codec.encode(value, parameters);
+		return this;
+	}
+	
+	/**
+	 * Add a parameter which is used for all targets, like <code>reasonid</code>.
+	 * @param key The parameter key
+	 * @param value The parameter value
+	 * @return This batch
+	 */
+	public BatchCommand setParameter(String key, int value)
+	{
+		parameters.append(' ').append(key).append('=').append(value);
+		return this;
+	}
+	
+	/**
+	 * Add an option, like <code>-continueonerror</code>.
+	 * @param option The option including the leading <code>-</code>
+	 * @return This batch
+	 */
+	public BatchCommand setOption(String option)
+	{
+		parameters.append(' ').append(option);
+		return this;
+	}
+	
+	/**
+	 * Set the maximum length of a single command line. The targets are split into more commands to stay below this length.
+	 * @param maxLineLength The maximum line length in UTF-8 bytes, default is DEFAULT_MAX_LINE_LENGTH.
+	 * @return This batch
+	 */
+	public BatchCommand setMaxLineLength(int maxLineLength)
+	{
+		this.maxLineLength = maxLineLength;
+		return this;
+	}
+	
+	/**
+	 * If enabled, the targets of a failed command are sent again one by one, so every target gets its own result.
+	 * This needs one more round trip for each target of a failed command.
+	 * @param isolateFailures <code>true</code> to retry the targets of failed commands one by one, default is <code>false</code>.
+	 * @return This batch
+	 */
+	public BatchCommand setIsolateFailures(boolean isolateFailures)
+	{
+		this.isolateFailures = isolateFailures;
+		return this;
+	}
+	
+	String getCommand()
+	{
+		return command;
+	}
+	
+	boolean isIsolateFailures()
+	{
+		return isolateFailures;
+	}
+	
+	int getTargetCount()
+	{
+		return targets.size();
+	}
+	
+	String getTarget(int index)
+	{
+		return targets.elementAt(index);
+	}
+	
+	int getMaxLineLength()
+	{
+		return maxLineLength;
+	}
+	
+	/**
+	 * Check if the command line for a single target is not longer than the maximum line length.
+	 */
+	boolean fits(int index)
+	{
+		return getFixedLength() + getTargetLength(index) <= maxLineLength;
+	}
+	
+	/**
+	 * Split the targets into command lines, measured in UTF-8 bytes like the TS3 server does.
+	 * A target which does not fit into a command line on its own gets a command line of its own, check fits() before sending it.
+	 * @return The index of the first target of each command line, followed by the number of targets.
+	 * Command line <code>n</code> contains the targets from <code>bounds[n]</code> to <code>bounds[n + 1]</code> (exclusive).
+	 */
+	int[] split()
+	{
+		int[] bounds = new int[targets.size() + 1];
+		int count = 0;
+		int fixedLength = getFixedLength();
+		int lineLength = 0;
+		boolean lineFull = true;
+		
+		for (int i = 0; i < targets.size(); i++)
+		{
+			int targetLength = getTargetLength(i);
+			if (lineFull || lineLength + 1 + targetLength > maxLineLength)
+			{
+				bounds[count++] = i;
+				lineLength = fixedLength + targetLength;
+				lineFull = (lineLength > maxLineLength);
+			}
+			else
+			{
+				lineLength += 1 + targetLength;
+			}
+		}
+		bounds[count++] = targets.size();
+		
+		int[] result = new int[count];
+		System.arraycopy(bounds, 0, result, 0, count);
+		return result;
+	}
+	
+	private int getFixedLength()
+	{
+		return QueryStatistics.utf8Length(command) + 1 + QueryStatistics.utf8Length(parameters.toString());
+	}
+	
+	private int getTargetLength(int index)
+	{
+		return QueryStatistics.utf8Length(targetKey) + 1 + QueryStatistics.utf8Length(targets.elementAt(index));
+	}
+	
+	/**
+	 * Build the command line for the targets from <code>start</code> to <code>end</code> (exclusive).
+	 */
+	String buildCommand(int start, int end)
+	{
+		StringBuilder line = new StringBuilder(command).append(' ');
+		for (int i = start; i < end; i++)
+		{
+			if (i > start)
+			{
+				line.append('|');
+			}
+			line.append(targetKey).append('=').append(targets.elementAt(i));
+		}
+		line.append(parameters);
+		return line.toString();
+	}
+}
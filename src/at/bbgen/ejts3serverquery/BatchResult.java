@@ -0,0 +1,144 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * The results of a BatchCommand, one for each target.<br><br>
+ * Each result is a HashMap with the keys <code>id</code> (error id, <code>0</code> on success) and <code>msg</code> (error message)
+ * of the TS3 server response for the command which contained the target.
+ * @since 1.2
+ * @see EJTS3ServerQuery#executeBatch(BatchCommand)
+ */
+public final class BatchResult
+{
+	private final BatchCommand batch;
+	private final Vector<HashMap<String, String>> results;
+	private int commandCount = 0;
+	
+	BatchResult(BatchCommand batch)
+	{
+		this.batch = batch;
+		this.results = new Vector<HashMap<String, String>>(batch.getTargetCount());
+		this.results.setSize(batch.getTargetCount());
+	}
+	
+	void setResult(int start, int end, HashMap<String, String> result)
+	{
+		for (int i = start; i < end; i++)
+		{
+			results.setElementAt(result, i);
+		}
+		commandCount++;
+	}
+	
+	void setUnsentResult(int index, HashMap<String, String> result)
+	{
+		results.setElementAt(result, index);
+	}
+	
+	/**
+	 * @return The number of targets.
+	 */
+	public int getTargetCount()
+	{
+		return results.size();
+	}
+	
+	/**
+	 * @return The number of commands which were sent to the TS3 server.
+	 */
+	public int getCommandCount()
+	{
+		return commandCount;
+	}
+	
+	/**
+	 * Get the target value, in the order the targets were added.
+	 * @param index The index of the target
+	 * @return The target value as it was sent to the TS3 server.
+	 */
+	public String getTarget(int index)
+	{
+		return batch.getTarget(index);
+	}
+	
+	/**
+	 * Get the result of a target, in the order the targets were added.
+	 * @param index The index of the target
+	 * @return A HashMap with the keys <code>id</code> and <code>msg</code>.
+	 */
+	public HashMap<String, String> getResult(int index)
+	{
+		return results.elementAt(index);
+	}
+	
+	/**
+	 * Check if the command was successful for a target.
+	 * @param index The index of the target
+	 * @return <code>true</code> if the TS3 server returned the error id 0.
+	 */
+	public boolean isSuccessful(int index)
+	{
+		HashMap<String, String> result = results.elementAt(index);
+		return result != null && "0".equals(result.get("id"));
+	}
+	
+	/**
+	 * @return <code>true</code> if the command was successful for all targets.
+	 */
+	public boolean isSuccessful()
+	{
+		return getFailedCount() == 0;
+	}
+	
+	/**
+	 * @return The number of targets with a failed command.
+	 */
+	public int getFailedCount()
+	{
+		int failed = 0;
+		for (int i = 0; i < results.size(); i++)
+		{
+			if (!isSuccessful(i))
+			{
+				failed++;
+			}
+		}
+		return failed;
+	}
+	
+	/**
+	 * @return The target values with a failed command.
+	 */
+	public Vector<String> getFailedTargets()
+	{
+		Vector<String> failed = new Vector<String>();
+		for (int i = 0; i < results.size(); i++)
+		{
+			if (!isSuccessful(i))
+			{
+				failed.addElement(getTarget(i));
+			}
+		}
+		return failed;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * The events <code>notifychannelcreated</code>, <code>notifychanneldeleted</code>, <code>notifychanneledited</code>, <code>notifychannelmoved</code>,
+ * <code>notifychanneldescriptionchanged</code> and <code>notifychannelpasswordchanged</code>. Use getEventType() to tell them apart.<br><br>
+ * Edit events contain only the changed values, values not included are -1 or <code>null</code>.
+ * @since 1.2
+ * @see EJTS3ServerQuery#EVENT_MODE_SERVER
+ * @see EJTS3ServerQuery#EVENT_MODE_CHANNEL
+ */
+public final class ChannelEvent extends TeamspeakEvent
+{
+	private int channelID = -1;
+	private int parentID = -1;
+	private int order = -1;
+	private String name = null;
+	private String topic = null;
+	
+	ChannelEvent(String eventType)
+	{
+		super(eventType);
+	}
+	
+	void setField(String key, String value)
+	{
+		if (key.equals("cid"))
+		{
+			channelID = parseInt(value, -1);
+		}
+		else if (key.equals("cpid") || key.equals("pid"))
+		{
+			parentID = parseInt(value, -1);
+		}
+		else if (key.equals("channel_order") || key.equals("order"))
+		{
+			order = parseInt(value, -1);
+		}
+		else if (key.equals("channel_name"))
+		{
+			name = value;
+		}
+		else if (key.equals("channel_topic"))
+		{
+			topic = value;
+		}
+		else
+		{
+			super.setField(key, value);
+		}
+	}
+	
+	/**
+	 * @return The channel ID
+	 */
+	public int getChannelID()
+	{
+		return channelID;
+	}
+	
+	/**
+	 * @return The ID of the parent channel, 0 for a top level channel, or -1 if not included.
+	 */
+	public int getParentID()
+	{
+		return parentID;
+	}
+	
+	/**
+	 * @return The ID of the channel above this channel, or -1 if not included.
+	 */
+	public int getOrder()
+	{
+		return order;
+	}
+	
+	/**
+	 * @return The channel name, or <code>null</code> if not included.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * @return The channel topic, or <code>null</code> if not included.
+	 */
+	public String getTopic()
+	{
+		return topic;
+	}
+}
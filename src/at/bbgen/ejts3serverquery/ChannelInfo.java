@@ -0,0 +1,123 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * A channel entry of <code>channellist</code> or <code>channelinfo</code>.<br><br>
+ * Returned by getChannelList() or getChannelInfo().
+ * All other keys of the TS3 server response can be read with get(), getInt() and getLong().
+ * @since 1.2
+ */
+public final class ChannelInfo extends QueryEntry
+{
+	static final Rows<ChannelInfo> ROWS = new Rows<ChannelInfo>()
+	{
+		public ChannelInfo newRow()
+		{
+			return new ChannelInfo();
+		}
+	};
+	
+	private int channelID = -1;
+	private int parentID = -1;
+	private int order = -1;
+	private int totalClients = -1;
+	private String name = null;
+	private String topic = null;
+	
+	ChannelInfo()
+	{
+	}
+	
+	void setField(String key, String value)
+	{
+		if (key.equals("cid"))
+		{
+			channelID = parseInt(value, -1);
+		}
+		else if (key.equals("pid") || key.equals("cpid"))
+		{
+			parentID = parseInt(value, -1);
+		}
+		else if (key.equals("channel_order"))
+		{
+			order = parseInt(value, -1);
+		}
+		else if (key.equals("total_clients"))
+		{
+			totalClients = parseInt(value, -1);
+		}
+		else if (key.equals("channel_name"))
+		{
+			name = value;
+		}
+		else if (key.equals("channel_topic"))
+		{
+			topic = value;
+		}
+	}
+	
+	/**
+	 * @return The channel ID.
+	 */
+	public int getChannelID()
+	{
+		return channelID;
+	}
+	
+	/**
+	 * @return The ID of the parent channel, 0 for channels in the root.
+	 */
+	public int getParentID()
+	{
+		return parentID;
+	}
+	
+	/**
+	 * @return The ID of the channel above this one.
+	 */
+	public int getOrder()
+	{
+		return order;
+	}
+	
+	/**
+	 * @return The number of clients in the channel, or -1 if not included (<code>channelinfo</code>).
+	 */
+	public int getTotalClients()
+	{
+		return totalClients;
+	}
+	
+	/**
+	 * @return The channel name.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * @return The channel topic, or <code>null</code> if not included (use <code>-topic</code> for <code>channellist</code>).
+	 */
+	public String getTopic()
+	{
+		return topic;
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Iterates over the whole client database of a virtual server, page by page with the <code>clientdblist</code> command.<br><br>
+ * The pages are requested only when needed, but the next pages are already requested while the current page is consumed,
+ * so the iteration does not wait for a round trip to the TS3 server at every page.
+ * Only the current page and the prefetched pages are kept in memory.<br>
+ * The TS3 server returns at most 200 entries per command, so larger page sizes are lowered to 200.
+ * The iteration ends at the first empty page, a shorter page only lowers the page size, as some TS3 servers return less entries.<br><br>
+ * <b>Notice:</b><br>
+ * The pages are requested by position, so clients added to or deleted from the database during the iteration can be skipped or returned twice.<br>
+ * If a page cannot be received, hasNext() and next() throw a CompletionException with the EJTS3ServerQueryException as cause.
+ * Call close() if the iteration is stopped before the end.
+ * @since 1.2
+ * @see EJTS3ServerQuery#getClientDBIterator(int, int)
+ * @see QuerySessionPool#getClientDBIterator(int, int, int)
+ */
+public final class ClientDBIterator implements Iterator<ClientInfo>
+{
+	/**
+	 * Requests a page of the client database.
+	 */
+	interface PageSource
+	{
+		/**
+		 * @param start The position of the first entry
+		 * @param duration The number of entries
+		 * @return A future which completes with the entries, an empty Vector if start is behind the last entry.
+		 */
+		public CompletableFuture<Vector<ClientInfo>> fetchPage(int start, int duration);
+	}
+	
+	/** The maximum duration of <code>clientdblist</code> accepted by the TS3 server. */
+	static final int MAX_PAGE_SIZE = 200;
+	
+	private final PageSource source;
+	private final int prefetchPages;
+	private final ArrayDeque<CompletableFuture<Vector<ClientInfo>>> pages = new ArrayDeque<CompletableFuture<Vector<ClientInfo>>>();
+	private final ArrayDeque<Integer> pageStarts = new ArrayDeque<Integer>();
+	private int pageSize;
+	private Vector<ClientInfo> page = null;
+	private int pageIndex = 0;
+	private int nextStart = 0;
+	private boolean lastPageSeen = false;
+	private boolean closed = false;
+	private long count = 0;
+	
+	ClientDBIterator(PageSource source, int pageSize, int prefetchPages)
+	{
+		if (pageSize < 1)
+			throw new IllegalArgumentException("pageSize has to be at least 1");
+		if (prefetchPages < 1)
+			throw new IllegalArgumentException("prefetchPages has to be at least 1");
+		
+		this.source = source;
+		this.pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+		this.prefetchPages = prefetchPages;
+		requestPages();
+	}
+	
+	public synchronized boolean hasNext()
+	{
+		while (page == null || pageIndex >= page.size())
+		{
+			if (closed || (lastPageSeen && pages.isEmpty()))
+			{
+				return false;
+			}
+			
+			CompletableFuture<Vector<ClientInfo>> head = pages.poll();
+			if (head == null)
+			{
+				return false;
+			}
+			int pageStart = pageStarts.poll();
+			
+			requestPages();
+			
+			try
+			{
+				page = head.join();
+			}
+			catch (CompletionException e)
+			{
+				close();
+				throw e;
+			}
+			pageIndex = 0;
+			
+			if (page.isEmpty())
+			{
+				// Pages requested behind the end are empty, they are not needed anymore.
+				lastPageSeen = true;
+				pages.clear();
+				pageStarts.clear();
+			}
+			else if (page.size() < pageSize)
+			{
+				// The TS3 server returned less entries than requested, either this is the last page or the server
+				// allows less entries per command. The prefetched pages would skip entries, so request them again.
+				pageSize = page.size();
+				nextStart = pageStart + page.size();
+				pages.clear();
+				pageStarts.clear();
+				requestPages();
+			}
+		}
+		
+		return true;
+	}
+	
+	public synchronized ClientInfo next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+		
+		count++;
+		return page.elementAt(pageIndex++);
+	}
+	
+	/**
+	 * @return The number of entries returned by next().
+	 */
+	public synchronized long getCount()
+	{
+		return count;
+	}
+	
+	/**
+	 * Stop the iteration. Pages already requested are still received, but ignored.
+	 */
+	public synchronized void close()
+	{
+		closed = true;
+		page = null;
+		pages.clear();
+		pageStarts.clear();
+	}
+	
+	/**
+	 * Request pages until prefetchPages pages are on their way, the current page is not counted.
+	 */
+	private void requestPages()
+	{
+		while (!closed && !lastPageSeen && pages.size() < prefetchPages)
+		{
+			pages.addLast(source.fetchPage(nextStart, pageSize));
+			pageStarts.addLast(nextStart);
+			nextStart += pageSize;
+		}
+	}
+}
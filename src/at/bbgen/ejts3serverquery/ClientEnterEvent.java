@@ -0,0 +1,132 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * The event <code>notifycliententerview</code>, a client joined the virtual server or became visible.
+ * @since 1.2
+ * @see EJTS3ServerQuery#EVENT_MODE_SERVER
+ */
+public final class ClientEnterEvent extends TeamspeakEvent
+{
+	private int clientID = -1;
+	private int channelID = -1;
+	private int fromChannelID = -1;
+	private int databaseID = -1;
+	private int type = -1;
+	private String nickname = null;
+	private String uniqueIdentifier = null;
+	
+	ClientEnterEvent(String eventType)
+	{
+		super(eventType);
+	}
+	
+	void setField(String key, String value)
+	{
+		if (key.equals("clid"))
+		{
+			clientID = parseInt(value, -1);
+		}
+		else if (key.equals("ctid"))
+		{
+			channelID = parseInt(value, -1);
+		}
+		else if (key.equals("cfid"))
+		{
+			fromChannelID = parseInt(value, -1);
+		}
+		else if (key.equals("client_database_id"))
+		{
+			databaseID = parseInt(value, -1);
+		}
+		else if (key.equals("client_type"))
+		{
+			type = parseInt(value, -1);
+		}
+		else if (key.equals("client_nickname"))
+		{
+			nickname = value;
+		}
+		else if (key.equals("client_unique_identifier"))
+		{
+			uniqueIdentifier = value;
+		}
+		else
+		{
+			super.setField(key, value);
+		}
+	}
+	
+	/**
+	 * @return The client ID
+	 */
+	public int getClientID()
+	{
+		return clientID;
+	}
+	
+	/**
+	 * @return The ID of the channel the client joined.
+	 */
+	public int getChannelID()
+	{
+		return channelID;
+	}
+	
+	/**
+	 * @return The ID of the channel the client came from, 0 if the client connected to the server.
+	 */
+	public int getFromChannelID()
+	{
+		return fromChannelID;
+	}
+	
+	/**
+	 * @return The client database ID, or -1 if not included.
+	 */
+	public int getDatabaseID()
+	{
+		return databaseID;
+	}
+	
+	/**
+	 * @return The client type, 0 for a normal client and 1 for a query client, or -1 if not included.
+	 */
+	public int getType()
+	{
+		return type;
+	}
+	
+	/**
+	 * @return The nickname of the client.
+	 */
+	public String getNickname()
+	{
+		return nickname;
+	}
+	
+	/**
+	 * @return The unique identifier of the client.
+	 */
+	public String getUniqueIdentifier()
+	{
+		return uniqueIdentifier;
+	}
+}
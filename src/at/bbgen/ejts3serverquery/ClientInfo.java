@@ -0,0 +1,123 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * A client entry of <code>clientlist</code>, <code>clientdblist</code>, <code>clientinfo</code> or <code>whoami</code>.<br><br>
+ * Returned by getClientList(), getClientDBList() or getClientInfo().
+ * All other keys of the TS3 server response can be read with get(), getInt() and getLong().
+ * @since 1.2
+ */
+public final class ClientInfo extends QueryEntry
+{
+	static final Rows<ClientInfo> ROWS = new Rows<ClientInfo>()
+	{
+		public ClientInfo newRow()
+		{
+			return new ClientInfo();
+		}
+	};
+	
+	private int clientID = -1;
+	private int channelID = -1;
+	private int databaseID = -1;
+	private int type = -1;
+	private String nickname = null;
+	private String uniqueIdentifier = null;
+	
+	ClientInfo()
+	{
+	}
+	
+	void setField(String key, String value)
+	{
+		if (key.equals("clid") || key.equals("client_id"))
+		{
+			clientID = parseInt(value, -1);
+		}
+		else if (key.equals("cid") || key.equals("client_channel_id"))
+		{
+			channelID = parseInt(value, -1);
+		}
+		else if (key.equals("client_database_id") || key.equals("cldbid"))
+		{
+			databaseID = parseInt(value, -1);
+		}
+		else if (key.equals("client_type"))
+		{
+			type = parseInt(value, -1);
+		}
+		else if (key.equals("client_nickname"))
+		{
+			nickname = value;
+		}
+		else if (key.equals("client_unique_identifier"))
+		{
+			uniqueIdentifier = value;
+		}
+	}
+	
+	/**
+	 * @return The client ID, or -1 if not included (<code>clientdblist</code>).
+	 */
+	public int getClientID()
+	{
+		return clientID;
+	}
+	
+	/**
+	 * @return The ID of the channel the client is in, or -1 if not included.
+	 */
+	public int getChannelID()
+	{
+		return channelID;
+	}
+	
+	/**
+	 * @return The client database ID, or -1 if not included.
+	 */
+	public int getDatabaseID()
+	{
+		return databaseID;
+	}
+	
+	/**
+	 * @return The client type, 0 for a normal client and 1 for a query client, or -1 if not included.
+	 */
+	public int getType()
+	{
+		return type;
+	}
+	
+	/**
+	 * @return The nickname of the client.
+	 */
+	public String getNickname()
+	{
+		return nickname;
+	}
+	
+	/**
+	 * @return The unique identifier of the client, or <code>null</code> if not included (use <code>-uid</code> for <code>clientlist</code>).
+	 */
+	public String getUniqueIdentifier()
+	{
+		return uniqueIdentifier;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * The event <code>notifyclientmoved</code>, a client switched the channel or was moved.<br><br>
+ * If many clients were moved at once, every client gets an own event.
+ * @since 1.2
+ * @see EJTS3ServerQuery#EVENT_MODE_SERVER
+ */
+public final class ClientMoveEvent extends TeamspeakEvent
+{
+	private int clientID = -1;
+	private int channelID = -1;
+	
+	ClientMoveEvent(String eventType)
+	{
+		super(eventType);
+	}
+	
+	void setField(String key, String value)
+	{
+		if (key.equals("clid"))
+		{
+			clientID = parseInt(value, -1);
+		}
+		else if (key.equals("ctid"))
+		{
+			channelID = parseInt(value, -1);
+		}
+		else
+		{
+			super.setField(key, value);
+		}
+	}
+	
+	/**
+	 * @return The client ID
+	 */
+	public int getClientID()
+	{
+		return clientID;
+	}
+	
+	/**
+	 * @return The ID of the channel the client is in now.
+	 */
+	public int getChannelID()
+	{
+		return channelID;
+	}
+}
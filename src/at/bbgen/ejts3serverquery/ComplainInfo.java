@@ -0,0 +1,123 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * An entry of <code>complainlist</code>.<br><br>
+ * Returned by getComplainList().
+ * All other keys of the TS3 server response can be read with get(), getInt() and getLong().
+ * @since 1.2
+ */
+public final class ComplainInfo extends QueryEntry
+{
+	static final Rows<ComplainInfo> ROWS = new Rows<ComplainInfo>()
+	{
+		public ComplainInfo newRow()
+		{
+			return new ComplainInfo();
+		}
+	};
+	
+	private int targetDatabaseID = -1;
+	private int fromDatabaseID = -1;
+	private long timestamp = -1;
+	private String targetName = null;
+	private String fromName = null;
+	private String message = null;
+	
+	ComplainInfo()
+	{
+	}
+	
+	void setField(String key, String value)
+	{
+		if (key.equals("tcldbid"))
+		{
+			targetDatabaseID = parseInt(value, -1);
+		}
+		else if (key.equals("fcldbid"))
+		{
+			fromDatabaseID = parseInt(value, -1);
+		}
+		else if (key.equals("timestamp"))
+		{
+			timestamp = parseLong(value, -1);
+		}
+		else if (key.equals("tname"))
+		{
+			targetName = value;
+		}
+		else if (key.equals("fname"))
+		{
+			fromName = value;
+		}
+		else if (key.equals("message"))
+		{
+			message = value;
+		}
+	}
+	
+	/**
+	 * @return The client database ID of the client the complaint is about.
+	 */
+	public int getTargetDatabaseID()
+	{
+		return targetDatabaseID;
+	}
+	
+	/**
+	 * @return The client database ID of the client who complained.
+	 */
+	public int getFromDatabaseID()
+	{
+		return fromDatabaseID;
+	}
+	
+	/**
+	 * @return The time of the complaint as unix timestamp.
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+	
+	/**
+	 * @return The nickname of the client the complaint is about.
+	 */
+	public String getTargetName()
+	{
+		return targetName;
+	}
+	
+	/**
+	 * @return The nickname of the client who complained.
+	 */
+	public String getFromName()
+	{
+		return fromName;
+	}
+	
+	/**
+	 * @return The complaint message.
+	 */
+	public String getMessage()
+	{
+		return message;
+	}
+}
@@ -18,18 +18,23 @@
 
 package at.bbgen.ejts3serverquery;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintStream;
-import java.net.Socket;
-import java.net.SocketException;
+import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /**
  * EJTS3ServerQuery library version 1.1
@@ -45,6 +50,13 @@ import java.util.Vector;
  * 
  * <br>
  * 
+ * <h3>Asynchronous methods</h3>
+ * The methods ending with <code>Async</code> send their command without waiting and return a CompletableFuture.
+ * A single reader receives the responses and completes the futures in the order the commands were sent.<br>
+ * Dependent actions without <code>Async</code> suffix (like <code>thenApply()</code>) are executed by this reader, so they must not block
+ * and must not call the blocking methods of the same connection.
+ * <br><br>
+ * 
  * <h3>Notes</h3>
  * This library was originally developed by Stefan Martens
  * (http://stefan1200.bplaced.net) and was then extended by Bernhard Eder
@@ -238,39 +250,88 @@ public class EJTS3ServerQuery
 	 */
 	public static final int EVENT_MODE_CHANNEL = 5;
 	
+	private static final String DATABASE_EMPTY_ERROR_ID = "1281";
+	private static final String GREETING_END = "Welcome to the TeamSpeak 3 ServerQuery interface";
+	private static final int GREETING_TIMEOUT = 500;
+	
 	private boolean DEBUG = false;
-	private boolean eventNotifyCheckActive = false;
-	private TeamspeakActionListener actionClass = null;
+	private volatile boolean pipelining = false;
+	private volatile boolean eventsRegistered = false;
+	private final EventListenerRegistry eventListeners = new EventListenerRegistry();
+	/* Guards eventExecutor, orderedEvents and eventDispatcher, so no event is passed to a replaced dispatcher. */
+	private final Object dispatcherLock = new Object();
+	private Executor eventExecutor = null;
+	private volatile Executor asyncExecutor = ForkJoinPool.commonPool();
+	private boolean orderedEvents = false;
+	private EventDispatcher eventDispatcher = null;
+	private volatile PermissionCatalogue permissionCatalogue = null;
+	private volatile VirtualServerMirror serverMirror = null;
+	private volatile QueryStatistics statistics = null;
+	private volatile ResponseCache responseCache = null;
 	private int queryCurrentClientID = -1;
 	private int queryCurrentServerID = -1;
 	private int queryCurrentChannelID = -1;
 	private String queryCurrentChannelPassword = null;
 	
-	private Socket socketQuery = null;
-	private BufferedReader in = null;
-	private PrintStream out = null;
-	private Timer eventNotifyTimer = null;
-	private TimerTask eventNotifyTimerTask = null;
-	
-	private void eventNotifyRun()
+	private volatile QueryTransport transport = null;
+	private final ConcurrentLinkedQueue<PendingCommand> pendingCommands = new ConcurrentLinkedQueue<PendingCommand>();
+	/* Orders the commands, they are written in the order they were added to pendingCommands while holding this lock. */
+	private final Object writeLock = new Object();
+	/* Serializes the writes, taken without holding writeLock, so a slow connection does not block the callers of writeLock. */
+	private final Object outputLock = new Object();
+	/* Commands added to pendingCommands but not written yet, in the same order. Guarded by writeLock. */
+	private final ArrayDeque<PendingCommand> unwrittenCommands = new ArrayDeque<PendingCommand>();
+	private FloodGuard floodGuard = null;
+	private final FloodGuard.Sender floodSender = new FloodGuard.Sender()
 	{
-		if (eventNotifyCheckActive && isConnected())
+		public void send(PendingCommand pending)
 		{
-			try
-			{
-				if (in.ready())
-				{
-					String inputLine = in.readLine();
-					if (inputLine.length() > 0)
-					{
-						handleAction(inputLine);
-					}
-				}
-			}
-			catch (Exception ex)
-			{
-			}
+			queueCommand(pending);
+		}
+		
+		public void flush()
+		{
+			flushCommands();
 		}
+	};
+	
+	/**
+	 * Enable or disable pipelined command execution.<br><br>
+	 * Without pipelining every command is sent only after the response of the previous command was received, so concurrent callers have to wait for each other.<br>
+	 * With pipelining commands of concurrent callers are sent back-to-back without waiting. The TS3 server answers commands in the order they were received,
+	 * so every caller still gets the response to its own command. This saves a full network round trip per command on high latency connections.<br><br>
+	 * <b>Notice:</b><br>
+	 * Commands which change the state of the connection (like selectVirtualServer() or moveClient() of the query client) affect all commands sent after them.
+	 * Don't mix them with concurrent commands which depend on the old state.<br>
+	 * This setting only affects the blocking methods. The asynchronous methods like doCommandAsync() always send their commands at once, without waiting for other commands.
+	 * @param pipelining <code>true</code> to enable pipelining, <code>false</code> to disable it (default).
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#getPendingCommandCount()
+	 */
+	public void setPipelining(boolean pipelining)
+	{
+		this.pipelining = pipelining;
+	}
+	
+	/**
+	 * Check if pipelined command execution is enabled.
+	 * @return <code>true</code> if pipelining is enabled.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#setPipelining(boolean)
+	 */
+	public boolean isPipelining()
+	{
+		return pipelining;
+	}
+	
+	/**
+	 * Returns the number of commands which were sent to the TS3 server, but not answered yet.
+	 * @return The number of commands in flight.
+	 * @since 1.2
+	 */
+	public int getPendingCommandCount()
+	{
+		return pendingCommands.size();
 	}
 	
 	/**
@@ -281,28 +342,155 @@ public class EJTS3ServerQuery
 	 */
 	public void setTeamspeakActionListener(TeamspeakActionListener listenerClass)
 	{
-		this.actionClass = listenerClass;
+		setTeamspeakActionListener(listenerClass, null);
+	}
+	
+	/**
+	 * Set a class that should receive only some of the Teamspeak events.<br><br>
+	 * Events not selected by the filter are dropped before they are parsed, which saves a lot of work on busy servers.
+	 * Notice that the events still have to be registered with addEventNotify().
+	 * @param listenerClass - A class that implements the TeamspeakActionListener interface.
+	 * @param filter Selects the events passed to the listener, or <code>null</code> to pass all events.
+	 * @since 1.2
+	 * @see EventFilter
+	 * @see TeamspeakActionListener
+	 */
+	public void setTeamspeakActionListener(TeamspeakActionListener listenerClass, EventFilter filter)
+	{
+		eventListeners.setActionListener(listenerClass, filter);
+	}
+	
+	/**
+	 * Add a listener for all Teamspeak events, delivered as typed event objects.
+	 * @param listener The listener
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#addEventListener(Class, TeamspeakEventListener, EventFilter)
+	 */
+	public void addEventListener(TeamspeakEventListener<TeamspeakEvent> listener)
+	{
+		addEventListener(TeamspeakEvent.class, listener, null);
+	}
+	
+	/**
+	 * Add a listener for one kind of Teamspeak events, for example only ClientEnterEvent.
+	 * @param eventClass The class of the events, use TeamspeakEvent.class for all events.
+	 * @param listener The listener
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#addEventListener(Class, TeamspeakEventListener, EventFilter)
+	 */
+	public <T extends TeamspeakEvent> void addEventListener(Class<T> eventClass, TeamspeakEventListener<? super T> listener)
+	{
+		addEventListener(eventClass, listener, null);
+	}
+	
+	/**
+	 * Add a listener for Teamspeak events, delivered as typed event objects.<br><br>
+	 * Any number of listeners can be added, also together with a TeamspeakActionListener. Every event is parsed only once
+	 * and the same event object is passed to all listeners wanting it. Notify lines with many entries, like many clients moved at once,
+	 * are passed as one event per entry.<br>
+	 * Notice that the events still have to be registered with addEventNotify().
+	 * @param eventClass The class of the events, like ClientEnterEvent.class, or TeamspeakEvent.class for all events.
+	 * @param listener The listener
+	 * @param filter Selects the events checked for the listener before they are parsed, or <code>null</code> to check all events.
+	 * @since 1.2
+	 * @see TeamspeakEventListener
+	 * @see EventFilter
+	 */
+	public <T extends TeamspeakEvent> void addEventListener(Class<T> eventClass, TeamspeakEventListener<? super T> listener, EventFilter filter)
+	{
+		if (eventClass == null || listener == null)
+		{
+			throw new IllegalArgumentException("eventClass and listener must not be null");
+		}
+		
+		eventListeners.add(eventClass, listener, filter);
+	}
+	
+	/**
+	 * Remove a listener added with addEventListener(). The event notifies stay registered.
+	 * @param listener The listener
+	 * @return <code>true</code> if the listener was found.
+	 * @since 1.2
+	 */
+	public boolean removeEventListener(TeamspeakEventListener<?> listener)
+	{
+		return eventListeners.remove(listener);
+	}
+	
+	/**
+	 * Set the Executor which runs the event listener callbacks.<br><br>
+	 * By default a pool of 4 daemon threads is used. The thread reading from the server never runs a callback itself, so listeners may send commands.
+	 * At most 10000 events wait for their callbacks. If the listeners cannot keep up, further events are dropped and counted with
+	 * QueryStatistics.getDroppedEventCount(), reading from the server is not slowed down. Events rejected by the Executor are dropped and counted as well.<br>
+	 * Any Executor can be used, for example a virtual thread per task executor on Java versions supporting it.
+	 * It must not run the callbacks on the calling thread, like <code>Runnable::run</code> does.<br>
+	 * The default pool of the replaced settings is shut down after its pending callbacks.
+	 * @param executor The Executor for the event callbacks or <code>null</code> to use the default pool.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#setOrderedEventDelivery(boolean)
+	 * @see QueryStatistics#getDroppedEventCount()
+	 */
+	public void setEventExecutor(Executor executor)
+	{
+		EventDispatcher oldDispatcher;
+		synchronized (dispatcherLock)
+		{
+			this.eventExecutor = executor;
+			oldDispatcher = eventDispatcher;
+			eventDispatcher = null;  // Created again with the next event
+		}
+		
+		if (oldDispatcher != null)
+		{
+			oldDispatcher.shutdown();
+		}
+	}
+	
+	/**
+	 * Enable or disable ordered event delivery.<br><br>
+	 * If enabled, all events of the same client (identified by the <code>clid</code> key, or <code>invokerid</code> for text messages)
+	 * are delivered one after another in the order they were received. Events of different clients are still delivered in parallel.
+	 * If disabled (default), events may be delivered in any order.
+	 * @param ordered <code>true</code> to enable ordered delivery.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#setEventExecutor(Executor)
+	 */
+	public void setOrderedEventDelivery(boolean ordered)
+	{
+		EventDispatcher oldDispatcher;
+		synchronized (dispatcherLock)
+		{
+			this.orderedEvents = ordered;
+			oldDispatcher = eventDispatcher;
+			eventDispatcher = null;  // Created again with the next event
+		}
+		
+		if (oldDispatcher != null)
+		{
+			oldDispatcher.shutdown();
+		}
 	}
 	
 	/**
-	 * Remove the class from receiving Teamspeak events. This function also call removeAllEvents(), if needed.
+	 * Remove the class from receiving Teamspeak events. This function also call removeAllEvents(), if needed.<br>
+	 * The events stay registered as long as listeners added with addEventListener() or a server mirror still need them.
 	 * @since 0.7
 	 * 
 	 * @throws EJTS3ServerQueryException
 	 */
 	public void removeTeamspeakActionListener() throws EJTS3ServerQueryException
 	{
-		if (eventNotifyTimerTask != null)
+		eventListeners.setActionListener(null, null);
+		if (eventsRegistered && eventListeners.isEmpty() && serverMirror == null)
 		{
 			removeAllEvents();
 		}
-		this.actionClass = null;
 	}
 	
 	/**
 	 * Activate a Teamspeak event notify.<br><br>
 	 * <b>Notice:</b><br>
-	 * You have to use setTeamspeakActionListener() first!
+	 * You have to use setTeamspeakActionListener() or addEventListener() first!
 	 * @param eventMode Use an EVENT_MODE constant
 	 * @param channelID A channel ID, only needed for EVENT_MODE_CHANNEL. Use any number for any other EVENT_MODE.
 	 * @since 0.7
@@ -317,9 +505,14 @@ public class EJTS3ServerQuery
 	 */
 	public void addEventNotify(int eventMode, int channelID) throws EJTS3ServerQueryException
 	{
-		if (actionClass == null)
-			throw new EJTS3ServerQueryException("Use setTeamspeakActionListener() first!");
+		if (eventListeners.isEmpty())
+			throw new EJTS3ServerQueryException("Use setTeamspeakActionListener() or addEventListener() first!");
 		
+		registerEventNotify(eventMode, channelID);
+	}
+	
+	private void registerEventNotify(int eventMode, int channelID) throws EJTS3ServerQueryException
+	{
 		if (!isConnected())
 			throw new EJTS3ServerQueryException("addEventNotify(): Not connected to TS3 server!");
 		
@@ -362,17 +555,7 @@ public class EJTS3ServerQuery
 			throw new EJTS3ServerQueryException("Exception addEventNotify(): " + e.toString());
 		}
 		
-		if (eventNotifyTimerTask == null)
-		{
-			eventNotifyTimerTask = new TimerTask()
-			{
-				public void run()
-				{
-					eventNotifyRun();
-				}
-			};
-			eventNotifyTimer.schedule(eventNotifyTimerTask, 200, 200);
-		}
+		eventsRegistered = true;
 	}
 	
 	/**
@@ -401,11 +584,97 @@ public class EJTS3ServerQuery
 			throw new EJTS3ServerQueryException("Exception removeAllEvents(): " + e.toString());
 		}
 		
-		if (eventNotifyTimerTask != null)
+		eventsRegistered = false;
+	}
+	
+	/**
+	 * Start a local mirror of the clients and channels of the current selected virtual server.<br><br>
+	 * This registers the server and channel events (see addEventNotify()) and loads the client and channel list once.
+	 * Afterwards the mirror is kept current by the events, so it can be read as often as needed without sending commands to the TS3 server.
+	 * A running mirror is replaced. The mirror is dropped when the connection is closed.<br>
+	 * While the mirror runs, selectVirtualServer() refuses to select another virtual server, since the mirror would miss its events.
+	 * Use a separate connection for other virtual servers or stop the mirror first.
+	 * @return The new mirror, already filled with the current clients and channels.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see VirtualServerMirror
+	 * @see EJTS3ServerQuery#stopServerMirror()
+	 */
+	public VirtualServerMirror startServerMirror() throws EJTS3ServerQueryException
+	{
+		if (!isConnected())
+			throw new EJTS3ServerQueryException("startServerMirror(): Not connected to TS3 server!");
+		
+		if (queryCurrentServerID <= 0)
+			throw new EJTS3ServerQueryException("startServerMirror(): No virtual server selected!");
+		
+		final VirtualServerMirror mirror = new VirtualServerMirror(queryCurrentServerID);
+		serverMirror = mirror;
+		
+		try
+		{
+			registerEventNotify(EVENT_MODE_SERVER, 0);
+			registerEventNotify(EVENT_MODE_CHANNEL, 0);
+			
+			// The lists are applied by the reader thread as soon as they arrive, so no event can slip in between.
+			PendingCommand clientList = new PendingCommand(getListCommand(LISTMODE_CLIENTLIST, "-uid"));
+			CompletableFuture<Void> clientsSeeded = clientList.thenAccept(hmIn ->
+			{
+				if ("0".equals(hmIn.get("id")) && hmIn.get("response") != null)
+					mirror.seedClients(TS3Codec.parseRows(hmIn.get("response"), ClientInfo.ROWS));
+			});
+			
+			PendingCommand channelList = new PendingCommand(getListCommand(LISTMODE_CHANNELLIST, null));
+			CompletableFuture<Void> channelsSeeded = channelList.thenAccept(hmIn ->
+			{
+				if ("0".equals(hmIn.get("id")) && hmIn.get("response") != null)
+					mirror.seedChannels(TS3Codec.parseRows(hmIn.get("response"), ChannelInfo.ROWS));
+			});
+			
+			for (PendingCommand command : new PendingCommand[] { clientList, channelList })
+			{
+				HashMap<String, String> hmIn = doInternalCommand(command);
+				if (!hmIn.get("id").equals("0"))
+					throw new EJTS3ServerQueryException(getErrorString("startServerMirror()", hmIn.get("id"), hmIn.get("msg"), hmIn.get("extra_msg"), hmIn.get("failed_permid")));
+			}
+			
+			// The waiting caller may be woken up before the reader thread applied the lists.
+			clientsSeeded.join();
+			channelsSeeded.join();
+		}
+		catch (Exception e)
 		{
-			eventNotifyTimerTask.cancel();
-			eventNotifyTimerTask = null;
+			if (serverMirror == mirror)
+			{
+				serverMirror = null;
+			}
+			
+			if (DEBUG) e.printStackTrace();
+			throw new EJTS3ServerQueryException("Exception startServerMirror(): " + e.toString());
 		}
+		
+		return mirror;
+	}
+	
+	/**
+	 * Get the running mirror of the virtual server.
+	 * @return The mirror or <code>null</code> if startServerMirror() was not called.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#startServerMirror()
+	 */
+	public VirtualServerMirror getServerMirror()
+	{
+		return serverMirror;
+	}
+	
+	/**
+	 * Stop updating the mirror of the virtual server. The registered events stay active, use removeAllEvents() to remove them.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#startServerMirror()
+	 */
+	public void stopServerMirror()
+	{
+		serverMirror = null;
 	}
 	
 	/**
@@ -417,49 +686,59 @@ public class EJTS3ServerQuery
 	 */
 	public void connectTS3Query(String ip, int queryport) throws EJTS3ServerQueryException
 	{
-		if (socketQuery != null)
+		connectTS3Query(ip, queryport, null);
+	}
+	
+	/**
+	 * Open a query connection to the TS3 server. If a QueryReactor is given, the connection uses a non-blocking socket driven by the reactor thread.
+	 * This allows one I/O thread to serve the connections of many EJTS3ServerQuery instances.
+	 * @param ip IP or Host address to the TS3 server
+	 * @param queryport Query Port of the TS3 server
+	 * @param reactor The QueryReactor which should drive this connection or <code>null</code> to use a blocking socket.
+	 * @since 1.2
+	 * @see QueryReactor
+	 * 
+	 * @throws EJTS3ServerQueryException
+	 */
+	public void connectTS3Query(String ip, int queryport, QueryReactor reactor) throws EJTS3ServerQueryException
+	{
+		if (transport != null)
 			throw new EJTS3ServerQueryException("connectTS3Query(): Close connection first!");
 		
+		permissionCatalogue = null;
+		
 		try
 		{
-			socketQuery = new Socket(ip, queryport);  // Open socket connection to TS3 telnet port
+			if (reactor != null)
+			{
+				transport = reactor.open(ip, queryport);
+			}
+			else
+			{
+				transport = new SocketQueryTransport(ip, queryport);
+			}
 		}
 		catch (Exception e)
 		{
 			if (DEBUG) e.printStackTrace();
-			socketQuery = null;
+			transport = null;
 			throw new EJTS3ServerQueryException("Exception connectTS3Query(): " + e.toString());
 		}
 		
 
-		if (socketQuery.isConnected())
+		if (transport.isConnected())
 		{
 			try
 			{
-				in = new BufferedReader(new InputStreamReader(socketQuery.getInputStream(), "UTF-8"));
-				out = new PrintStream(socketQuery.getOutputStream(), true, "UTF-8");
-				
-				String serverIdent = in.readLine();
-				if (!serverIdent.equals("TS3"))
+				String serverIdent = transport.readLine();
+				if (serverIdent == null || !serverIdent.equals("TS3"))
 				{
 					closeTS3Connection();
 					throw new EJTS3ServerQueryException("connectTS3Query(): Server does not respond as TS3 server!");
 				}
 				
-				socketQuery.setSoTimeout(500);  // Set the timeout for reading all useless lines after connecting
-				
-				try
-				{
-					while (true)
-					{
-						in.readLine(); // Catch useless lines after connecting
-					}
-				}
-				catch (Exception e)
-				{
-				}
-				
-				socketQuery.setSoTimeout(10000);  // Set shorter timeout than default
+				readGreeting();
+				startReader();
 			}
 			catch (Exception e)
 			{
@@ -467,23 +746,41 @@ public class EJTS3ServerQuery
 				closeTS3Connection();
 				throw new EJTS3ServerQueryException("Exception connectTS3Query(): " + e.toString());
 			}
+			
+			QueryStatistics stats = statistics;
+			if (stats != null)
+			{
+				stats.connected();
+			}
 		}
 		else
 		{
 			throw new EJTS3ServerQueryException("Could not open a query connection.");
 		}
-		
-		if (eventNotifyTimer != null)
+	}
+	
+	/**
+	 * Skip the welcome lines after the <code>TS3</code> line. They end with the line starting with GREETING_END,
+	 * for unknown server versions without this line further lines are awaited for GREETING_TIMEOUT milliseconds.
+	 */
+	private void readGreeting() throws IOException
+	{
+		transport.setReadTimeout(GREETING_TIMEOUT);
+		try
 		{
-			eventNotifyTimer.cancel();
-			eventNotifyTimer = null;
+			String line;
+			while ((line = transport.readLine()) != null)
+			{
+				if (line.startsWith(GREETING_END))
+				{
+					break;
+				}
+			}
 		}
-		if (eventNotifyTimerTask != null)
+		catch (SocketTimeoutException e)
 		{
-			eventNotifyTimerTask.cancel();
-			eventNotifyTimerTask = null;
+			// No more welcome lines
 		}
-		eventNotifyTimer = new Timer(true);
 	}
 	
 	/**
@@ -539,6 +836,68 @@ public class EJTS3ServerQuery
 		
 	}
 	
+	/**
+	 * Login with an account, select a virtual server and change the display name at once.
+	 * All commands are sent without waiting for the previous response, so this needs only one round trip to the TS3 server instead of up to four.<br><br>
+	 * If a command fails, the error of the first failed command is thrown. The commands before the failed one are done,
+	 * for example if the display name is already in use, the connection is still logged in and uses the virtual server.
+	 * @param loginname Login name
+	 * @param password Login password
+	 * @param serverID A virtual server id or 0 to select no virtual server.
+	 * @param displayName The new display name of this connection, at least 3 characters needed. Use <code>null</code> if not wanted.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#loginTS3(String, String)
+	 * @see EJTS3ServerQuery#selectVirtualServer(int)
+	 * @see EJTS3ServerQuery#setDisplayName(String)
+	 * 
+	 * @throws EJTS3ServerQueryException
+	 */
+	public void loginTS3(String loginname, String password, int serverID, String displayName) throws EJTS3ServerQueryException
+	{
+		if (!isConnected())
+			throw new EJTS3ServerQueryException("loginTS3(): Not connected to TS3 server!");
+		
+		if (displayName != null && displayName.length() < 3)
+			throw new EJTS3ServerQueryException("loginTS3(): displayName shorter than 3 characters!");
+		
+		Vector<CompletableFuture<HashMap<String, String>>> responses = new Vector<CompletableFuture<HashMap<String, String>>>();
+		responses.addElement(doInternalCommandAsync("login " + encodeTS3String(loginname) + " " + encodeTS3String(password), "loginTS3()"));
+		if (serverID > 0)
+		{
+			responses.addElement(doInternalCommandAsync("use " + Integer.toString(serverID), "selectVirtualServer()"));
+		}
+		if (displayName != null)
+		{
+			responses.addElement(doInternalCommandAsync("clientupdate client_nickname=" + encodeTS3String(displayName), "setDisplayName()"));
+		}
+		CompletableFuture<HashMap<String, String>> whoami = doInternalCommandAsync("whoami", "updateClientIDChannelID()");
+		responses.addElement(whoami);
+		
+		// Wait for all responses first, so no response is left over if a command failed.
+		CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[responses.size()])).exceptionally(e -> null).join();
+		
+		try
+		{
+			for (CompletableFuture<HashMap<String, String>> response : responses)
+			{
+				response.join();
+			}
+			
+			setCurrentClient(TS3Codec.parseLine(whoami.join().get("response"), ClientInfo.ROWS));
+		}
+		catch (CompletionException e)
+		{
+			Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+			if (DEBUG) cause.printStackTrace();
+			throw new EJTS3ServerQueryException("Exception loginTS3(): " + cause.toString());
+		}
+		catch (Exception e)
+		{
+			if (DEBUG) e.printStackTrace();
+			throw new EJTS3ServerQueryException("Exception loginTS3(): " + e.toString());
+		}
+	}
+	
 	/**
 	 * Change the display name on the Teamspeak 3 server of this query connection. This name will be displayed on many actions like kickClient(), moveClient(), pokeClient() and sendTextMessage().
 	 * @param displayName A String with the new display name of this connection.
@@ -585,7 +944,8 @@ public class EJTS3ServerQuery
 	}
 	
 	/**
-	 * Select a virtual server to work with. This method allows to select the virtual server by id or port.
+	 * Select a virtual server to work with. This method allows to select the virtual server by id or port.<br>
+	 * While a server mirror runs, only the virtual server of the mirror can be selected by id.
 	 * @param server A virtual server id or port
 	 * @param selectPort <code>true</code> if <code>server</code> is the virtual server port, <code>false</code> if <code>server</code> is the virtual server id.
 	 * @since 0.9
@@ -597,6 +957,8 @@ public class EJTS3ServerQuery
 		if (!isConnected())
 			throw new EJTS3ServerQueryException("selectVirtualServer(): Not connected to TS3 server!");
 		
+		checkServerMirror(selectPort ? -1 : server);
+		
 		HashMap<String, String> hmIn;
 		try
 		{
@@ -623,6 +985,38 @@ public class EJTS3ServerQuery
 		updateClientIDChannelID();
 	}
 	
+	private CompletableFuture<Void> selectVirtualServerAsync(int serverID)
+	{
+		try
+		{
+			checkServerMirror(serverID);
+		}
+		catch (EJTS3ServerQueryException e)
+		{
+			return failedFuture(e);
+		}
+		
+		CompletableFuture<HashMap<String, String>> use = doInternalCommandAsync("use " + Integer.toString(serverID), "selectVirtualServer()");
+		CompletableFuture<HashMap<String, String>> whoami = doInternalCommandAsync("whoami", "updateClientIDChannelID()");
+		
+		return use.thenCombine(whoami, (used, hmIn) ->
+		{
+			setCurrentClient(TS3Codec.parseLine(hmIn.get("response"), ClientInfo.ROWS));
+			return null;
+		});
+	}
+	
+	/**
+	 * A running server mirror would miss all events while another virtual server is selected, so this is not allowed.
+	 * @param serverID The virtual server to select, or -1 if it is selected by port.
+	 */
+	private void checkServerMirror(int serverID) throws EJTS3ServerQueryException
+	{
+		VirtualServerMirror mirror = serverMirror;
+		if (mirror != null && serverID != mirror.getServerID())
+			throw new EJTS3ServerQueryException("selectVirtualServer(): The server mirror of virtual server " + Integer.toString(mirror.getServerID()) + " is running, use stopServerMirror() first!");
+	}
+	
 	private void updateClientIDChannelID() throws EJTS3ServerQueryException
 	{
 		HashMap<String, String> hmIn;
@@ -632,11 +1026,7 @@ public class EJTS3ServerQuery
 			if (!hmIn.get("id").equals("0"))
 				throw new EJTS3ServerQueryException(getErrorString("updateClientIDChannelID()", hmIn.get("id"), hmIn.get("msg"), hmIn.get("extra_msg"), hmIn.get("failed_permid")));
 			
-			HashMap<String, String> response = parseLine(hmIn.get("response"));
-			queryCurrentServerID = Integer.parseInt(response.get("virtualserver_id"));
-			queryCurrentClientID = Integer.parseInt(response.get("client_id"));
-			queryCurrentChannelID = Integer.parseInt(response.get("client_channel_id"));
-			queryCurrentChannelPassword = null;
+			setCurrentClient(TS3Codec.parseLine(hmIn.get("response"), ClientInfo.ROWS));
 		}
 		catch (Exception e)
 		{
@@ -646,6 +1036,17 @@ public class EJTS3ServerQuery
 		
 	}
 	
+	private void setCurrentClient(ClientInfo whoami)
+	{
+		if (whoami == null || whoami.getClientID() == -1 || whoami.getChannelID() == -1)
+			throw new IllegalStateException("Invalid whoami response");
+		
+		queryCurrentServerID = whoami.getInt("virtualserver_id", 0);
+		queryCurrentClientID = whoami.getClientID();
+		queryCurrentChannelID = whoami.getChannelID();
+		queryCurrentChannelPassword = null;
+	}
+	
 	/**
 	 * Close the query connection.
 	 * 
@@ -653,68 +1054,72 @@ public class EJTS3ServerQuery
 	 */
 	public void closeTS3Connection() throws EJTS3ServerQueryException
 	{
-
-		if (eventNotifyTimerTask != null)
-		{
-			eventNotifyTimerTask.cancel();
-			eventNotifyTimerTask = null;
-			eventNotifyTimer.cancel();
-			eventNotifyTimer = null;
-		}
-		
+		eventsRegistered = false;
 		queryCurrentClientID = -1;
 		queryCurrentServerID = -1;
 		queryCurrentChannelPassword = null;
+		permissionCatalogue = null;
+		serverMirror = null;
 		
 		String exceptionString = "";
 		
-		try
+		// The pending events are still delivered, the threads of the default pool end afterwards.
+		EventDispatcher closingDispatcher;
+		synchronized (dispatcherLock)
 		{
-			if (out != null)
-			{
-				out.println("quit");
-				out.close();
-				out = null;
-			}
+			closingDispatcher = eventDispatcher;
+			eventDispatcher = null;
 		}
-		catch (Exception e)
+		if (closingDispatcher != null)
 		{
-			if (DEBUG) e.printStackTrace();
-			exceptionString += "Exception closeTS3Connection(): " + e.toString();
+			closingDispatcher.shutdown();
 		}
 		
-		try
-		{
-			if (in != null)
-			{
-				in.close();
-				in = null;
-			}
-		}
-		catch (Exception e)
+		// Forget the transport first, so the reader ignores the end of the connection.
+		QueryTransport closingTransport = transport;
+		transport = null;
+		synchronized (writeLock)
 		{
-			if (DEBUG) e.printStackTrace();
-			exceptionString += "Exception closeTS3Connection(): " + e.toString();
+			// They are still pending commands and fail with them below, they must not be written to a later connection.
+			unwrittenCommands.clear();
 		}
 		
-		try
+		if (closingTransport != null)
 		{
-			if (socketQuery != null)
+			try
 			{
-				socketQuery.close();
-				socketQuery = null;
+				if (closingTransport.isConnected())
+				{
+					// After the commands of other threads which are being written.
+					synchronized (outputLock)
+					{
+						closingTransport.writeLine("quit");
+					}
+				}
 			}
-		}
-		catch (Exception e)
-		{
-			if (DEBUG) e.printStackTrace();
-			exceptionString += "Exception closeTS3Connection(): " + e.toString();
-		}
-		
-		if(!exceptionString.isEmpty())
-			throw new EJTS3ServerQueryException(exceptionString);
-	}
-	
+			catch (Exception e)
+			{
+				if (DEBUG) e.printStackTrace();
+				exceptionString += "Exception closeTS3Connection(): " + e.toString();
+			}
+			
+			try
+			{
+				closingTransport.close();
+			}
+			catch (Exception e)
+			{
+				if (DEBUG) e.printStackTrace();
+				exceptionString += "Exception closeTS3Connection(): " + e.toString();
+			}
+		}
+		
+		failPendingCommands("-2", "closeTS3Connection(): Connection to TS3 server closed.");
+		
+		if(!exceptionString.isEmpty())
+			throw new EJTS3ServerQueryException(exceptionString);
+	}
+	
 	
 	private String getErrorString(String apiMethodName, String lastErrorID, String message, String extMessage, String failedID)
 	{
@@ -811,6 +1216,35 @@ public class EJTS3ServerQuery
 		
 	}
 	
+	/**
+	 * Asynchronous version of moveClient().
+	 * @param clientID Current Client ID
+	 * @param channelID Target Channel ID
+	 * @param channelPassword Password of the target channel or <code>null</code> if no password needed
+	 * @return A future which completes when the client was moved.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#moveClient(int, int, String)
+	 */
+	public CompletableFuture<Void> moveClientAsync(final int clientID, final int channelID, final String channelPassword)
+	{
+		String command = "clientmove clid=" + Integer.toString(clientID) + " cid=" + Integer.toString(channelID);
+		
+		if (channelPassword != null && channelPassword.length() > 0)
+		{
+			command += " cpw=" + encodeTS3String(channelPassword);
+		}
+		
+		return doInternalCommandAsync(command, "moveClient()").thenApply(hmIn ->
+		{
+			if (clientID == queryCurrentClientID)
+			{
+				queryCurrentChannelID = channelID;
+				queryCurrentChannelPassword = channelPassword;
+			}
+			return null;
+		});
+	}
+	
 	/**
 	 * Move a client into another channel.
 	 * @param clientIDs List of client IDs to be moved
@@ -827,7 +1261,7 @@ public class EJTS3ServerQuery
 		HashMap<String, String> hmIn;
 		try
 		{
-			StringBuffer command = new StringBuffer("clientmove ");
+			StringBuilder command = new StringBuilder("clientmove ");
 			int clNr = 0;
 			for(int clientID : clientIDs)
 			{
@@ -835,13 +1269,13 @@ public class EJTS3ServerQuery
 				{
 					command.append("|");
 				}
-				command.append("clid=" + Integer.toString(clientID));
+				command.append("clid=").append(clientID);
 			}
-			command.append(" cid=" + Integer.toString(channelID));
+			command.append(" cid=").append(channelID);
 			
 			if (channelPassword != null && channelPassword.length() > 0)
 			{
-				command.append(" cpw=" + encodeTS3String(channelPassword));
+				TS3Codec.encode(channelPassword, command.append(" cpw="));
 			}
 			hmIn = doInternalCommand(command.toString());
 			if (!hmIn.get("id").equals("0"))
@@ -861,6 +1295,220 @@ public class EJTS3ServerQuery
 		
 	}
 	
+	/**
+	 * Send a command for many targets with as few commands as possible, see BatchCommand.<br><br>
+	 * All commands of the batch are sent at once, even if pipelining is disabled, and the results are reported for each target.
+	 * Targets which do not fit into the maximum line length are not sent and reported with the error id <code>-1</code>.
+	 * @param batch The batch to be executed
+	 * @return The results for each target, in the order the targets were added.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see BatchCommand
+	 * @see BatchResult
+	 */
+	public BatchResult executeBatch(BatchCommand batch) throws EJTS3ServerQueryException
+	{
+		if (!isConnected())
+			throw new EJTS3ServerQueryException("executeBatch(): Not connected to TS3 server!");
+		
+		if (batch.getCommand().equals("use"))
+			throw new EJTS3ServerQueryException("executeBatch(): This command is not allowed here. Please use selectVirtualServer()!");
+		
+		BatchResult result = new BatchResult(batch);
+		int[] bounds = batch.split();
+		
+		Vector<String> commands = new Vector<String>();
+		for (int i = 0; i < bounds.length - 1; i++)
+		{
+			if (bounds[i + 1] - bounds[i] > 1 || batch.fits(bounds[i]))
+			{
+				commands.addElement(batch.buildCommand(bounds[i], bounds[i + 1]));
+			}
+		}
+		
+		Vector<HashMap<String, String>> responses = doInternalCommands(commands);
+		boolean anySuccess = false;
+		int response = 0;
+		
+		for (int i = 0; i < bounds.length - 1; i++)
+		{
+			if (bounds[i + 1] - bounds[i] == 1 && !batch.fits(bounds[i]))
+			{
+				result.setUnsentResult(bounds[i], createErrorResponse("-1", "executeBatch(): The command for target " + batch.getTarget(bounds[i]) + " is longer than " + batch.getMaxLineLength() + " bytes, it was not sent!"));
+				continue;
+			}
+			
+			HashMap<String, String> hmIn = responses.elementAt(response++);
+			boolean success = "0".equals(hmIn.get("id"));
+			
+			if (!success && batch.isIsolateFailures() && bounds[i + 1] - bounds[i] > 1)
+			{
+				Vector<String> singleCommands = new Vector<String>();
+				for (int target = bounds[i]; target < bounds[i + 1]; target++)
+				{
+					singleCommands.addElement(batch.buildCommand(target, target + 1));
+				}
+				
+				Vector<HashMap<String, String>> singleResponses = doInternalCommands(singleCommands);
+				for (int target = bounds[i]; target < bounds[i + 1]; target++)
+				{
+					HashMap<String, String> singleResponse = singleResponses.elementAt(target - bounds[i]);
+					result.setResult(target, target + 1, singleResponse);
+					anySuccess |= "0".equals(singleResponse.get("id"));
+				}
+			}
+			else
+			{
+				result.setResult(bounds[i], bounds[i + 1], hmIn);
+				anySuccess |= success;
+			}
+		}
+		
+		// Like moveClient() and deleteChannel(), the query client may be in another channel now.
+		if (anySuccess && (batch.getCommand().equals("clientmove") || batch.getCommand().equals("channeldelete")))
+		{
+			updateClientIDChannelID();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Send text messages to many channels with as few moves and round trips as possible.<br><br>
+	 * sendTextMessage() moves this query client into the channel and back again for every message.
+	 * This method starts with the current channel, sends all messages of a channel at once and moves back into the current channel only once at the end.
+	 * The messages of a channel are sent together with the move into the next channel, so each channel needs only one round trip.
+	 * They are not sent before the move into their channel succeeded, so a failed move never sends a message into the wrong channel.
+	 * @param messages The messages for each channel ID
+	 * @param channelPasswords The passwords of the channels which need one, or <code>null</code> if no channel needs a password.
+	 * @return A HashMap with the result for each channel ID, with the keys <code>id</code> (error id, <code>0</code> on success) and <code>msg</code> (error message).
+	 * If a command for a channel failed, the result contains the first error of this channel.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#sendTextMessage(int, int, String, String)
+	 */
+	public HashMap<Integer, HashMap<String, String>> sendChannelMessages(Map<Integer, ? extends Collection<String>> messages, Map<Integer, String> channelPasswords) throws EJTS3ServerQueryException
+	{
+		if (!isConnected())
+			throw new EJTS3ServerQueryException("sendChannelMessages(): Not connected to TS3 server!");
+		
+		final int homeChannel = queryCurrentChannelID;
+		final String homePassword = queryCurrentChannelPassword;
+		HashMap<Integer, HashMap<String, String>> results = new HashMap<Integer, HashMap<String, String>>();
+		
+		// The current channel needs no move, so it comes first.
+		Vector<Integer> order = new Vector<Integer>(messages.keySet());
+		if (order.remove(Integer.valueOf(homeChannel)))
+		{
+			order.add(0, homeChannel);
+		}
+		
+		Vector<String> commands = new Vector<String>();
+		Vector<Integer> commandChannels = new Vector<Integer>();
+		int inChannel = homeChannel;
+		
+		for (int channelID : order)
+		{
+			if (messages.get(channelID) == null || messages.get(channelID).isEmpty())
+			{
+				continue;
+			}
+			
+			if (channelID != inChannel)
+			{
+				String password = (channelPasswords == null) ? null : channelPasswords.get(channelID);
+				commands.addElement(getMoveSelfCommand(channelID, password));
+				commandChannels.addElement(channelID);
+				
+				// Wait for the move, the messages must not be sent into the wrong channel.
+				if (!sendChannelCommands(commands, commandChannels, results))
+				{
+					continue;
+				}
+				inChannel = channelID;
+				queryCurrentChannelID = channelID;
+				queryCurrentChannelPassword = password;
+			}
+			
+			for (String msg : messages.get(channelID))
+			{
+				if (msg != null && msg.length() > 0)
+				{
+					commands.addElement("sendtextmessage targetmode=" + Integer.toString(TEXTMESSAGE_TARGET_CHANNEL) + " msg=" + encodeTS3String(msg));
+					commandChannels.addElement(channelID);
+				}
+			}
+			
+			if (!results.containsKey(channelID))
+			{
+				results.put(channelID, createErrorResponse("0", "ok"));
+			}
+		}
+		
+		if (inChannel != homeChannel)
+		{
+			commands.addElement(getMoveSelfCommand(homeChannel, homePassword));
+			commandChannels.addElement(-1);
+			
+			if (sendChannelCommands(commands, commandChannels, results))
+			{
+				queryCurrentChannelID = homeChannel;
+				queryCurrentChannelPassword = homePassword;
+			}
+			else
+			{
+				updateClientIDChannelID();
+			}
+		}
+		else if (!commands.isEmpty())
+		{
+			sendChannelCommands(commands, commandChannels, results);
+		}
+		
+		return results;
+	}
+	
+	private String getMoveSelfCommand(int channelID, String channelPassword)
+	{
+		StringBuilder command = new StringBuilder("clientmove clid=").append(queryCurrentClientID).append(" cid=").append(channelID);
+		if (channelPassword != null && channelPassword.length() > 0)
+		{
+			TS3Codec.encode(channelPassword, command.append(" cpw="));
+		}
+		return command.toString();
+	}
+	
+	/**
+	 * Send the commands of sendChannelMessages() at once and store the first error of each channel.
+	 * @return <code>true</code> if the last command was successful.
+	 */
+	private boolean sendChannelCommands(Vector<String> commands, Vector<Integer> commandChannels, HashMap<Integer, HashMap<String, String>> results) throws EJTS3ServerQueryException
+	{
+		Vector<HashMap<String, String>> responses = doInternalCommands(commands);
+		boolean success = false;
+		
+		for (int i = 0; i < responses.size(); i++)
+		{
+			HashMap<String, String> hmIn = responses.elementAt(i);
+			success = "0".equals(hmIn.get("id"));
+			int channelID = commandChannels.elementAt(i);
+			
+			if (!success && channelID != -1)
+			{
+				HashMap<String, String> result = results.get(channelID);
+				if (result == null || "0".equals(result.get("id")))
+				{
+					hmIn.remove("response");
+					results.put(channelID, hmIn);
+				}
+			}
+		}
+		
+		commands.clear();
+		commandChannels.clear();
+		return success;
+	}
+	
 	/**
 	 * Kick a client from channel or from server.
 	 * @param cientID The Client ID to be kicked
@@ -896,6 +1544,27 @@ public class EJTS3ServerQuery
 		
 	}
 	
+	/**
+	 * Asynchronous version of kickClient().
+	 * @param clientID The Client ID to be kicked
+	 * @param onlyChannelKick <code>true</code> for a channel kick, <code>false</code> for a server kick
+	 * @param kickReason The kick reason
+	 * @return A future which completes when the client was kicked.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#kickClient(int, boolean, String)
+	 */
+	public CompletableFuture<Void> kickClientAsync(int clientID, boolean onlyChannelKick, String kickReason)
+	{
+		String command = "clientkick clid=" + Integer.toString(clientID) + " reasonid=" + (onlyChannelKick ? "4" : "5");
+		
+		if (kickReason != null && kickReason.length() > 0)
+		{
+			command += " reasonmsg=" + encodeTS3String(kickReason);
+		}
+		
+		return doInternalCommandAsync(command, "kickClient()").thenApply(hmIn -> null);
+	}
+	
 	/**
 	 * Returns the current client ID of the query connection. You need this maybe to move the client or something else.
 	 * @return The client ID or -1 if unknown.
@@ -1046,6 +1715,151 @@ public class EJTS3ServerQuery
 		
 	}
 	
+	/**
+	 * Asynchronous version of sendTextMessage().
+	 * @param targetID The client, channel or virtual server id. Use any number for a global message.
+	 * @param targetMode A text message target mode constant
+	 * @param msg The message to be send
+	 * @return A future which completes when the message was sent.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#sendTextMessage(int, int, String)
+	 */
+	public CompletableFuture<Void> sendTextMessageAsync(int targetID, int targetMode, String msg)
+	{
+		return sendTextMessageAsync(targetID, targetMode, msg, null);
+	}
+	
+	/**
+	 * Asynchronous version of sendTextMessage(). Switching to another channel or virtual server and back is done without waiting in between.
+	 * @param targetID The client, channel or virtual server id. Use any number for a global message.
+	 * @param targetMode A text message target mode constant
+	 * @param msg The message to be send
+	 * @param channelPassword Channel password, is only needed for a text message to channel. Use <code>null</code> if channel has no password or not a channel text message.
+	 * @return A future which completes when the message was sent and the old channel or virtual server was selected again.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#sendTextMessage(int, int, String, String)
+	 */
+	public CompletableFuture<Void> sendTextMessageAsync(int targetID, int targetMode, String msg, String channelPassword)
+	{
+		if (msg == null || msg.length() == 0)
+			return failedFuture(new EJTS3ServerQueryException("sendTextMessage(): No message given!"));
+		
+		if (targetMode < TEXTMESSAGE_TARGET_CLIENT || targetMode > TEXTMESSAGE_TARGET_GLOBAL)
+			return failedFuture(new EJTS3ServerQueryException("sendTextMessage(): Invalid targetMode given!"));
+		
+		if (targetMode == TEXTMESSAGE_TARGET_GLOBAL)
+		{
+			return doInternalCommandAsync("gm msg=" + encodeTS3String(msg), "sendTextMessage()").thenApply(hmIn -> null);
+		}
+		else if (targetMode == TEXTMESSAGE_TARGET_CLIENT)
+		{
+			String command = "sendtextmessage targetmode=" + Integer.toString(targetMode) + " msg=" + encodeTS3String(msg) + " target=" + Integer.toString(targetID);
+			return doInternalCommandAsync(command, "sendTextMessage()").thenApply(hmIn -> null);
+		}
+		
+		final String command = "sendtextmessage targetmode=" + Integer.toString(targetMode) + " msg=" + encodeTS3String(msg);
+		
+		if (targetMode == TEXTMESSAGE_TARGET_CHANNEL && targetID != queryCurrentChannelID)
+		{
+			final int oldChannel = queryCurrentChannelID;
+			final String oldChannelPassword = queryCurrentChannelPassword;
+			return moveClientAsync(queryCurrentClientID, targetID, channelPassword)
+				.thenCompose(moved -> switchBackAfter(doInternalCommandAsync(command, "sendTextMessage()"),
+					() -> moveClientAsync(queryCurrentClientID, oldChannel, oldChannelPassword)));
+		}
+		else if (targetMode == TEXTMESSAGE_TARGET_VIRTUALSERVER && targetID != queryCurrentServerID)
+		{
+			final int oldServer = queryCurrentServerID;
+			return selectVirtualServerAsync(targetID)
+				.thenCompose(selected -> switchBackAfter(doInternalCommandAsync(command, "sendTextMessage()"),
+					() -> selectVirtualServerAsync(oldServer)));
+		}
+		
+		return doInternalCommandAsync(command, "sendTextMessage()").thenApply(hmIn -> null);
+	}
+	
+	/**
+	 * Run the switch back after the command, even if it failed. The returned future fails if the command or the switch back failed.
+	 */
+	private CompletableFuture<Void> switchBackAfter(CompletableFuture<HashMap<String, String>> command, final Supplier<CompletableFuture<Void>> switchBack)
+	{
+		return command.handle((hmIn, error) -> error).thenCompose(error -> switchBack.get().thenApply(v ->
+		{
+			if (error != null)
+				throw (error instanceof CompletionException ? (CompletionException)error : new CompletionException(error));
+			return null;
+		}));
+	}
+	
+	/**
+	 * Set the Executor which completes the futures of the asynchronous methods, like doCommandAsync().<br><br>
+	 * The thread reading from the server never completes these futures itself, so functions passed to thenApply(), thenAccept() and so on
+	 * may call blocking methods of this class. By default the common ForkJoinPool is used.
+	 * The Executor must not run the tasks on the calling thread, like <code>Runnable::run</code> does.
+	 * @param executor The Executor or <code>null</code> to use the common ForkJoinPool.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#doCommandAsync(String)
+	 */
+	public void setAsyncExecutor(Executor executor)
+	{
+		this.asyncExecutor = (executor != null ? executor : ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Asynchronous version of doCommand().<br><br>
+	 * The command is sent at once, even if pipelining is disabled. The future is completed by the Executor of setAsyncExecutor(), not by the thread reading from the server,
+	 * so the functions chained to it may call blocking methods.
+	 * @param command Any TS3 telnet command, see TS3 documentation or use the <code>help</code> command.
+	 * @return A future which completes with a HashMap with 3 keys: <code>id</code> (error id), <code>msg</code> (error message) and <code>response</code> (unformatted server response).
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#doCommand(String)
+	 * @see EJTS3ServerQuery#setAsyncExecutor(Executor)
+	 */
+	public CompletableFuture<HashMap<String, String>> doCommandAsync(String command)
+	{
+		if (command.startsWith("use ") || command.startsWith("clientmove ") || command.startsWith("channeldelete "))
+			return failedFuture(new EJTS3ServerQueryException("doCommand(): This commands are not allowed here. Please use deleteChannel(), moveClient() or selectVirtualServer()!"));
+		
+		return doInternalCommandAsync(command, null);
+	}
+	
+	/**
+	 * Send a command without waiting for the response. The returned future is completed by the async executor, so nothing chained to it runs on the reader.
+	 * @param apiMethodName Name used in the error message if the server returns an error, or <code>null</code> to return errors in the HashMap like doCommand().
+	 */
+	private CompletableFuture<HashMap<String, String>> doInternalCommandAsync(String command, final String apiMethodName)
+	{
+		PendingCommand pending;
+		try
+		{
+			pending = sendCommand(command);
+		}
+		catch (EJTS3ServerQueryException e)
+		{
+			return failedFuture(e);
+		}
+		
+		final CompletableFuture<HashMap<String, String>> result = new CompletableFuture<HashMap<String, String>>();
+		pending.whenCompleteAsync((hmIn, error) ->
+		{
+			if (error != null)
+				result.completeExceptionally(error);
+			else if (apiMethodName != null && !hmIn.get("id").equals("0"))
+				result.completeExceptionally(new EJTS3ServerQueryException(getErrorString(apiMethodName, hmIn.get("id"), hmIn.get("msg"), hmIn.get("extra_msg"), hmIn.get("failed_permid"))));
+			else
+				result.complete(hmIn);
+		}, asyncExecutor);
+		
+		return result;
+	}
+	
+	private static <T> CompletableFuture<T> failedFuture(Throwable cause)
+	{
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(cause);
+		return future;
+	}
+	
 	/**
 	 * Send a single command to the TS3 server and read the response.<br><br>
 	 * <b>Notice:</b><br>
@@ -1072,47 +1886,351 @@ public class EJTS3ServerQuery
 		return doInternalCommand(command);
 	}
 	
-	private synchronized HashMap<String, String> doInternalCommand(String command) throws EJTS3ServerQueryException
+	private HashMap<String, String> doInternalCommand(String command) throws EJTS3ServerQueryException
 	{
-		if (!isConnected())
-			throw new EJTS3ServerQueryException("doCommand(): Not connected to TS3 server!");
-		
-		if (command == null || command.length() == 0)
-			throw new EJTS3ServerQueryException("doCommand(): No command given!");
-		
-		eventNotifyCheckActive = false;
+		return doInternalCommand(new PendingCommand(command));
+	}
+	
+	private HashMap<String, String> doInternalCommand(PendingCommand pending) throws EJTS3ServerQueryException
+	{
+		if (pipelining)
+		{
+			return readIncoming(sendCommand(pending));
+		}
 		
-		if (DEBUG)
+		synchronized (this)
 		{
-			System.out.println("Send command:");
-			System.out.println(command);
-			System.out.println();
+			return readIncoming(sendCommand(pending));
 		}
-		out.println(command);
-		return readIncoming();
 	}
 	
 	/**
-	 * Poke a client. This opens a message dialog at the selected Teamspeak 3 client with the given message.
-	 * @param clientID The client ID, which should get the message.
-	 * @param msg The message for the message dialog.
-	 * @throws EJTS3ServerQueryException 
-	 * @since 0.4
-	 * 
-	 * @throws EJTS3ServerQueryException
+	 * Send all commands before reading the first response, so they need only one round trip.
 	 */
-	public void pokeClient(int clientID, String msg) throws EJTS3ServerQueryException
+	private Vector<HashMap<String, String>> doInternalCommands(Vector<String> commands) throws EJTS3ServerQueryException
 	{
-		if (!isConnected())
-			throw new EJTS3ServerQueryException("pokeClient(): Not connected to TS3 server!");
-		
-		if (msg == null || msg.length() == 0)
-			throw new EJTS3ServerQueryException("pokeClient(): No message given!");
-		
-		String command = "clientpoke clid=" + Integer.toString(clientID) + " msg=" + encodeTS3String(msg);
-		HashMap<String, String> hmIn = doInternalCommand(command);
+		if (pipelining)
+		{
+			return sendAndReadCommands(commands);
+		}
 		
-		if (hmIn == null)
+		synchronized (this)
+		{
+			return sendAndReadCommands(commands);
+		}
+	}
+	
+	private Vector<HashMap<String, String>> sendAndReadCommands(Vector<String> commands) throws EJTS3ServerQueryException
+	{
+		Vector<PendingCommand> sent = new Vector<PendingCommand>();
+		for (String command : commands)
+		{
+			sent.addElement(sendCommand(command));
+		}
+		
+		Vector<HashMap<String, String>> responses = new Vector<HashMap<String, String>>();
+		for (PendingCommand pending : sent)
+		{
+			responses.addElement(readIncoming(pending));
+		}
+		
+		return responses;
+	}
+	
+	private PendingCommand sendCommand(String command) throws EJTS3ServerQueryException
+	{
+		return sendCommand(new PendingCommand(command));
+	}
+	
+	private PendingCommand sendCommand(PendingCommand pending) throws EJTS3ServerQueryException
+	{
+		String command = pending.getCommand();
+		
+		if (!isConnected())
+			throw new EJTS3ServerQueryException("doCommand(): Not connected to TS3 server!");
+		
+		if (command == null || command.length() == 0)
+			throw new EJTS3ServerQueryException("doCommand(): No command given!");
+		
+		if (DEBUG)
+		{
+			System.out.println("Send command:");
+			System.out.println(command);
+			System.out.println();
+		}
+		
+		synchronized (writeLock)
+		{
+			if (floodGuard != null && !floodGuard.offer(pending))
+			{
+				// Written later by the flood protection.
+				return pending;
+			}
+			
+			queueCommand(pending);
+		}
+		
+		try
+		{
+			writeCommands(pending);
+		}
+		catch (Exception e)
+		{
+			if (DEBUG) e.printStackTrace();
+			throw new EJTS3ServerQueryException("Exception doCommand(): " + e.toString());
+		}
+		
+		return pending;
+	}
+	
+	/**
+	 * Add a command to the pending commands, must be called while holding the write lock.
+	 * It is written by the next call of writeCommands(), after the write lock was released.
+	 */
+	private void queueCommand(PendingCommand pending)
+	{
+		// Queue before writing, the response may arrive before writeLine() returns.
+		pendingCommands.add(pending);
+		unwrittenCommands.add(pending);
+	}
+	
+	/**
+	 * Write all queued commands to the TS3 server in the order they were queued, must be called without holding the write lock.
+	 * Commands which could not be written are removed from the pending commands and completed with an error.
+	 * @param ownCommand A command of the caller, if it cannot be written the exception is thrown instead of completing it.
+	 */
+	private void writeCommands(PendingCommand ownCommand) throws IOException
+	{
+		IOException ownException = null;
+		
+		synchronized (outputLock)
+		{
+			while (true)
+			{
+				PendingCommand pending;
+				synchronized (writeLock)
+				{
+					pending = unwrittenCommands.poll();
+				}
+				if (pending == null)
+				{
+					break;
+				}
+				
+				try
+				{
+					QueryTransport currentTransport = transport;
+					if (currentTransport == null)
+						throw new IOException("Not connected to TS3 server!");
+					
+					pending.markSent();
+					currentTransport.writeLine(pending.getCommand());
+				}
+				catch (IOException e)
+				{
+					pendingCommands.remove(pending);
+					if (pending == ownCommand)
+					{
+						ownException = e;
+					}
+					else
+					{
+						if (DEBUG) e.printStackTrace();
+						pending.complete(createErrorResponse("-1", "Exception doCommand(): " + e.toString()));
+					}
+					continue;
+				}
+				
+				QueryStatistics stats = statistics;
+				if (stats != null)
+				{
+					stats.commandSent(pending.getCommand());
+				}
+			}
+		}
+		
+		if (ownException != null)
+			throw ownException;
+	}
+	
+	private void flushCommands()
+	{
+		try
+		{
+			writeCommands(null);
+		}
+		catch (IOException e)
+		{
+			if (DEBUG) e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Collect performance values of this connection, like command latencies, bytes, rows, error ids and events.<br><br>
+	 * The same QueryStatistics object can be used for many connections to get the values of all of them.
+	 * @param statistics The object which collects the values, or <code>null</code> to stop collecting (default).
+	 * @since 1.2
+	 * @see QueryStatistics
+	 */
+	public void setStatistics(QueryStatistics statistics)
+	{
+		this.statistics = statistics;
+	}
+	
+	/**
+	 * Get the object which collects the performance values of this connection.
+	 * @return The QueryStatistics object or <code>null</code> if no values are collected.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#setStatistics(QueryStatistics)
+	 */
+	public QueryStatistics getStatistics()
+	{
+		return statistics;
+	}
+	
+	/**
+	 * Answer getInfo(), getList() and the typed info and list methods from a short-lived cache, if the response was requested a short time ago.
+	 * getInfoAsync() and getListAsync() do not use the cache.<br><br>
+	 * The same ResponseCache object can be used for many connections to the same TS3 server.
+	 * @param responseCache The cache or <code>null</code> to send every command to the TS3 server (default).
+	 * @since 1.2
+	 * @see ResponseCache
+	 */
+	public void setResponseCache(ResponseCache responseCache)
+	{
+		this.responseCache = responseCache;
+	}
+	
+	/**
+	 * Get the response cache of this connection.
+	 * @return The ResponseCache object or <code>null</code> if responses are not cached.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#setResponseCache(ResponseCache)
+	 */
+	public ResponseCache getResponseCache()
+	{
+		return responseCache;
+	}
+	
+	/**
+	 * Enable the client side flood protection. Commands are only sent as fast as the TS3 server allows,
+	 * additional commands are queued and sent later, so the query client does not get banned for flooding.<br><br>
+	 * Use the flood settings of the TS3 server, by default the TS3 server allows 10 commands within 3 seconds.
+	 * Query clients from the IP whitelist of the TS3 server are not limited and do not need this.
+	 * If the TS3 server still reports flooding, the rate is lowered and restored step by step afterwards.
+	 * @param commands The number of commands allowed within the given time, use 0 to disable the flood protection.
+	 * @param seconds The time in seconds
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#setFloodProtection()
+	 * @see EJTS3ServerQuery#getFloodQueueSize()
+	 */
+	public void setFloodProtection(int commands, int seconds)
+	{
+		synchronized (writeLock)
+		{
+			FloodGuard oldGuard = floodGuard;
+			
+			if (commands <= 0 || seconds <= 0)
+			{
+				floodGuard = null;
+				if (oldGuard != null)
+				{
+					for (PendingCommand pending : oldGuard.drain())
+					{
+						queueCommand(pending);
+					}
+				}
+			}
+			else
+			{
+				floodGuard = new FloodGuard(commands, seconds, writeLock, floodSender);
+				if (oldGuard != null)
+				{
+					floodGuard.takeOver(oldGuard);
+				}
+			}
+		}
+		
+		flushCommands();
+	}
+	
+	/**
+	 * Enable the client side flood protection with the flood settings of the TS3 server.<br><br>
+	 * The settings are read with <code>instanceinfo</code>, which needs the permission to view the server instance informations.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#setFloodProtection(int, int)
+	 */
+	public void setFloodProtection() throws EJTS3ServerQueryException
+	{
+		HashMap<String, String> hmIn = doInternalCommand("instanceinfo");
+		
+		if (!hmIn.get("id").equals("0"))
+			throw new EJTS3ServerQueryException(getErrorString("setFloodProtection()", hmIn.get("id"), hmIn.get("msg"), hmIn.get("extra_msg"), hmIn.get("failed_permid")));
+		
+		HashMap<String, String> instanceInfo = parseLine(hmIn.get("response"));
+		if (instanceInfo == null)
+			throw new EJTS3ServerQueryException("setFloodProtection(): No valid server response found!");
+		
+		int commands = QueryEntry.parseInt(instanceInfo.get("serverinstance_serverquery_flood_commands"), -1);
+		int seconds = QueryEntry.parseInt(instanceInfo.get("serverinstance_serverquery_flood_time"), -1);
+		if (commands <= 0 || seconds <= 0)
+			throw new EJTS3ServerQueryException("setFloodProtection(): TS3 server sent no flood settings!");
+		
+		setFloodProtection(commands, seconds);
+	}
+	
+	/**
+	 * Get the number of commands waiting for the flood protection. These commands are not sent to the TS3 server yet.
+	 * @return The number of queued commands, 0 if the flood protection is disabled.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#setFloodProtection(int, int)
+	 * @see EJTS3ServerQuery#getPendingCommandCount()
+	 */
+	public int getFloodQueueSize()
+	{
+		synchronized (writeLock)
+		{
+			return (floodGuard == null) ? 0 : floodGuard.getQueueSize();
+		}
+	}
+	
+	/**
+	 * Get the number of flood errors the TS3 server reported while the flood protection was enabled.
+	 * Every flood error halves the command rate for a while.
+	 * @return The number of flood errors, 0 if the flood protection is disabled.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#setFloodProtection(int, int)
+	 */
+	public int getFloodErrorCount()
+	{
+		synchronized (writeLock)
+		{
+			return (floodGuard == null) ? 0 : floodGuard.getFloodErrorCount();
+		}
+	}
+	
+	/**
+	 * Poke a client. This opens a message dialog at the selected Teamspeak 3 client with the given message.
+	 * @param clientID The client ID, which should get the message.
+	 * @param msg The message for the message dialog.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 0.4
+	 * 
+	 * @throws EJTS3ServerQueryException
+	 */
+	public void pokeClient(int clientID, String msg) throws EJTS3ServerQueryException
+	{
+		if (!isConnected())
+			throw new EJTS3ServerQueryException("pokeClient(): Not connected to TS3 server!");
+		
+		if (msg == null || msg.length() == 0)
+			throw new EJTS3ServerQueryException("pokeClient(): No message given!");
+		
+		String command = "clientpoke clid=" + Integer.toString(clientID) + " msg=" + encodeTS3String(msg);
+		HashMap<String, String> hmIn = doInternalCommand(command);
+		
+		if (hmIn == null)
 			throw new EJTS3ServerQueryException("Unable to poke client.");
 
 		else if (!hmIn.get("id").equals("0"))
@@ -1173,12 +2291,13 @@ public class EJTS3ServerQuery
 	 */
 	public boolean isConnected()
 	{
-		if (socketQuery == null || in == null || out == null)
+		QueryTransport currentTransport = transport;
+		if (currentTransport == null)
 		{
 			return false;
 		}
 		
-		return socketQuery.isConnected();
+		return currentTransport.isConnected();
 	}
 	
 	/**
@@ -1190,20 +2309,7 @@ public class EJTS3ServerQuery
 	 */
 	public Vector<HashMap<String, String>> parseRawData(String rawData)
 	{
-		if (rawData == null)
-		{
-			return null;
-		}
-		
-		Vector<HashMap<String, String>> formattedData = new Vector<HashMap<String, String>>();
-		
-		StringTokenizer stEntries = new StringTokenizer(rawData, "|", false);
-		while(stEntries.hasMoreTokens())
-		{
-			formattedData.addElement(parseLine(stEntries.nextToken()));
-		}
-		
-		return formattedData;
+		return TS3Codec.parseRows(rawData);
 	}
 	
 	/**
@@ -1221,17 +2327,69 @@ public class EJTS3ServerQuery
 	 */
 	public HashMap<String, String> getInfo(int infoMode, int objectID) throws EJTS3ServerQueryException
 	{
-		String command = getCommand(infoMode, 2);
+		return TS3Codec.parseLine(getInfoResponse(infoMode, objectID), TS3Codec.HASHMAP_ROWS);
+	}
+	
+	/**
+	 * Get informations about the current selected virtual server.
+	 * @return The virtual server informations or <code>null</code> if no response.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#getInfo(int, int)
+	 * @see EJTS3ServerQuery#selectVirtualServer(int)
+	 */
+	public VirtualServerInfo getServerInfo() throws EJTS3ServerQueryException
+	{
+		VirtualServerInfo info = TS3Codec.parseLine(getInfoResponse(INFOMODE_SERVERINFO, 0), VirtualServerInfo.ROWS);
+		if (info != null && !info.containsKey("virtualserver_id"))
+		{
+			info.addField("virtualserver_id", Integer.toString(queryCurrentServerID));
+		}
 		
-		if (command == null)
-			throw new EJTS3ServerQueryException("getInfo(): Unknown infoMode!");
+		return info;
+	}
+	
+	/**
+	 * Get informations about a channel.
+	 * @param channelID A channel ID
+	 * @return The channel informations or <code>null</code> if no response.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#getInfo(int, int)
+	 */
+	public ChannelInfo getChannelInfo(int channelID) throws EJTS3ServerQueryException
+	{
+		ChannelInfo info = TS3Codec.parseLine(getInfoResponse(INFOMODE_CHANNELINFO, channelID), ChannelInfo.ROWS);
+		if (info != null)
+		{
+			info.addField("cid", Integer.toString(channelID));
+		}
 		
-		if (infoMode != INFOMODE_SERVERINFO)
+		return info;
+	}
+	
+	/**
+	 * Get informations about a client.
+	 * @param clientID A client ID
+	 * @return The client informations or <code>null</code> if no response.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#getInfo(int, int)
+	 */
+	public ClientInfo getClientInfo(int clientID) throws EJTS3ServerQueryException
+	{
+		ClientInfo info = TS3Codec.parseLine(getInfoResponse(INFOMODE_CLIENTINFO, clientID), ClientInfo.ROWS);
+		if (info != null)
 		{
-			command += Integer.toString(objectID);
+			info.addField("clid", Integer.toString(clientID));
 		}
 		
-		HashMap<String, String> hmIn = doInternalCommand(command);
+		return info;
+	}
+	
+	private String getInfoResponse(int infoMode, int objectID) throws EJTS3ServerQueryException
+	{
+		HashMap<String, String> hmIn = doCachedCommand(getInfoCommand(infoMode, objectID));
 		
 		if (hmIn == null)
 		{
@@ -1242,9 +2400,52 @@ public class EJTS3ServerQuery
 		else if (hmIn.get("response") == null)
 			throw new EJTS3ServerQueryException("getInfo(): No valid server response found!");
 		
-		HashMap<String, String> info = parseLine(hmIn.get("response"));
+		return hmIn.get("response");
+	}
+	
+	/**
+	 * Asynchronous version of getInfo().
+	 * The ResponseCache is not used, the command is always sent to the TS3 server.
+	 * @param infoMode An INFOMODE constant.
+	 * @param objectID A channel or client ID, use any number for server informations.
+	 * @return A future which completes with a HashMap with the informations as key / value pairs like in the TS3 server response.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#getInfo(int, int)
+	 */
+	public CompletableFuture<HashMap<String, String>> getInfoAsync(int infoMode, int objectID)
+	{
+		String command;
+		try
+		{
+			command = getInfoCommand(infoMode, objectID);
+		}
+		catch (EJTS3ServerQueryException e)
+		{
+			return failedFuture(e);
+		}
+		
+		return doInternalCommandAsync(command, "getInfo()").thenApply(hmIn ->
+		{
+			if (hmIn.get("response") == null)
+				throw new CompletionException(new EJTS3ServerQueryException("getInfo(): No valid server response found!"));
+			
+			return parseLine(hmIn.get("response"));
+		});
+	}
+	
+	private String getInfoCommand(int infoMode, int objectID) throws EJTS3ServerQueryException
+	{
+		String command = getCommand(infoMode, 2);
 		
-		return info;
+		if (command == null)
+			throw new EJTS3ServerQueryException("getInfo(): Unknown infoMode!");
+		
+		if (infoMode != INFOMODE_SERVERINFO)
+		{
+			command += Integer.toString(objectID);
+		}
+		
+		return command;
 	}
 	
 	/**
@@ -1252,39 +2453,53 @@ public class EJTS3ServerQuery
 	 * If the permission ID was found, the HashMap will contain the following keys:<br>
 	 * <code>permid</code> with the permission ID<br>
 	 * <code>permname</code> with the permission name<br>
-	 * <code>permdesc</code> with the permission description (may be empty, if not exist)
+	 * <code>permdesc</code> with the permission description (may be empty, if not exist)<br><br>
+	 * The permissions are looked up in the permission catalogue, which is downloaded only on the first call.
 	 * @param permID A permission ID
 	 * @return A HashMap with the information about the permission ID.
 	 * @throws EJTS3ServerQueryException 
+	 * @see EJTS3ServerQuery#getPermissionCatalogue()
 	 */
 	public HashMap<String, String> getPermissionInfo(int permID) throws EJTS3ServerQueryException
 	{
-		Vector<HashMap<String, String>> permList = getList(LISTMODE_PERMISSIONLIST);
+		PermissionInfo permInfo = getPermissionCatalogue().get(permID);
 		
-		if (permList == null)
-		{
-			return null;
-		}
-		
-		HashMap<String, String> retPermInfo = null;
+		return (permInfo == null) ? null : permInfo.toHashMap();
+	}
+	
+	/**
+	 * Get all permissions of the TS3 server, indexed by permission ID and name.<br><br>
+	 * The permission list is downloaded on the first call and kept until the connection is closed or refreshPermissionCatalogue() is called.
+	 * @return The permission catalogue of the TS3 server.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#refreshPermissionCatalogue()
+	 */
+	public PermissionCatalogue getPermissionCatalogue() throws EJTS3ServerQueryException
+	{
+		PermissionCatalogue catalogue = permissionCatalogue;
 		
-		try
+		if (catalogue == null)
 		{
-			for (HashMap<String, String> permInfo : permList)
-			{
-				if (Integer.parseInt(permInfo.get("permid")) == permID)
-				{
-					retPermInfo = permInfo;
-					break;
-				}
-			}
-		}
-		catch (Exception e)
-		{
-			throw new EJTS3ServerQueryException("getPermissionInfo(): Error while searching permission ID: " + e.toString());
+			catalogue = refreshPermissionCatalogue();
 		}
 		
-		return retPermInfo;
+		return catalogue;
+	}
+	
+	/**
+	 * Download the permission list again and replace the permission catalogue.
+	 * @return The new permission catalogue of the TS3 server.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#getPermissionCatalogue()
+	 */
+	public PermissionCatalogue refreshPermissionCatalogue() throws EJTS3ServerQueryException
+	{
+		PermissionCatalogue catalogue = new PermissionCatalogue(getAllPermissions());
+		permissionCatalogue = catalogue;
+		
+		return catalogue;
 	}
 	
 	/**
@@ -1317,6 +2532,7 @@ public class EJTS3ServerQuery
 	 * @return A Vector which contains a HashMap for each entry with the keys given by the TS3 Server.
 	 * @throws EJTS3ServerQueryException 
 	 * @since 0.4
+	 * @see LogFollower
 	 */
 	public Vector<HashMap<String, String>> getLogEntries(int listLimitCount, int searchMode, long timestamp) throws EJTS3ServerQueryException
 	{
@@ -1342,51 +2558,307 @@ public class EJTS3ServerQuery
 			}
 			else if (searchMode == 1)
 			{
-				command += ">";
+				command += ">";
+			}
+			
+			command += " timestamp=" + Long.toString(timestamp / 1000);
+		}
+		
+		return getList(command);
+	}
+	
+	/**
+	 * Request log lines, used by LogFollower.
+	 * @param listLimitCount How many log lines should be returned, has to be between 1 and 500.
+	 * @param searchMode -1 for lines written before, 1 for lines written after the given second.
+	 * @param timestamp Time stamp in seconds. Use -1 to get the last lines of the log.
+	 * @return The unparsed log lines, an empty Vector if there are no such lines.
+	 */
+	Vector<String> getLogLines(int listLimitCount, int searchMode, long timestamp) throws EJTS3ServerQueryException
+	{
+		if (!isConnected())
+			throw new EJTS3ServerQueryException("getLogEntries(): Not connected to TS3 server!");
+		
+		String command = "logview limitcount=" + Integer.toString(listLimitCount);
+		if (timestamp >= 0)
+		{
+			command += " comparator=" + ((searchMode < 0) ? "<" : ">") + " timestamp=" + Long.toString(timestamp);
+		}
+		
+		HashMap<String, String> hmIn = doInternalCommand(command);
+		
+		Vector<String> lines = new Vector<String>();
+		if (hmIn.get("id").equals(DATABASE_EMPTY_ERROR_ID))
+		{
+			return lines;
+		}
+		else if (!hmIn.get("id").equals("0"))
+			throw new EJTS3ServerQueryException(getErrorString("getLogEntries()", hmIn.get("id"), hmIn.get("msg"), hmIn.get("extra_msg"), hmIn.get("failed_permid")));
+		else if (hmIn.get("response") == null)
+			return lines;
+		
+		for (HashMap<String, String> entry : TS3Codec.parseRows(hmIn.get("response")))
+		{
+			String line = entry.get("l");
+			if (line != null)
+			{
+				lines.addElement(line);
+			}
+		}
+		
+		return lines;
+	}
+	
+	/**
+	 * Get a list from the TS3 server. Use LISTMODE constants to get the wanted list.
+	 * @param listMode Use a LISTMODE constant
+	 * @return A Vector which contains a HashMap for each entry with the keys given by the TS3 Server.
+	 * @throws EJTS3ServerQueryException 
+	 * @see EJTS3ServerQuery#LISTMODE_BANLIST
+	 * @see EJTS3ServerQuery#LISTMODE_CHANNELLIST
+	 * @see EJTS3ServerQuery#LISTMODE_CLIENTDBLIST
+	 * @see EJTS3ServerQuery#LISTMODE_CLIENTLIST
+	 * @see EJTS3ServerQuery#LISTMODE_COMPLAINLIST
+	 * @see EJTS3ServerQuery#LISTMODE_PERMISSIONLIST
+	 * @see EJTS3ServerQuery#LISTMODE_SERVERGROUPLIST
+	 * @see EJTS3ServerQuery#LISTMODE_SERVERLIST
+	 */
+	public Vector<HashMap<String, String>> getList(int listMode) throws EJTS3ServerQueryException
+	{
+		return getList(listMode, null);
+	}
+	
+	/**
+	 * Get a list from the TS3 server. Use LISTMODE constants to get the wanted list.<br><br>
+	 * This method allows to pass many arguments separated with comma, see LISTMODE comments for possible arguments.
+	 * @param listMode Use a LISTMODE constant
+	 * @param arguments A comma separated list of arguments or a single argument for the LISTMODE. Or just <code>null</code> if no arguments needed.
+	 * @return A Vector which contains a HashMap for each entry with the keys given by the TS3 Server.
+	 * @throws EJTS3ServerQueryException 
+	 * @see EJTS3ServerQuery#LISTMODE_BANLIST
+	 * @see EJTS3ServerQuery#LISTMODE_CHANNELLIST
+	 * @see EJTS3ServerQuery#LISTMODE_CLIENTDBLIST
+	 * @see EJTS3ServerQuery#LISTMODE_CLIENTLIST
+	 * @see EJTS3ServerQuery#LISTMODE_COMPLAINLIST
+	 * @see EJTS3ServerQuery#LISTMODE_PERMISSIONLIST
+	 * @see EJTS3ServerQuery#LISTMODE_SERVERGROUPLIST
+	 * @see EJTS3ServerQuery#LISTMODE_SERVERLIST
+	 */
+	public Vector<HashMap<String, String>> getList(int listMode, String arguments) throws EJTS3ServerQueryException
+	{
+		return getList(getListCommand(listMode, arguments));
+	}
+	
+	/**
+	 * Get a list from the TS3 server and pass every entry to the handler as soon as it was received.<br><br>
+	 * Unlike getList(int, String) the entries are not collected, so even very large lists need only memory for one entry at a time.
+	 * This method returns after the last entry was passed to the handler.
+	 * @param listMode Use a LISTMODE constant
+	 * @param arguments A comma separated list of arguments or a single argument for the LISTMODE. Or just <code>null</code> if no arguments needed.
+	 * @param handler Receives the entries of the list
+	 * @return The number of entries passed to the handler.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#getList(int, String)
+	 * @see ListEntryHandler
+	 */
+	public int getList(int listMode, String arguments, ListEntryHandler handler) throws EJTS3ServerQueryException
+	{
+		if (handler == null)
+			throw new EJTS3ServerQueryException("getList(): No ListEntryHandler given!");
+		
+		PendingCommand pending = new PendingCommand(getListCommand(listMode, arguments), handler);
+		HashMap<String, String> hmIn = doInternalCommand(pending);
+		
+		if (!hmIn.get("id").equals("0"))
+			throw new EJTS3ServerQueryException(getErrorString("getList()", hmIn.get("id"), hmIn.get("msg"), hmIn.get("extra_msg"), hmIn.get("failed_permid")));
+		
+		if (pending.getEntryHandlerException() != null)
+			throw new EJTS3ServerQueryException("getList(): Exception in ListEntryHandler: " + pending.getEntryHandlerException().toString());
+		
+		return pending.getEntryCount();
+	}
+	
+	/**
+	 * Asynchronous version of getList(int).
+	 * The ResponseCache is not used, the command is always sent to the TS3 server.
+	 * @param listMode Use a LISTMODE constant
+	 * @return A future which completes with a Vector which contains a HashMap for each entry with the keys given by the TS3 Server.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#getList(int)
+	 */
+	public CompletableFuture<Vector<HashMap<String, String>>> getListAsync(int listMode)
+	{
+		return getListAsync(listMode, null);
+	}
+	
+	/**
+	 * Asynchronous version of getList(int, String).
+	 * The ResponseCache is not used, the command is always sent to the TS3 server.
+	 * @param listMode Use a LISTMODE constant
+	 * @param arguments A comma separated list of arguments or a single argument for the LISTMODE. Or just <code>null</code> if no arguments needed.
+	 * @return A future which completes with a Vector which contains a HashMap for each entry with the keys given by the TS3 Server.
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#getList(int, String)
+	 */
+	public CompletableFuture<Vector<HashMap<String, String>>> getListAsync(int listMode, String arguments)
+	{
+		String command;
+		try
+		{
+			command = getListCommand(listMode, arguments);
+		}
+		catch (EJTS3ServerQueryException e)
+		{
+			return failedFuture(e);
+		}
+		
+		return doInternalCommandAsync(command, "getList()").thenApply(hmIn ->
+		{
+			if (hmIn.get("response") == null)
+				throw new CompletionException(new EJTS3ServerQueryException("getList(): No valid server response found!"));
+			
+			return parseRawData(hmIn.get("response"));
+		});
+	}
+	
+	/**
+	 * Get the client list, with the client values already parsed.
+	 * @param arguments A comma separated list of arguments or a single argument, see LISTMODE_CLIENTLIST. Or just <code>null</code> if no arguments needed.
+	 * @return A Vector which contains a ClientInfo for each client.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#LISTMODE_CLIENTLIST
+	 */
+	public Vector<ClientInfo> getClientList(String arguments) throws EJTS3ServerQueryException
+	{
+		return getList(getListCommand(LISTMODE_CLIENTLIST, arguments), ClientInfo.ROWS);
+	}
+	
+	/**
+	 * Get the client database list, with the client values already parsed.
+	 * @param arguments A comma separated list of arguments or a single argument, see LISTMODE_CLIENTDBLIST. Or just <code>null</code> if no arguments needed.
+	 * @return A Vector which contains a ClientInfo for each database entry.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see EJTS3ServerQuery#LISTMODE_CLIENTDBLIST
+	 */
+	public Vector<ClientInfo> getClientDBList(String arguments) throws EJTS3ServerQueryException
+	{
+		return getList(getListCommand(LISTMODE_CLIENTDBLIST, arguments), ClientInfo.ROWS);
+	}
+	
+	/**
+	 * Iterate over the whole client database of the current selected virtual server.<br><br>
+	 * The entries are requested page by page with <code>clientdblist start=... duration=...</code>, while the current page is consumed the next pages are already requested.
+	 * @param pageSize The number of entries requested with one command, at most 200.
+	 * @param prefetchPages The number of pages requested before they are needed, at least 1.
+	 * @return An iterator over all entries of the client database.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
+	 * @see ClientDBIterator
+	 * @see QuerySessionPool#getClientDBIterator(int, int, int)
+	 * @see EJTS3ServerQuery#LISTMODE_CLIENTDBLIST
+	 */
+	public ClientDBIterator getClientDBIterator(int pageSize, int prefetchPages) throws EJTS3ServerQueryException
+	{
+		if (!isConnected())
+			throw new EJTS3ServerQueryException("getClientDBIterator(): Not connected to TS3 server!");
+		
+		return new ClientDBIterator(new ClientDBIterator.PageSource()
+		{
+			public CompletableFuture<Vector<ClientInfo>> fetchPage(int start, int duration)
+			{
+				return getClientDBPageAsync(start, duration);
+			}
+		}, pageSize, prefetchPages);
+	}
+	
+	/**
+	 * Request one page of the client database.
+	 * @return A future which completes with the entries, or an empty Vector if start is behind the last entry.
+	 */
+	CompletableFuture<Vector<ClientInfo>> getClientDBPageAsync(int start, int duration)
+	{
+		return doInternalCommandAsync("clientdblist start=" + Integer.toString(start) + " duration=" + Integer.toString(duration), null).thenApply(hmIn ->
+		{
+			if (hmIn.get("id").equals(DATABASE_EMPTY_ERROR_ID))
+			{
+				return new Vector<ClientInfo>();
 			}
+			else if (!hmIn.get("id").equals("0"))
+				throw new CompletionException(new EJTS3ServerQueryException(getErrorString("getClientDBIterator()", hmIn.get("id"), hmIn.get("msg"), hmIn.get("extra_msg"), hmIn.get("failed_permid"))));
+			else if (hmIn.get("response") == null)
+				throw new CompletionException(new EJTS3ServerQueryException("getClientDBIterator(): No valid server response found!"));
 			
-			command += " timestamp=" + Long.toString(timestamp / 1000);
-		}
-		
-		return getList(command);
+			return TS3Codec.parseRows(hmIn.get("response"), ClientInfo.ROWS);
+		});
 	}
 	
 	/**
-	 * Get a list from the TS3 server. Use LISTMODE constants to get the wanted list.
-	 * @param listMode Use a LISTMODE constant
-	 * @return A Vector which contains a HashMap for each entry with the keys given by the TS3 Server.
+	 * Get the channel list, with the channel values already parsed.
+	 * @param arguments A comma separated list of arguments or a single argument, see LISTMODE_CHANNELLIST. Or just <code>null</code> if no arguments needed.
+	 * @return A Vector which contains a ChannelInfo for each channel.
 	 * @throws EJTS3ServerQueryException 
-	 * @see EJTS3ServerQuery#LISTMODE_BANLIST
+	 * @since 1.2
 	 * @see EJTS3ServerQuery#LISTMODE_CHANNELLIST
-	 * @see EJTS3ServerQuery#LISTMODE_CLIENTDBLIST
-	 * @see EJTS3ServerQuery#LISTMODE_CLIENTLIST
-	 * @see EJTS3ServerQuery#LISTMODE_COMPLAINLIST
-	 * @see EJTS3ServerQuery#LISTMODE_PERMISSIONLIST
-	 * @see EJTS3ServerQuery#LISTMODE_SERVERGROUPLIST
+	 */
+	public Vector<ChannelInfo> getChannelList(String arguments) throws EJTS3ServerQueryException
+	{
+		return getList(getListCommand(LISTMODE_CHANNELLIST, arguments), ChannelInfo.ROWS);
+	}
+	
+	/**
+	 * Get the virtual server list, with the server values already parsed.
+	 * @param arguments A comma separated list of arguments or a single argument, see LISTMODE_SERVERLIST. Or just <code>null</code> if no arguments needed.
+	 * @return A Vector which contains a VirtualServerInfo for each virtual server.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
 	 * @see EJTS3ServerQuery#LISTMODE_SERVERLIST
 	 */
-	public Vector<HashMap<String, String>> getList(int listMode) throws EJTS3ServerQueryException
+	public Vector<VirtualServerInfo> getServerList(String arguments) throws EJTS3ServerQueryException
 	{
-		return getList(listMode, null);
+		return getList(getListCommand(LISTMODE_SERVERLIST, arguments), VirtualServerInfo.ROWS);
 	}
 	
 	/**
-	 * Get a list from the TS3 server. Use LISTMODE constants to get the wanted list.<br><br>
-	 * This method allows to pass many arguments separated with comma, see LISTMODE comments for possible arguments.
-	 * @param listMode Use a LISTMODE constant
-	 * @param arguments A comma separated list of arguments or a single argument for the LISTMODE. Or just <code>null</code> if no arguments needed.
-	 * @return A Vector which contains a HashMap for each entry with the keys given by the TS3 Server.
+	 * Get the ban list of the current selected virtual server.
+	 * @return A Vector which contains a BanInfo for each ban.
 	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
 	 * @see EJTS3ServerQuery#LISTMODE_BANLIST
-	 * @see EJTS3ServerQuery#LISTMODE_CHANNELLIST
-	 * @see EJTS3ServerQuery#LISTMODE_CLIENTDBLIST
-	 * @see EJTS3ServerQuery#LISTMODE_CLIENTLIST
+	 */
+	public Vector<BanInfo> getBanList() throws EJTS3ServerQueryException
+	{
+		return getList(getListCommand(LISTMODE_BANLIST, null), BanInfo.ROWS);
+	}
+	
+	/**
+	 * Get the complain list of the current selected virtual server.
+	 * @param arguments A client database ID to get only the complaints about this client. Or just <code>null</code> to get all complaints.
+	 * @return A Vector which contains a ComplainInfo for each complaint.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
 	 * @see EJTS3ServerQuery#LISTMODE_COMPLAINLIST
+	 */
+	public Vector<ComplainInfo> getComplainList(String arguments) throws EJTS3ServerQueryException
+	{
+		return getList(getListCommand(LISTMODE_COMPLAINLIST, arguments), ComplainInfo.ROWS);
+	}
+	
+	/**
+	 * Get all permissions known by the TS3 server.
+	 * @return A Vector which contains a PermissionInfo for each permission.
+	 * @throws EJTS3ServerQueryException 
+	 * @since 1.2
 	 * @see EJTS3ServerQuery#LISTMODE_PERMISSIONLIST
-	 * @see EJTS3ServerQuery#LISTMODE_SERVERGROUPLIST
-	 * @see EJTS3ServerQuery#LISTMODE_SERVERLIST
 	 */
-	public Vector<HashMap<String, String>> getList(int listMode, String arguments) throws EJTS3ServerQueryException
+	public Vector<PermissionInfo> getAllPermissions() throws EJTS3ServerQueryException
+	{
+		return getList(getListCommand(LISTMODE_PERMISSIONLIST, null), PermissionInfo.ROWS);
+	}
+	
+	private String getListCommand(int listMode, String arguments) throws EJTS3ServerQueryException
 	{
 		String command = getCommand(listMode, 1);
 		
@@ -1407,144 +2879,338 @@ public class EJTS3ServerQuery
 			}
 		}
 		
-		return getList(command);
+		return command;
 	}
 	
 	private Vector<HashMap<String, String>> getList(String command) throws EJTS3ServerQueryException
+	{
+		return getList(command, TS3Codec.HASHMAP_ROWS);
+	}
+	
+	private <T> Vector<T> getList(String command, TS3Codec.RowBuilder<T> rows) throws EJTS3ServerQueryException
 	{
 		if (!isConnected())
 			throw new EJTS3ServerQueryException("getList(): Not connected to TS3 server!");
 				
-		HashMap<String, String> hmIn = doInternalCommand(command);
+		HashMap<String, String> hmIn = doCachedCommand(command);
 		
 		if (hmIn == null)
 			throw new EJTS3ServerQueryException("Cannot get list");
 		
-		Vector<HashMap<String, String>> list;
+		Vector<T> list;
 		
 		if (!hmIn.get("id").equals("0"))
 			throw new EJTS3ServerQueryException(getErrorString("getList()", hmIn.get("id"), hmIn.get("msg"), hmIn.get("extra_msg"), hmIn.get("failed_permid")));
 		else if (hmIn.get("response") == null)
 			throw new EJTS3ServerQueryException("getList(): No valid server response found!");
 		
-		list = parseRawData(hmIn.get("response"));
+		list = TS3Codec.parseRows(hmIn.get("response"), rows);
 				
 		return list;
 	}
 	
-	private HashMap<String, String> readIncoming()
+	/**
+	 * Like doInternalCommand(), but answers from the response cache if possible and caches successful responses.
+	 */
+	private HashMap<String, String> doCachedCommand(String command) throws EJTS3ServerQueryException
 	{
-		String inData = "";
-		HashMap<String, String> hmIn = new HashMap<String, String>();
-		String temp;
+		ResponseCache cache = responseCache;
+		if (cache == null)
+		{
+			return doInternalCommand(command);
+		}
 		
-		if (!isConnected())
+		int serverID = queryCurrentServerID;
+		String response = cache.get(serverID, command);
+		if (response != null)
 		{
-			hmIn.put("id", "-2");
-			hmIn.put("msg", "readIncoming(): Not connected to TS3 server!");
+			HashMap<String, String> hmIn = createErrorResponse("0", "ok");
+			hmIn.put("response", response);
 			return hmIn;
 		}
 		
-		if (DEBUG)
+		HashMap<String, String> hmIn = doInternalCommand(command);
+		if (hmIn != null && "0".equals(hmIn.get("id")))
 		{
-			System.out.println("Read incoming:");
+			cache.put(serverID, command, hmIn.get("response"));
 		}
-		
-		while (true)
+		return hmIn;
+	}
+	
+	private HashMap<String, String> readIncoming(PendingCommand pending)
+	{
+		try
 		{
-			try
+			while (true)
 			{
-				temp = in.readLine();
-				if (DEBUG)
+				// A command held back by the flood protection is not sent yet, so it cannot time out.
+				long sent = pending.getSentTime();
+				if (sent == 0)
+				{
+					try
+					{
+						return pending.get(1000, TimeUnit.MILLISECONDS);
+					}
+					catch (TimeoutException e1)
+					{
+						continue;
+					}
+				}
+				
+				// Like a socket read timeout: give up after 10 seconds without receiving anything, even if a long response takes more time.
+				QueryTransport currentTransport = transport;
+				long lastActivity = Math.max(sent, currentTransport != null ? currentTransport.getLastReadTime() : sent);
+				long wait = lastActivity + 10000 - System.currentTimeMillis();
+				try
+				{
+					return pending.get(Math.max(wait, 1), TimeUnit.MILLISECONDS);
+				}
+				catch (TimeoutException e1)
 				{
-					System.out.println(temp);
+					if (currentTransport != null && currentTransport.getLastReadTime() > lastActivity)
+					{
+						continue;
+					}
+					
+					closeAfterReadError("-2", "Closed TS3 Connection, Exception readIncoming(): " + e1.toString());
+					return pending.join();
 				}
 			}
-			catch (SocketTimeoutException e1)
+		}
+		catch (Exception e)
+		{
+			return createErrorResponse("-1", "Exception readIncoming(): " + e.toString());
+		}
+	}
+	
+	/**
+	 * Start the reader, which receives all incoming lines as soon as they arrive.
+	 * Notify lines are passed to handleAction() immediately, all other lines complete the pending commands.
+	 */
+	private void startReader() throws IOException
+	{
+		final QueryTransport readTransport = transport;
+		readTransport.startReading(new QueryTransport.LineHandler()
+		{
+			/* The listeners selected by wantsLine() for the next line, only used by the reader thread. */
+			private List<EventListenerRegistry.Registration> selectedListeners = null;
+			
+			public boolean wantsLine(int lineType, byte[] line, int length)
 			{
-				String closeConnectionException = "";
-				try
+				selectedListeners = null;
+				if (DEBUG)
 				{
-					closeTS3Connection();
-				} catch (EJTS3ServerQueryException e)
+					return true;
+				}
+				else if (lineType == LineFramer.LINE_NOTIFY)
+				{
+					// Matched once on the undecoded line, handleAction() passes the event to the selected listeners.
+					selectedListeners = eventListeners.select(line, length);
+					if (!selectedListeners.isEmpty() || wantsEvent(line, length))
+					{
+						return true;
+					}
+				}
+				else if (lineType == LineFramer.LINE_ERROR || pendingCommands.peek() != null)
+				{
+					return true;
+				}
+				
+				// Nobody needs this line, so it is only counted and not decoded.
+				QueryStatistics stats = statistics;
+				if (stats != null)
 				{
-					closeConnectionException += "   " + e.getMessage();
+					stats.dataReceived(length);
+					if (lineType == LineFramer.LINE_NOTIFY)
+					{
+						stats.eventReceived();
+					}
 				}
-				hmIn.put("id", "-2");
-				hmIn.put("msg", "Closed TS3 Connection, Exception readIncoming(): " + e1.toString() + closeConnectionException);
-				return hmIn;
+				return false;
 			}
-			catch (SocketException e2)
+			
+			public void lineReceived(String line)
 			{
-				String closeConnectionException = "";
-				try
+				if (DEBUG)
 				{
-					closeTS3Connection();
-				} catch (EJTS3ServerQueryException e)
+					System.out.println(line);
+				}
+				
+				QueryStatistics stats = statistics;
+				if (stats != null)
+				{
+					stats.dataReceived(line);
+				}
+				
+				// Lines delivered without wantsLine() select their listeners in handleAction().
+				List<EventListenerRegistry.Registration> selected = selectedListeners;
+				selectedListeners = null;
+				
+				if (readTransport == transport)
 				{
-					closeConnectionException += "   " + e.getMessage();
+					routeLine(line, selected);
 				}
-				hmIn.put("id", "-2");
-				hmIn.put("msg", "Closed TS3 Connection, Exception readIncoming(): " + e2.toString() + closeConnectionException);
-				return hmIn;
 			}
-			catch (Exception e)
+			
+			public boolean wantsEntries()
 			{
-				hmIn.put("id", "-1");
-				hmIn.put("msg", "Exception readIncoming(): " + e.toString());
-				return hmIn;
+				PendingCommand head = pendingCommands.peek();
+				return head != null && head.isStreaming();
 			}
 			
-			if (temp == null)
+			public void entryReceived(String entry)
 			{
-				String closeConnectionException = "";
-				try
+				QueryStatistics stats = statistics;
+				if (stats != null)
 				{
-					closeTS3Connection();
-				} catch (EJTS3ServerQueryException e)
+					stats.dataReceived(entry);
+				}
+				
+				PendingCommand head = pendingCommands.peek();
+				if (head != null && head.isStreaming() && readTransport == transport)
 				{
-					closeConnectionException += "   " + e.getMessage();
+					head.deliverEntry(parseLine(entry));
 				}
-				hmIn.put("id", "-10");
-				hmIn.put("msg", "readIncoming(): null object, maybe connection to TS3 server interrupted." + closeConnectionException);
-				return hmIn;
 			}
 			
-			// Jump out of the loop when reached the end of the server response.
-			if (temp.startsWith("error "))
+			public void readFailed(IOException cause)
 			{
-				break;
+				if (readTransport != transport)
+				{
+					return;  // Connection was closed or replaced already
+				}
+				
+				if (cause == null)
+				{
+					closeAfterReadError("-10", "readIncoming(): null object, maybe connection to TS3 server interrupted.");
+				}
+				else
+				{
+					closeAfterReadError("-2", "Closed TS3 Connection, Exception readIncoming(): " + cause.toString());
+				}
+			}
+		});
+	}
+	
+	private void routeLine(String temp, List<EventListenerRegistry.Registration> selectedListeners)
+	{
+		if (handleAction(temp, selectedListeners)) // Parse notify messages
+		{
+			return;
+		}
+		
+		PendingCommand head = pendingCommands.peek();
+		if (head == null)
+		{
+			if (DEBUG) System.out.println("Ignored line without pending command: " + temp);
+			return;
+		}
+		
+		// The error line is the end of the server response.
+		if (temp.startsWith("error "))
+		{
+			// Creates a hash map with the parsed error id and message.
+			HashMap<String, String> hmIn = parseLine(temp);
+			
+			// Puts the server response in the hash map.
+			hmIn.put("response", head.getResponse());
+			
+			QueryStatistics stats = statistics;
+			if (stats != null)
+			{
+				int rows = head.isStreaming() ? head.getEntryCount() : QueryStatistics.countRows(hmIn.get("response"));
+				stats.commandCompleted(head.getCommand(), head.getElapsedNanos(), rows, hmIn.get("id"));
 			}
 			
-			// Save non empty lines of the response and add a new line
-			if (temp.length() > 2)
+			if (FloodGuard.FLOOD_ERROR_ID.equals(hmIn.get("id")))
 			{
-				if (!handleAction(temp)) // Parse notify messages
+				synchronized (writeLock)
 				{
-					if (inData.length() != 0)
+					if (floodGuard != null)
 					{
-						inData += System.getProperty("line.separator", "\n");
+						floodGuard.floodErrorReceived();
 					}
-					inData += temp;
 				}
 			}
+			
+			pendingCommands.poll();
+			head.complete(hmIn);
+		}
+		else if (temp.length() > 2)
+		{
+			if (head.isStreaming())
+			{
+				for (HashMap<String, String> entry : parseRawData(temp))
+				{
+					head.deliverEntry(entry);
+				}
+			}
+			else
+			{
+				head.appendResponse(temp);
+			}
+		}
+	}
+	
+	private void closeAfterReadError(String errorID, String message)
+	{
+		QueryStatistics stats = statistics;
+		if (stats != null)
+		{
+			stats.connectionLost();
 		}
 		
-		// Creates a hash map with the parsed error id and message.
-		hmIn = parseLine(temp);
-		if (hmIn == null)
+		// Take the pending commands first, so they get the real reason instead of the one from closeTS3Connection().
+		Vector<PendingCommand> failed = new Vector<PendingCommand>();
+		PendingCommand pending;
+		while ((pending = pendingCommands.poll()) != null)
 		{
-			hmIn = new HashMap<String, String>();
-			hmIn.put("id", "-10");
-			hmIn.put("msg", "readIncoming(): null object, maybe connection to TS3 server interrupted.");
+			failed.add(pending);
 		}
-		else
+		failed.addAll(drainFloodQueue());
+		
+		String closeConnectionException = "";
+		try
 		{
-			// Puts the server response in the hash map.
-			hmIn.put("response", inData);
+			closeTS3Connection();
+		} catch (EJTS3ServerQueryException e)
+		{
+			closeConnectionException += "   " + e.getMessage();
+		}
+		
+		for (PendingCommand failedCommand : failed)
+		{
+			failedCommand.complete(createErrorResponse(errorID, message + closeConnectionException));
+		}
+	}
+	
+	private void failPendingCommands(String errorID, String message)
+	{
+		PendingCommand pending;
+		while ((pending = pendingCommands.poll()) != null)
+		{
+			pending.complete(createErrorResponse(errorID, message));
 		}
 		
-		eventNotifyCheckActive = true;
+		for (PendingCommand queued : drainFloodQueue())
+		{
+			queued.complete(createErrorResponse(errorID, message));
+		}
+	}
+	
+	private Vector<PendingCommand> drainFloodQueue()
+	{
+		synchronized (writeLock)
+		{
+			return (floodGuard == null) ? new Vector<PendingCommand>() : floodGuard.drain();
+		}
+	}
+	
+	private HashMap<String, String> createErrorResponse(String errorID, String message)
+	{
+		HashMap<String, String> hmIn = new HashMap<String, String>();
+		hmIn.put("id", errorID);
+		hmIn.put("msg", message);
 		return hmIn;
 	}
 	
@@ -1559,23 +3225,7 @@ public class EJTS3ServerQuery
 	 */
 	public String encodeTS3String(String str)
 	{
-		str = str.replace("\\", "\\\\");
-		str = str.replace(" ", "\\s");
-		str = str.replace("/", "\\/");
-		str = str.replace("|", "\\p");
-		str = str.replace("\b", "\\b");
-		str = str.replace("\f", "\\f");
-		str = str.replace("\n", "\\n");
-		str = str.replace("\r", "\\r");
-		str = str.replace("\t", "\\t");
-
-		Character cBell = new Character((char)7); // \a (not supported by Java)
-		Character cVTab = new Character((char)11); // \v (not supported by Java)
-		
-		str = str.replace(cBell.toString(), "\\a");
-		str = str.replace(cVTab.toString(), "\\v");
-		
-		return str;
+		return TS3Codec.encode(str);
 	}
 	
 	/**
@@ -1590,58 +3240,12 @@ public class EJTS3ServerQuery
 	 */
 	public String decodeTS3String(String str)
 	{
-		str = str.replace("\\\\", "\\[$mksave]");
-		str = str.replace("\\s", " ");
-		str = str.replace("\\/", "/");
-		str = str.replace("\\p", "|");
-		str = str.replace("\\b", "\b");
-		str = str.replace("\\f", "\f");
-		str = str.replace("\\n", "\n");
-		str = str.replace("\\r", "\r");
-		str = str.replace("\\t", "\t");
-
-		Character cBell = new Character((char)7); // \a (not supported by Java)
-		Character cVTab = new Character((char)11); // \v (not supported by Java)
-		
-		str = str.replace("\\a", cBell.toString());
-		str = str.replace("\\v", cVTab.toString());
-		
-		str = str.replace("\\[$mksave]", "\\");
-		return str;
+		return TS3Codec.decode(str);
 	}
 	
 	private HashMap<String, String> parseLine(String line)
 	{
-		if (line == null || line.length() == 0)
-		{
-			return null;
-		}
-		
-		StringTokenizer st = new StringTokenizer(line, " ", false);
-		HashMap<String, String> retValue = new HashMap<String, String>();
-		String key;
-		String temp;
-		int pos = -1;
-		
-		while (st.hasMoreTokens())
-		{
-			temp = st.nextToken();
-			
-			// The next 10 lines split the key / value pair at the equal sign and put this into the hash map.
-			pos = temp.indexOf("=");
-			
-			if (pos == -1)
-			{
-				retValue.put(temp, "");
-			}
-			else
-			{
-				key = temp.substring(0, pos);
-				retValue.put(key, decodeTS3String(temp.substring(pos+1)));
-			}
-		}
-		
-		return retValue;
+		return TS3Codec.parseLine(line);
 	}
 	
 	private boolean checkListArguments(int listMode, String argument)
@@ -1824,38 +3428,112 @@ public class EJTS3ServerQuery
 		return null;
 	}
 	
-	private boolean handleAction(final String actionLine)
+	/**
+	 * Check an undecoded notify line.
+	 * @return <code>true</code> if the event is used by the server mirror or the response cache, the listeners are selected by EventListenerRegistry.select().
+	 */
+	private boolean wantsEvent(byte[] line, int length)
+	{
+		if (serverMirror != null)
+		{
+			return true;
+		}
+		
+		ResponseCache cache = responseCache;
+		return cache != null && cache.wantsEvent(line, length);
+	}
+	
+	/**
+	 * @param selectedListeners The listeners selected for the undecoded line, or <code>null</code> to select them now.
+	 * @return <code>true</code> if the line is a notify line.
+	 */
+	private boolean handleAction(final String actionLine, List<EventListenerRegistry.Registration> selectedListeners)
 	{
 		if (!actionLine.startsWith("notify"))
 		{
 			return false;
 		}
 		
-		if (actionClass != null)
+		QueryStatistics stats = statistics;
+		if (stats != null)
 		{
-			final int pos = actionLine.indexOf(" ");
-			
-			if (pos != -1)
+			stats.eventReceived();
+		}
+		
+		ResponseCache cache = responseCache;
+		if (cache != null)
+		{
+			cache.eventReceived(queryCurrentServerID, actionLine);
+		}
+		
+		VirtualServerMirror mirror = serverMirror;
+		if (mirror != null)
+		{
+			try
 			{
-				final String eventType = actionLine.substring(0, pos);
-
-				new Thread(new Runnable()
+				mirror.eventReceived(actionLine);
+			}
+			catch (Exception e)
+			{
+				if (DEBUG) e.printStackTrace();
+			}
+		}
+		
+		if (actionLine.indexOf(' ') != -1)
+		{
+			Runnable delivery = eventListeners.createDelivery(actionLine, selectedListeners, DEBUG);
+			if (delivery != null)
+			{
+				boolean dispatched;
+				synchronized (dispatcherLock)
 				{
-					public void run()
+					if (eventDispatcher == null)
 					{
-						try
-						{
-							actionClass.teamspeakActionPerformed(eventType, parseLine(actionLine.substring(pos+1)));	
-						}
-						catch (Exception e)
-						{
-							if (DEBUG) e.printStackTrace();
-						}						
+						eventDispatcher = new EventDispatcher(eventExecutor, orderedEvents);
 					}
-				}).start();
+					dispatched = eventDispatcher.dispatch(getEventKey(actionLine), delivery);
+				}
+				
+				if (!dispatched && stats != null)
+				{
+					stats.eventDropped();
+				}
 			}
 		}
 		
 		return true;
 	}
+	
+	/**
+	 * Returns the client ID of an unparsed notify line, used to keep the events of a client in order.
+	 * @return The value of <code>clid</code> or <code>invokerid</code>, or -1 if the event has none of them.
+	 */
+	private int getEventKey(String actionLine)
+	{
+		int pos = actionLine.indexOf(" clid=");
+		int start = pos + 6;
+		if (pos == -1)
+		{
+			pos = actionLine.indexOf(" invokerid=");
+			start = pos + 11;
+		}
+		
+		if (pos == -1)
+		{
+			return -1;
+		}
+		
+		int key = 0;
+		for (int i = start; i < actionLine.length(); i++)
+		{
+			char c = actionLine.charAt(i);
+			if (c < '0' || c > '9')
+			{
+				break;
+			}
+			key = key * 10 + (c - '0');
+		}
+		
+		return key;
+	}
 }
@@ -0,0 +1,223 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the event listener callbacks on an Executor instead of the reader.<br>
+ * The reader never runs a callback itself: a callback may send commands and wait for their responses, which only the reader can deliver.
+ * At most DEFAULT_QUEUE_SIZE callbacks are queued or running at the same time, further events are dropped and reported to the caller.<br>
+ * If ordered delivery is enabled, events with the same key (the client ID) are passed through the same serial lane,
+ * so they are delivered one after another in the order they were received. Events of different clients can still run in parallel.
+ * @since 1.2
+ */
+final class EventDispatcher
+{
+	static final int DEFAULT_THREADS = 4;
+	static final int DEFAULT_QUEUE_SIZE = 10000;
+	private static final int LANE_COUNT = 16;
+	private static final AtomicInteger threadNumber = new AtomicInteger(0);
+	
+	private final Executor executor;
+	private final ThreadPoolExecutor defaultPool;
+	private final SerialLane[] lanes;
+	/* Callbacks queued or running, in the executor and in the lanes. */
+	private final AtomicInteger pending = new AtomicInteger(0);
+	
+	/**
+	 * @param executor The executor running the callbacks or <code>null</code> for a default pool.
+	 * @param ordered <code>true</code> to deliver events with the same key in order.
+	 */
+	EventDispatcher(Executor executor, boolean ordered)
+	{
+		this.defaultPool = (executor != null ? null : createDefaultPool());
+		this.executor = (executor != null ? executor : defaultPool);
+		
+		if (ordered)
+		{
+			lanes = new SerialLane[LANE_COUNT];
+			for (int i = 0; i < LANE_COUNT; i++)
+			{
+				lanes[i] = new SerialLane();
+			}
+		}
+		else
+		{
+			lanes = null;
+		}
+	}
+	
+	boolean isOrdered()
+	{
+		return lanes != null;
+	}
+	
+	/**
+	 * Dispatch an event callback.
+	 * @param key The ordering key, usually the client ID, or -1 if the event has no key.
+	 * @param task The callback
+	 * @return <code>false</code> if the event was dropped, because DEFAULT_QUEUE_SIZE callbacks are pending or the executor rejected it.
+	 */
+	boolean dispatch(int key, final Runnable task)
+	{
+		if (pending.incrementAndGet() > DEFAULT_QUEUE_SIZE)
+		{
+			pending.decrementAndGet();
+			return false;
+		}
+		
+		Runnable countedTask = new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					task.run();
+				}
+				finally
+				{
+					pending.decrementAndGet();
+				}
+			}
+		};
+		
+		if (lanes != null)
+		{
+			return lanes[(key < 0 ? 0 : key) % LANE_COUNT].add(countedTask);
+		}
+		
+		try
+		{
+			executor.execute(countedTask);
+			return true;
+		}
+		catch (RejectedExecutionException e)
+		{
+			pending.decrementAndGet();
+			return false;
+		}
+	}
+	
+	/**
+	 * Stop the default pool after the pending callbacks. A given executor is not touched.
+	 */
+	void shutdown()
+	{
+		if (defaultPool != null)
+		{
+			defaultPool.shutdown();
+		}
+	}
+	
+	/**
+	 * Creates a pool of DEFAULT_THREADS daemon threads. The queue is limited by dispatch(), so it never holds more than DEFAULT_QUEUE_SIZE events.
+	 */
+	private static ThreadPoolExecutor createDefaultPool()
+	{
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(DEFAULT_QUEUE_SIZE),
+				new ThreadFactory()
+				{
+					public Thread newThread(Runnable r)
+					{
+						Thread thread = new Thread(r, "EJTS3ServerQuery-Event-" + threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+	
+	/**
+	 * Runs its tasks one after another, using at most one thread of the executor at a time.
+	 */
+	private final class SerialLane implements Runnable
+	{
+		private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+		private boolean scheduled = false;
+		
+		/**
+		 * @return <code>false</code> if the executor rejected the lane, the task is dropped then.
+		 */
+		boolean add(Runnable task)
+		{
+			synchronized (this)
+			{
+				tasks.add(task);
+				if (scheduled)
+				{
+					return true;
+				}
+				scheduled = true;
+			}
+			
+			try
+			{
+				executor.execute(this);
+				return true;
+			}
+			catch (RejectedExecutionException e)
+			{
+				// The lane was not scheduled, so the task is the only one in it.
+				synchronized (this)
+				{
+					tasks.remove(task);
+					scheduled = false;
+				}
+				pending.decrementAndGet();
+				return false;
+			}
+		}
+		
+		public void run()
+		{
+			while (true)
+			{
+				Runnable task;
+				synchronized (this)
+				{
+					task = tasks.poll();
+					if (task == null)
+					{
+						scheduled = false;
+						return;
+					}
+				}
+				
+				try
+				{
+					task.run();
+				}
+				catch (RuntimeException e)
+				{
+					// Keep the lane running for the following events
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * Selects the events passed to a TeamspeakActionListener or TeamspeakEventListener.<br><br>
+ * The filter is checked on the received bytes, before the event is decoded and parsed, so events not wanted by the listener cost almost nothing.
+ * An event is passed to the listener, if any of the added rules matches. A filter without rules drops all events.<br><br>
+ * Example, only private text messages and clients joining the server:<br>
+ * <code>
+ * EventFilter filter = new EventFilter();<br>
+ * filter.addEvent("notifytextmessage", "targetmode=1");<br>
+ * filter.addEvent("notifycliententerview");<br>
+ * query.setTeamspeakActionListener(listener, filter);
+ * </code>
+ * @since 1.2
+ * @see EJTS3ServerQuery#setTeamspeakActionListener(TeamspeakActionListener, EventFilter)
+ * @see EJTS3ServerQuery#addEventListener(Class, TeamspeakEventListener, EventFilter)
+ */
+public final class EventFilter
+{
+	private static final class Rule
+	{
+		final byte[] eventType;
+		final byte[][] conditions;
+		final boolean[] keyOnly;
+		
+		Rule(String eventType, String[] conditions)
+		{
+			this.eventType = eventType.getBytes(LineFramer.UTF8);
+			this.conditions = new byte[conditions.length][];
+			this.keyOnly = new boolean[conditions.length];
+			
+			for (int i = 0; i < conditions.length; i++)
+			{
+				int pos = conditions[i].indexOf('=');
+				if (pos == -1)
+				{
+					this.conditions[i] = conditions[i].getBytes(LineFramer.UTF8);
+					this.keyOnly[i] = true;
+				}
+				else
+				{
+					String condition = conditions[i].substring(0, pos + 1) + TS3Codec.encode(conditions[i].substring(pos + 1));
+					this.conditions[i] = condition.getBytes(LineFramer.UTF8);
+				}
+			}
+		}
+		
+		boolean matches(byte[] line, int length)
+		{
+			if (length <= eventType.length || line[eventType.length] != ' ' || !regionMatches(line, 0, eventType))
+			{
+				return false;
+			}
+			
+			for (int i = 0; i < conditions.length; i++)
+			{
+				if (!contains(line, length, eventType.length, conditions[i], keyOnly[i]))
+				{
+					return false;
+				}
+			}
+			
+			return true;
+		}
+	}
+	
+	private volatile Rule[] rules = new Rule[0];
+	
+	/**
+	 * Pass events of this type to the listener, if all conditions are true.
+	 * @param eventType The event name, like <code>notifytextmessage</code>
+	 * @param conditions Unescaped values the event must contain, like <code>targetmode=1</code>, or only a key like <code>invokeruid</code> if the event must contain the key with any value.
+	 * For piped events like <code>notifyclientmoved</code> with many clients, it is enough if one of the entries contains the value.
+	 * @return This EventFilter
+	 */
+	public synchronized EventFilter addEvent(String eventType, String... conditions)
+	{
+		if (eventType == null || eventType.length() == 0)
+			throw new IllegalArgumentException("No eventType given");
+		
+		Rule[] newRules = new Rule[rules.length + 1];
+		System.arraycopy(rules, 0, newRules, 0, rules.length);
+		newRules[rules.length] = new Rule(eventType, conditions);
+		rules = newRules;
+		
+		return this;
+	}
+	
+	/**
+	 * Check an event line.
+	 * @param actionLine The unparsed notify line
+	 * @return <code>true</code> if any rule matches.
+	 */
+	public boolean matches(String actionLine)
+	{
+		byte[] line = actionLine.getBytes(LineFramer.UTF8);
+		return matches(line, line.length);
+	}
+	
+	/**
+	 * Check an event line, before it is decoded.
+	 */
+	boolean matches(byte[] line, int length)
+	{
+		for (Rule rule : rules)
+		{
+			if (rule.matches(line, length))
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Search <code>key=value</code> or <code>key</code> as a whole parameter, at the start of a parameter and ending at the end of a parameter.
+	 */
+	private static boolean contains(byte[] line, int length, int from, byte[] condition, boolean keyOnly)
+	{
+		for (int start = from + 1; start + condition.length <= length; start++)
+		{
+			byte before = line[start - 1];
+			if ((before != ' ' && before != '|') || !regionMatches(line, start, condition))
+			{
+				continue;
+			}
+			
+			int end = start + condition.length;
+			if (end == length || line[end] == ' ' || line[end] == '|' || (keyOnly && line[end] == '='))
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private static boolean regionMatches(byte[] line, int start, byte[] region)
+	{
+		for (int i = 0; i < region.length; i++)
+		{
+			if (line[start + i] != region[i])
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+}
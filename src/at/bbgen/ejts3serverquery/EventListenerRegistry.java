@@ -0,0 +1,229 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the event listeners of a connection: the TeamspeakActionListener and any number of TeamspeakEventListener.<br><br>
+ * The listeners are selected on the reader thread, the notify line is parsed into typed events only once by the first listener needing them
+ * and the same events are passed to all other listeners.
+ */
+final class EventListenerRegistry
+{
+	/**
+	 * A listener with its filter.
+	 */
+	abstract static class Registration
+	{
+		final EventFilter filter;
+		
+		Registration(EventFilter filter)
+		{
+			this.filter = filter;
+		}
+		
+		abstract Object getListener();
+		
+		abstract void deliver(String eventType, String actionLine, Events events);
+	}
+	
+	private static final class ActionRegistration extends Registration
+	{
+		final TeamspeakActionListener listener;
+		
+		ActionRegistration(TeamspeakActionListener listener, EventFilter filter)
+		{
+			super(filter);
+			this.listener = listener;
+		}
+		
+		Object getListener()
+		{
+			return listener;
+		}
+		
+		void deliver(String eventType, String actionLine, Events events)
+		{
+			listener.teamspeakActionPerformed(eventType, TS3Codec.parseLine(actionLine.substring(eventType.length() + 1)));
+		}
+	}
+	
+	private static final class TypedRegistration<T extends TeamspeakEvent> extends Registration
+	{
+		final Class<T> eventClass;
+		final TeamspeakEventListener<? super T> listener;
+		
+		TypedRegistration(Class<T> eventClass, TeamspeakEventListener<? super T> listener, EventFilter filter)
+		{
+			super(filter);
+			this.eventClass = eventClass;
+			this.listener = listener;
+		}
+		
+		Object getListener()
+		{
+			return listener;
+		}
+		
+		void deliver(String eventType, String actionLine, Events events)
+		{
+			for (TeamspeakEvent event : events.get(actionLine))
+			{
+				if (eventClass.isInstance(event))
+				{
+					listener.eventReceived(eventClass.cast(event));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The typed events of one notify line, parsed on first use.
+	 */
+	private static final class Events
+	{
+		private Vector<TeamspeakEvent> events = null;
+		
+		Vector<TeamspeakEvent> get(String actionLine)
+		{
+			if (events == null)
+			{
+				events = TeamspeakEvent.parse(actionLine);
+			}
+			
+			return events;
+		}
+	}
+	
+	private final CopyOnWriteArrayList<Registration> registrations = new CopyOnWriteArrayList<Registration>();
+	private volatile ActionRegistration actionRegistration = null;
+	
+	/**
+	 * Replace the TeamspeakActionListener.
+	 * @param listener The new listener, or <code>null</code> to only remove the old one.
+	 */
+	synchronized void setActionListener(TeamspeakActionListener listener, EventFilter filter)
+	{
+		ActionRegistration registration = (listener == null) ? null : new ActionRegistration(listener, filter);
+		
+		if (actionRegistration != null)
+		{
+			registrations.remove(actionRegistration);
+		}
+		if (registration != null)
+		{
+			registrations.add(registration);
+		}
+		
+		actionRegistration = registration;
+	}
+	
+	<T extends TeamspeakEvent> void add(Class<T> eventClass, TeamspeakEventListener<? super T> listener, EventFilter filter)
+	{
+		registrations.add(new TypedRegistration<T>(eventClass, listener, filter));
+	}
+	
+	/**
+	 * Remove all registrations of a TeamspeakEventListener.
+	 * @return <code>true</code> if the listener was found.
+	 */
+	boolean remove(TeamspeakEventListener<?> listener)
+	{
+		boolean removed = false;
+		for (Registration registration : registrations)
+		{
+			if (registration.getListener() == listener && registration != actionRegistration)
+			{
+				removed |= registrations.remove(registration);
+			}
+		}
+		
+		return removed;
+	}
+	
+	boolean isEmpty()
+	{
+		return registrations.isEmpty();
+	}
+	
+	/**
+	 * Select the listeners wanting an undecoded notify line.
+	 * @return The selected listeners, an empty List if no listener wants the event.
+	 */
+	List<Registration> select(byte[] line, int length)
+	{
+		Vector<Registration> selected = null;
+		for (Registration registration : registrations)
+		{
+			if (registration.filter == null || registration.filter.matches(line, length))
+			{
+				if (selected == null)
+				{
+					selected = new Vector<Registration>();
+				}
+				selected.addElement(registration);
+			}
+		}
+		
+		return (selected == null) ? Collections.<Registration>emptyList() : selected;
+	}
+	
+	/**
+	 * Create the task passing a notify line to all listeners wanting it, the line is parsed when the task runs.
+	 * @param actionLine The notify line, must contain a space after the event type.
+	 * @param preselected The listeners selected by select() for the undecoded line, or <code>null</code> to select them now.
+	 * @param debug Print the exceptions thrown by the listeners.
+	 * @return The task, or <code>null</code> if no listener wants the event.
+	 */
+	Runnable createDelivery(final String actionLine, List<Registration> preselected, final boolean debug)
+	{
+		byte[] line = (preselected == null) ? actionLine.getBytes(LineFramer.UTF8) : null;
+		final List<Registration> selected = (preselected == null) ? select(line, line.length) : preselected;
+		
+		if (selected.isEmpty())
+		{
+			return null;
+		}
+		
+		final String eventType = actionLine.substring(0, actionLine.indexOf(' '));
+		
+		return new Runnable()
+		{
+			public void run()
+			{
+				Events events = new Events();
+				for (Registration registration : selected)
+				{
+					try
+					{
+						registration.deliver(eventType, actionLine, events);
+					}
+					catch (Exception e)
+					{
+						if (debug) e.printStackTrace();
+					}
+				}
+			}
+		};
+	}
+}
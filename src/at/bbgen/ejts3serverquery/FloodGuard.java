@@ -0,0 +1,255 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.ArrayDeque;
+import java.util.Vector;
+
+/**
+ * Client side flood protection, a sliding window in front of the command path.<br>
+ * The TS3 server allows <code>commands</code> commands within <code>seconds</code> seconds and bans query clients which send more.
+ * The guard keeps the send times of the last commands and writes a command only if the oldest of the last <code>commands</code> sends
+ * is older than <code>seconds</code>, the same check the TS3 server does. Commands which would exceed this rate are queued
+ * and written by a scheduler thread as soon as the window allows it.
+ * When the TS3 server still reports flooding (error 524), the rate is halved and restored step by step afterwards.<br><br>
+ * The guard is not thread safe on its own: all methods must be called while holding the lock given to the constructor,
+ * the same lock that orders the commands of the connection. The scheduler writes its commands after releasing this lock.
+ * @since 1.2
+ */
+final class FloodGuard
+{
+	/**
+	 * Writes the commands of the scheduler.
+	 */
+	interface Sender
+	{
+		/**
+		 * Queue a command for writing. Called while holding the lock.
+		 */
+		public void send(PendingCommand pending);
+		
+		/**
+		 * Write the queued commands. Called without holding the lock.
+		 */
+		public void flush();
+	}
+	
+	/** Error id of the TS3 server for flooding clients. */
+	static final String FLOOD_ERROR_ID = "524";
+	
+	private static final double MIN_PENALTY = 1.0 / 16;
+	
+	/** Added to the period, the TS3 server sees the commands a bit later and not always with the same delay. */
+	private static final long MARGIN_NANOS = 100000000L;
+	
+	private final Object lock;
+	private final Sender sender;
+	private final int commands;
+	private final long periodNanos;
+	private final ArrayDeque<PendingCommand> queue = new ArrayDeque<PendingCommand>();
+	
+	/** Ring of the send times of the last <code>commands</code> commands. */
+	private final long[] sendTimes;
+	private int nextSend = 0;
+	private int sendCount = 0;
+	private double penalty = 1.0;
+	private long lastPenaltyChange;
+	private int floodErrors = 0;
+	private boolean schedulerRunning = false;
+	
+	FloodGuard(int commands, int seconds, Object lock, Sender sender)
+	{
+		this.commands = commands;
+		this.periodNanos = seconds * 1000000000L;
+		this.lock = lock;
+		this.sender = sender;
+		this.sendTimes = new long[commands];
+		this.lastPenaltyChange = System.nanoTime();
+	}
+	
+	/**
+	 * Ask to write a command now.
+	 * @return <code>true</code> if the command can be written now, <code>false</code> if it was queued and will be passed to the Sender later.
+	 */
+	boolean offer(PendingCommand pending)
+	{
+		if (queue.isEmpty() && nanosUntilSend() == 0)
+		{
+			sent();
+			return true;
+		}
+		
+		queue.add(pending);
+		startScheduler();
+		return false;
+	}
+	
+	/**
+	 * Take over the queued commands of a replaced guard.
+	 */
+	void takeOver(FloodGuard oldGuard)
+	{
+		queue.addAll(oldGuard.drain());
+		if (!queue.isEmpty())
+		{
+			startScheduler();
+		}
+	}
+	
+	/**
+	 * The TS3 server reported flooding, so the configured rate is too high for it right now.
+	 */
+	void floodErrorReceived()
+	{
+		long now = System.nanoTime();
+		updatePenalty(now);
+		floodErrors++;
+		penalty = Math.max(MIN_PENALTY, penalty / 2);
+		lastPenaltyChange = now;
+		
+		// Wait a whole period before the next command, the TS3 server counts differently than expected.
+		for (int i = 0; i < sendTimes.length; i++)
+		{
+			sendTimes[i] = now;
+		}
+		sendCount = sendTimes.length;
+	}
+	
+	/**
+	 * Remove all queued commands, used when the connection is closed.
+	 * @return The removed commands in queue order.
+	 */
+	Vector<PendingCommand> drain()
+	{
+		Vector<PendingCommand> drained = new Vector<PendingCommand>(queue);
+		queue.clear();
+		return drained;
+	}
+	
+	int getQueueSize()
+	{
+		return queue.size();
+	}
+	
+	int getFloodErrorCount()
+	{
+		return floodErrors;
+	}
+	
+	/**
+	 * @return The current rate as a fraction of the configured rate, 1.0 if no flood error slowed it down.
+	 */
+	double getPenalty()
+	{
+		return penalty;
+	}
+	
+	private void updatePenalty(long now)
+	{
+		// Every flood period without a new flood error doubles the rate again.
+		while (penalty < 1.0 && now - lastPenaltyChange >= periodNanos)
+		{
+			penalty = Math.min(1.0, penalty * 2);
+			lastPenaltyChange += periodNanos;
+		}
+	}
+	
+	/**
+	 * @return The time until the next command may be written, 0 if it may be written now.
+	 */
+	private long nanosUntilSend()
+	{
+		long now = System.nanoTime();
+		updatePenalty(now);
+		
+		int limit = Math.max(1, (int)(commands * penalty));
+		if (sendCount < limit)
+		{
+			return 0;
+		}
+		
+		long oldest = sendTimes[(nextSend - limit + sendTimes.length) % sendTimes.length];
+		return Math.max(0, oldest + periodNanos + MARGIN_NANOS - now);
+	}
+	
+	private void sent()
+	{
+		sendTimes[nextSend] = System.nanoTime();
+		nextSend = (nextSend + 1) % sendTimes.length;
+		if (sendCount < sendTimes.length)
+		{
+			sendCount++;
+		}
+	}
+	
+	private void startScheduler()
+	{
+		if (schedulerRunning)
+		{
+			return;
+		}
+		schedulerRunning = true;
+		
+		Thread scheduler = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				while (true)
+				{
+					long wait;
+					boolean done;
+					synchronized (lock)
+					{
+						while (!queue.isEmpty() && nanosUntilSend() == 0)
+						{
+							sent();
+							sender.send(queue.poll());
+						}
+						
+						done = queue.isEmpty();
+						if (done)
+						{
+							schedulerRunning = false;
+						}
+						
+						wait = done ? 0 : nanosUntilSend();
+					}
+					
+					// Written without the lock, a slow connection must not block the commands of other threads.
+					sender.flush();
+					if (done)
+					{
+						return;
+					}
+					
+					try
+					{
+						Thread.sleep(Math.max(1, (wait + 999999) / 1000000));
+					}
+					catch (InterruptedException e)
+					{
+						// Keep going, the queued commands must not be lost.
+					}
+				}
+			}
+		}, "EJTS3ServerQuery-FloodGuard");
+		scheduler.setDaemon(true);
+		scheduler.start();
+	}
+}
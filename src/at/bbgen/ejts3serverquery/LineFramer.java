@@ -0,0 +1,176 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Splits the raw bytes received from the TS3 server into lines.<br>
+ * The server terminates lines with <code>\n\r</code>, so both characters are handled as line end and empty lines are dropped.
+ * Bytes are only decoded as UTF-8 once a complete line has been found.<br><br>
+ * If the sink wants entries, a response line is also split at every <code>|</code>, so each entry of a long list can be
+ * handled as soon as it was received. <code>|</code> never occurs inside a multi-byte UTF-8 character, so splitting the bytes is safe.
+ * @since 1.2
+ */
+final class LineFramer
+{
+	/**
+	 * Receives the lines found by a LineFramer.
+	 */
+	interface Sink
+	{
+		/**
+		 * Called for every complete line which was not split into entries, before the line is decoded.
+		 * @param lineType LINE_DATA, LINE_ERROR or LINE_NOTIFY, found by the first bytes of the line.
+		 * @param line The bytes of the line, only valid during this call.
+		 * @param length The number of bytes of the line.
+		 * @return <code>true</code> to receive the line by lineReceived(), <code>false</code> to skip it without decoding.
+		 */
+		public boolean wantsLine(int lineType, byte[] line, int length);
+		
+		/**
+		 * Called for every complete line which was not split into entries or skipped.
+		 * @param line The line without line separator.
+		 */
+		public void lineReceived(String line);
+		
+		/**
+		 * Called at the first <code>|</code> of a response line to decide if the line should be split into entries.
+		 * @return <code>true</code> to receive the line by entryReceived().
+		 */
+		public boolean wantsEntries();
+		
+		/**
+		 * Called for every <code>|</code> separated entry of a split line.
+		 * @param entry The entry without separator.
+		 */
+		public void entryReceived(String entry);
+	}
+	
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/** A line of a command response. */
+	static final int LINE_DATA = 0;
+	/** The <code>error</code> line at the end of a command response. */
+	static final int LINE_ERROR = 1;
+	/** A <code>notify</code> line with an event. */
+	static final int LINE_NOTIFY = 2;
+	
+	private static final byte[] ERROR_PREFIX = { 'e', 'r', 'r', 'o', 'r', ' ' };
+	private static final byte[] NOTIFY_PREFIX = { 'n', 'o', 't', 'i', 'f', 'y' };
+	
+	private byte[] line = new byte[1024];
+	private int length = 0;
+	private boolean splitting = false;
+	
+	/**
+	 * Consume all remaining bytes of the buffer and pass every complete line or entry to the sink.
+	 * An incomplete line at the end of the buffer is kept until the next call.
+	 * @param buffer The received bytes
+	 * @param sink Receiver of the complete lines
+	 */
+	void frame(ByteBuffer buffer, Sink sink)
+	{
+		while (buffer.hasRemaining())
+		{
+			byte b = buffer.get();
+			if (b == '\n' || b == '\r')
+			{
+				if (length > 0)
+				{
+					if (splitting)
+					{
+						sink.entryReceived(new String(line, 0, length, UTF8));
+					}
+					else if (sink.wantsLine(getLineType(line, length), line, length))
+					{
+						sink.lineReceived(new String(line, 0, length, UTF8));
+					}
+					length = 0;
+				}
+				splitting = false;
+			}
+			else if (b == '|' && (splitting || (!isNotify() && sink.wantsEntries())))
+			{
+				splitting = true;
+				if (length > 0)
+				{
+					String entry = new String(line, 0, length, UTF8);
+					length = 0;
+					sink.entryReceived(entry);
+				}
+			}
+			else
+			{
+				if (length == line.length)
+				{
+					byte[] larger = new byte[line.length * 2];
+					System.arraycopy(line, 0, larger, 0, length);
+					line = larger;
+				}
+				line[length++] = b;
+			}
+		}
+	}
+	
+	/**
+	 * Notify lines can contain <code>|</code> as well, but are never split.
+	 */
+	private boolean isNotify()
+	{
+		return startsWith(line, length, NOTIFY_PREFIX);
+	}
+	
+	/**
+	 * Classify a line by its first bytes.
+	 * @return LINE_ERROR, LINE_NOTIFY or LINE_DATA
+	 */
+	static int getLineType(byte[] line, int length)
+	{
+		if (startsWith(line, length, ERROR_PREFIX))
+		{
+			return LINE_ERROR;
+		}
+		else if (startsWith(line, length, NOTIFY_PREFIX))
+		{
+			return LINE_NOTIFY;
+		}
+		
+		return LINE_DATA;
+	}
+	
+	private static boolean startsWith(byte[] line, int length, byte[] prefix)
+	{
+		if (length < prefix.length)
+		{
+			return false;
+		}
+		
+		for (int i = 0; i < prefix.length; i++)
+		{
+			if (line[i] != prefix[i])
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+}
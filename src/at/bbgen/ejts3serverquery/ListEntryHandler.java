@@ -0,0 +1,39 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+
+/**
+ * Implement this interface, if you want to receive the entries of a list while the response is still arriving.
+ * This way large lists like <code>clientdblist</code>, <code>banlist</code> or <code>permissionlist</code> never have to be held in memory at once.<br><br>
+ * <b>Important:</b><br>
+ * The entries are passed by the thread reading from the TS3 server. Return quickly and don't call any methods of the same
+ * EJTS3ServerQuery instance, otherwise the connection stops reading until the method returns.
+ * @since 1.2
+ * @see EJTS3ServerQuery#getList(int, String, ListEntryHandler)
+ */
+public interface ListEntryHandler
+{
+	/**
+	 * This function will be called for every entry of the list, in the order sent by the server.
+	 * @param entry A HashMap which contains all keys of the entry
+	 */
+	public void listEntryReceived(HashMap<String, String> entry);
+}
@@ -0,0 +1,174 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One line of the TS3 server log, like <code>2010-12-12 18:30:01|INFO    |VirtualServer |  1| client connected</code>.<br><br>
+ * The line is split into the time stamp, the log level, the log channel, the virtual server ID and the message.
+ * Lines which do not have this format keep the whole line as message and have no time stamp.
+ * @since 1.2
+ * @see LogFollower
+ */
+public final class LogEntry
+{
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	
+	private final long sequence;
+	private final String line;
+	private final long timestamp;
+	private final String level;
+	private final String channel;
+	private final int serverID;
+	private final String message;
+	
+	LogEntry(long sequence, String line, ZoneId timeZone)
+	{
+		this.sequence = sequence;
+		this.line = line;
+		
+		String[] parts = line.split("\\|", 5);
+		long parsedTimestamp = (parts.length == 5) ? parseTimestamp(parts[0].trim(), timeZone) : -1;
+		
+		if (parsedTimestamp == -1)
+		{
+			this.timestamp = -1;
+			this.level = "";
+			this.channel = "";
+			this.serverID = 0;
+			this.message = line;
+		}
+		else
+		{
+			this.timestamp = parsedTimestamp;
+			this.level = parts[1].trim();
+			this.channel = parts[2].trim();
+			this.serverID = QueryEntry.parseInt(parts[3].trim(), 0);
+			this.message = parts[4].trim();
+		}
+	}
+	
+	/**
+	 * Copy a parsed entry with a new sequence number.
+	 */
+	LogEntry(long sequence, LogEntry entry)
+	{
+		this.sequence = sequence;
+		this.line = entry.line;
+		this.timestamp = entry.timestamp;
+		this.level = entry.level;
+		this.channel = entry.channel;
+		this.serverID = entry.serverID;
+		this.message = entry.message;
+	}
+	
+	/**
+	 * Parse a time stamp like <code>2010-12-12 18:30:01</code> or <code>2010-12-12 18:30:01.123456</code>.
+	 * @return The Java time stamp or -1 if the time stamp could not be parsed.
+	 */
+	static long parseTimestamp(String value, ZoneId timeZone)
+	{
+		if (value.length() < 19)
+		{
+			return -1;
+		}
+		
+		try
+		{
+			long millis = LocalDateTime.parse(value.substring(0, 19), TIMESTAMP_FORMAT).atZone(timeZone).toInstant().toEpochMilli();
+			
+			if (value.length() > 20 && value.charAt(19) == '.')
+			{
+				String fraction = (value.substring(20) + "00").substring(0, 3);
+				millis += QueryEntry.parseInt(fraction, 0);
+			}
+			
+			return millis;
+		}
+		catch (DateTimeException e)
+		{
+			return -1;
+		}
+	}
+	
+	/**
+	 * @return The number of this entry, counting all entries received by the LogFollower, starting with 1.
+	 */
+	public long getSequence()
+	{
+		return sequence;
+	}
+	
+	/**
+	 * @return The Java time stamp of this entry or -1 if the line has no time stamp.
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+	
+	/**
+	 * @return The log level, like <code>INFO</code>, <code>WARNING</code> or <code>ERROR</code>.
+	 */
+	public String getLevel()
+	{
+		return level;
+	}
+	
+	/**
+	 * @return The log channel, like <code>VirtualServer</code> or <code>Query</code>.
+	 */
+	public String getChannel()
+	{
+		return channel;
+	}
+	
+	/**
+	 * @return The virtual server ID or 0 if the entry belongs to the server instance.
+	 */
+	public int getServerID()
+	{
+		return serverID;
+	}
+	
+	/**
+	 * @return The log message
+	 */
+	public String getMessage()
+	{
+		return message;
+	}
+	
+	/**
+	 * @return The whole log line as received from the TS3 server.
+	 */
+	public String getLine()
+	{
+		return line;
+	}
+	
+	public String toString()
+	{
+		return line;
+	}
+}
@@ -0,0 +1,501 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Vector;
+
+/**
+ * Follows the log of the TS3 server, like <code>tail -f</code>.<br><br>
+ * Every poll() requests only the log lines written since the newest line received before, using the time stamp of this line as cursor.
+ * The received lines are parsed to LogEntry objects and kept in a ring buffer of fixed size, so the oldest entries are dropped if the consumers are too slow.
+ * Each entry gets a sequence number, consumers remember the last sequence number they processed and call getEntriesAfter() to get the following entries.<br><br>
+ * Example:<br>
+ * <code>
+ * LogFollower follower = new LogFollower(query, 10000);<br>
+ * follower.start(5000);<br>
+ * long last = 0;<br>
+ * while (true)<br>
+ * {<br>
+ * &nbsp;&nbsp;for (LogEntry entry : follower.getEntriesAfter(last, 60000))<br>
+ * &nbsp;&nbsp;{<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;audit(entry);<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;last = entry.getSequence();<br>
+ * &nbsp;&nbsp;}<br>
+ * }
+ * </code>
+ * @since 1.2
+ * @see EJTS3ServerQuery#getLogEntries(int, int, long)
+ */
+public final class LogFollower
+{
+	/** Maximum number of lines the TS3 server returns for one logview command. */
+	private static final int FETCH_LIMIT = 500;
+	
+	private final EJTS3ServerQuery query;
+	private final Object pollLock = new Object();
+	private volatile ZoneId timeZone = ZoneOffset.UTC;
+	
+	/* Time stamp in seconds of the newest received line, -1 before the first poll. Guarded by pollLock. */
+	private long cursor = -1;
+	/* Number of lines of the cursor second which were already received. Guarded by pollLock. */
+	private int cursorCount = 0;
+	/* Number of polls which could not request all new lines. Guarded by pollLock. */
+	private long gapCount = 0;
+	/* Second with more lines than can be requested at once, it is not requested again. Guarded by pollLock. */
+	private long gapSecond = -1;
+	/* Order of the lines returned by the server, true if newest first, null until lines of different seconds were received. Guarded by pollLock. */
+	private Boolean newestFirst = null;
+	
+	private final LogEntry[] ring;
+	private int ringStart = 0;
+	private int ringSize = 0;
+	private long lastSequence = 0;
+	private long droppedCount = 0;
+	
+	private volatile Thread poller = null;
+	private volatile Exception lastException = null;
+	
+	/**
+	 * Create a follower. Nothing is requested before poll() or start() is called.
+	 * @param query A connected query connection, which is used for the <code>logview</code> commands.
+	 * @param capacity The maximum number of entries kept in memory.
+	 */
+	public LogFollower(EJTS3ServerQuery query, int capacity)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity has to be at least 1");
+		
+		this.query = query;
+		this.ring = new LogEntry[capacity];
+	}
+	
+	/**
+	 * Set the time zone of the time stamps in the log lines.
+	 * @param timeZone The time zone of the TS3 server log, default is UTC.
+	 */
+	public void setTimeZone(ZoneId timeZone)
+	{
+		this.timeZone = timeZone;
+	}
+	
+	/**
+	 * Set the position in the log, the next poll() requests the lines written since this time.
+	 * @param timestamp A Java time stamp or -1 to start with the last lines of the log (default).
+	 */
+	public void setCursor(long timestamp)
+	{
+		synchronized (pollLock)
+		{
+			cursor = (timestamp < 0) ? -1 : timestamp / 1000;
+			cursorCount = 0;
+			gapSecond = -1;
+		}
+	}
+	
+	/**
+	 * Get the position in the log.
+	 * @return The Java time stamp of the newest received line, rounded down to seconds, or -1 if no line was received yet.
+	 */
+	public long getCursor()
+	{
+		synchronized (pollLock)
+		{
+			return (cursor < 0) ? -1 : cursor * 1000;
+		}
+	}
+	
+	/**
+	 * Request the new log lines from the TS3 server and add them to the ring buffer.
+	 * If more than 500 lines were written since the last poll, the log is requested again until all new lines were received.
+	 * This works both with TS3 servers returning the oldest and the newest 500 lines after a time stamp.
+	 * Only if more than 500 lines were written within a single second, some of them cannot be requested, see getGapCount().
+	 * @return The new entries, oldest first.
+	 * @throws EJTS3ServerQueryException 
+	 */
+	public Vector<LogEntry> poll() throws EJTS3ServerQueryException
+	{
+		Vector<LogEntry> added = new Vector<LogEntry>();
+		
+		synchronized (pollLock)
+		{
+			while (true)
+			{
+				// Request the whole cursor second again, the lines of this second which were already received are skipped.
+				Vector<LogEntry> entries = fetch(1, (cursor < 0) ? -1 : ((gapSecond == cursor) ? cursor : cursor - 1));
+				if (entries.size() >= FETCH_LIMIT && cursor >= 0 && !reachesCursor(entries))
+				{
+					// The TS3 server returned only the newest lines, request the older ones down to the cursor.
+					entries = fetchOlder(entries);
+				}
+				
+				int newCount = 0;
+				int skip = cursorCount;
+				for (LogEntry entry : entries)
+				{
+					long second = getSecond(entry);
+					if (cursor >= 0 && second < cursor)
+					{
+						continue;
+					}
+					
+					if (second > cursor)
+					{
+						cursor = second;
+						cursorCount = 0;
+						skip = 0;
+					}
+					else if (skip > 0)
+					{
+						// Counted instead of compared, the same line can be written several times within a second.
+						skip--;
+						continue;
+					}
+					
+					added.addElement(append(entry));
+					cursorCount++;
+					newCount++;
+				}
+				
+				if (entries.size() < FETCH_LIMIT)
+				{
+					break;
+				}
+				else if (newCount == 0)
+				{
+					if (gapSecond == cursor || getSecond(entries.lastElement()) != cursor)
+					{
+						break;
+					}
+					
+					// The TS3 server returned only the oldest lines of the cursor second, continue with the next second.
+					gapCount++;
+					gapSecond = cursor;
+				}
+			}
+		}
+		
+		return added;
+	}
+	
+	/**
+	 * Request up to 500 log lines and sort them, oldest first.
+	 * @param searchMode -1 for lines before, 1 for lines after the second.
+	 * @param second Time stamp in seconds or -1 for the last lines of the log.
+	 */
+	private Vector<LogEntry> fetch(int searchMode, long second) throws EJTS3ServerQueryException
+	{
+		Vector<String> lines = query.getLogLines(FETCH_LIMIT, searchMode, second);
+		
+		Vector<LogEntry> entries = new Vector<LogEntry>(lines.size());
+		for (String line : lines)
+		{
+			entries.addElement(new LogEntry(0, line, timeZone));
+		}
+		if (entries.size() > 1 && entries.firstElement().getTimestamp() != entries.lastElement().getTimestamp())
+		{
+			newestFirst = (entries.firstElement().getTimestamp() > entries.lastElement().getTimestamp());
+		}
+		if (newestFirst != null && newestFirst)
+		{
+			// Reversed to keep the order of lines with the same time stamp, a page may hold a single second only.
+			Collections.reverse(entries);
+		}
+		Collections.sort(entries, new Comparator<LogEntry>()
+		{
+			public int compare(LogEntry entry1, LogEntry entry2)
+			{
+				return Long.compare(entry1.getTimestamp(), entry2.getTimestamp());
+			}
+		});
+		
+		return entries;
+	}
+	
+	/**
+	 * Check if the lines start at the cursor with all lines of the cursor second received before.
+	 * Guarded by pollLock.
+	 */
+	private boolean reachesCursor(Vector<LogEntry> entries)
+	{
+		int count = 0;
+		for (LogEntry entry : entries)
+		{
+			long second = getSecond(entry);
+			if (second > cursor)
+			{
+				break;
+			}
+			else if (second == cursor)
+			{
+				count++;
+			}
+		}
+		
+		return count >= cursorCount && (count > 0 || getSecond(entries.firstElement()) <= cursor);
+	}
+	
+	/**
+	 * Request the lines between the cursor and the given lines, for TS3 servers returning the newest lines after the cursor.
+	 * Guarded by pollLock.
+	 * @param entries The newest lines, oldest first
+	 * @return All lines since the cursor second, oldest first
+	 */
+	private Vector<LogEntry> fetchOlder(Vector<LogEntry> entries) throws EJTS3ServerQueryException
+	{
+		while (true)
+		{
+			long oldest = getSecond(entries.firstElement());
+			
+			// Up to and including the oldest second, since the lines of this second may be incomplete.
+			Vector<LogEntry> older = fetch(-1, oldest + 1);
+			
+			// Keep the lines of the oldest second from the response which has more of them.
+			boolean olderComplete = (countSecond(older, oldest) >= countSecond(entries, oldest));
+			Vector<LogEntry> merged = new Vector<LogEntry>(older.size() + entries.size());
+			for (LogEntry entry : older)
+			{
+				if (getSecond(entry) < oldest || (olderComplete && getSecond(entry) == oldest))
+				{
+					merged.addElement(entry);
+				}
+			}
+			for (LogEntry entry : entries)
+			{
+				if (getSecond(entry) > oldest || (!olderComplete && getSecond(entry) == oldest))
+				{
+					merged.addElement(entry);
+				}
+			}
+			
+			if (older.size() < FETCH_LIMIT || getSecond(older.firstElement()) < cursor)
+			{
+				return merged;
+			}
+			else if (getSecond(older.firstElement()) == oldest)
+			{
+				// More lines in one second than can be requested at once, the older lines are lost.
+				gapCount++;
+				gapSecond = oldest;
+				return merged;
+			}
+			
+			entries = merged;
+		}
+	}
+	
+	private int countSecond(Vector<LogEntry> entries, long second)
+	{
+		int count = 0;
+		for (LogEntry entry : entries)
+		{
+			if (getSecond(entry) == second)
+			{
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * @return The second of the entry, lines without time stamp belong to the cursor second.
+	 */
+	private long getSecond(LogEntry entry)
+	{
+		return (entry.getTimestamp() < 0) ? cursor : entry.getTimestamp() / 1000;
+	}
+	
+	/**
+	 * Get the number of polls which could not request all new lines, because more than 500 lines were written within one second.
+	 * The lines missed by these polls are not in the ring buffer.
+	 * @return The number of incomplete polls
+	 */
+	public long getGapCount()
+	{
+		synchronized (pollLock)
+		{
+			return gapCount;
+		}
+	}
+	
+	/**
+	 * Call poll() regularly in a background thread, until stop() is called.
+	 * Exceptions of poll() do not stop the thread, the last one is returned by getLastException().
+	 * @param intervalMillis The time between two polls in milliseconds.
+	 */
+	public synchronized void start(final long intervalMillis)
+	{
+		if (poller != null)
+		{
+			return;
+		}
+		
+		Thread thread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				while (poller == Thread.currentThread())
+				{
+					try
+					{
+						poll();
+						lastException = null;
+					}
+					catch (Exception e)
+					{
+						lastException = e;
+					}
+					
+					try
+					{
+						Thread.sleep(intervalMillis);
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+			}
+		}, "EJTS3ServerQuery-LogFollower");
+		thread.setDaemon(true);
+		poller = thread;
+		thread.start();
+	}
+	
+	/**
+	 * Stop the background thread of start().
+	 */
+	public synchronized void stop()
+	{
+		Thread thread = poller;
+		poller = null;
+		if (thread != null)
+		{
+			thread.interrupt();
+		}
+	}
+	
+	/**
+	 * @return The exception of the last poll() of the background thread, or <code>null</code> if it was successful.
+	 */
+	public Exception getLastException()
+	{
+		return lastException;
+	}
+	
+	/**
+	 * Get the entries with a sequence number greater than the given one.
+	 * @param sequence The sequence number of the last processed entry, 0 to get all entries in the ring buffer.
+	 * @return The entries, oldest first. If entries after the given sequence number were already dropped, the oldest available entries are returned.
+	 */
+	public Vector<LogEntry> getEntriesAfter(long sequence)
+	{
+		synchronized (ring)
+		{
+			long oldest = lastSequence - ringSize + 1;
+			int skip = (int)Math.max(0, Math.min(ringSize, sequence - oldest + 1));
+			
+			Vector<LogEntry> entries = new Vector<LogEntry>(ringSize - skip);
+			for (int i = skip; i < ringSize; i++)
+			{
+				entries.addElement(ring[(ringStart + i) % ring.length]);
+			}
+			return entries;
+		}
+	}
+	
+	/**
+	 * Get the entries with a sequence number greater than the given one, waiting until there is at least one.
+	 * @param sequence The sequence number of the last processed entry, 0 to get all entries in the ring buffer.
+	 * @param timeoutMillis The maximum time to wait in milliseconds.
+	 * @return The entries, oldest first, or an empty Vector if no entry was received within the time.
+	 * @throws InterruptedException 
+	 */
+	public Vector<LogEntry> getEntriesAfter(long sequence, long timeoutMillis) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized (ring)
+		{
+			long wait;
+			while (lastSequence <= sequence && (wait = deadline - System.currentTimeMillis()) > 0)
+			{
+				ring.wait(wait);
+			}
+			return getEntriesAfter(sequence);
+		}
+	}
+	
+	/**
+	 * @return The sequence number of the newest entry or 0 if no entry was received yet.
+	 */
+	public long getLastSequence()
+	{
+		synchronized (ring)
+		{
+			return lastSequence;
+		}
+	}
+	
+	/**
+	 * @return The number of entries in the ring buffer.
+	 */
+	public int size()
+	{
+		synchronized (ring)
+		{
+			return ringSize;
+		}
+	}
+	
+	/**
+	 * @return The number of entries removed from the ring buffer to make room for newer entries.
+	 */
+	public long getDroppedCount()
+	{
+		synchronized (ring)
+		{
+			return droppedCount;
+		}
+	}
+	
+	private LogEntry append(LogEntry parsed)
+	{
+		synchronized (ring)
+		{
+			LogEntry entry = new LogEntry(++lastSequence, parsed);
+			if (ringSize == ring.length)
+			{
+				ring[ringStart] = entry;
+				ringStart = (ringStart + 1) % ring.length;
+				droppedCount++;
+			}
+			else
+			{
+				ring[(ringStart + ringSize) % ring.length] = entry;
+				ringSize++;
+			}
+			ring.notifyAll();
+			return entry;
+		}
+	}
+}
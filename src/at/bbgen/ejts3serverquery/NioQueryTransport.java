@@ -0,0 +1,347 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking transport driven by a QueryReactor. The reactor thread reads from the channel and frames the lines,
+ * so the connection does not need a thread of its own. After startReading() the lines are passed to the handler directly on the reactor thread.
+ * @since 1.2
+ * @see QueryReactor
+ */
+class NioQueryTransport implements QueryTransport
+{
+	private static final Object END_OF_STREAM = new Object();
+	
+	private final QueryReactor reactor;
+	private final SocketChannel channel;
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+	private final LineFramer framer = new LineFramer();
+	private final LinkedBlockingQueue<Object> incoming = new LinkedBlockingQueue<Object>();
+	private final LinkedList<ByteBuffer> outgoing = new LinkedList<ByteBuffer>();
+	private final LineFramer.Sink incomingSink = new LineFramer.Sink()
+	{
+		public boolean wantsLine(int lineType, byte[] line, int length)
+		{
+			return true;
+		}
+		
+		public void lineReceived(String line)
+		{
+			incoming.add(line);
+		}
+		
+		public boolean wantsEntries()
+		{
+			return false;
+		}
+		
+		public void entryReceived(String entry)
+		{
+		}
+	};
+	
+	private SelectionKey key = null;
+	private LineHandler handler = null;
+	private boolean terminated = false;
+	private volatile int readTimeout = 0;
+	private volatile long lastReadTime = System.currentTimeMillis();
+	private volatile boolean closed = false;
+	
+	NioQueryTransport(QueryReactor reactor, SocketChannel channel)
+	{
+		this.reactor = reactor;
+		this.channel = channel;
+	}
+	
+	/**
+	 * Register the channel at the selector, called by the reactor thread.
+	 */
+	void register(Selector selector) throws ClosedChannelException
+	{
+		if (closed)
+		{
+			shutdown(null);
+			return;
+		}
+		
+		synchronized (outgoing)
+		{
+			key = channel.register(selector, outgoing.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE, this);
+		}
+	}
+	
+	/**
+	 * Read available bytes from the channel, called by the reactor thread.
+	 */
+	void handleRead()
+	{
+		try
+		{
+			int count = channel.read(readBuffer);
+			if (count == -1)
+			{
+				shutdown(null);
+				return;
+			}
+			
+			lastReadTime = System.currentTimeMillis();
+			readBuffer.flip();
+			try
+			{
+				framer.frame(readBuffer, handler != null ? handler : incomingSink);
+			}
+			finally
+			{
+				readBuffer.clear();
+			}
+		}
+		catch (IOException e)
+		{
+			shutdown(e);
+		}
+		catch (RuntimeException e)
+		{
+			// A failing line handler would leave the connection in an unknown state, so close it.
+			shutdown(new IOException("Exception handleRead(): " + e.toString(), e));
+		}
+	}
+	
+	/**
+	 * Write pending output to the channel, called by the reactor thread.
+	 */
+	void handleWrite()
+	{
+		try
+		{
+			synchronized (outgoing)
+			{
+				while (!outgoing.isEmpty())
+				{
+					ByteBuffer buffer = outgoing.getFirst();
+					channel.write(buffer);
+					if (buffer.hasRemaining())
+					{
+						return;
+					}
+					outgoing.removeFirst();
+				}
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+		catch (IOException e)
+		{
+			shutdown(e);
+		}
+	}
+	
+	/**
+	 * Close the channel and wake up readers, called by the reactor thread or by close() after the reactor stopped.
+	 */
+	synchronized void shutdown(IOException cause)
+	{
+		if (terminated)
+			return;
+		
+		terminated = true;
+		if (key != null)
+		{
+			key.cancel();
+		}
+		
+		try
+		{
+			channel.close();
+		}
+		catch (IOException e)
+		{
+			// The connection is gone either way, the handler is told below.
+		}
+		
+		closed = true;
+		if (handler != null)
+		{
+			handler.readFailed(cause);
+		}
+		else
+		{
+			incoming.add(cause != null ? cause : END_OF_STREAM);
+		}
+		reactor.unregistered(this);
+	}
+	
+	public String readLine() throws IOException
+	{
+		Object next;
+		try
+		{
+			if (readTimeout > 0)
+			{
+				next = incoming.poll(readTimeout, TimeUnit.MILLISECONDS);
+				if (next == null)
+					throw new SocketTimeoutException("Read timed out");
+			}
+			else
+			{
+				next = incoming.take();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SocketTimeoutException("Read interrupted");
+		}
+		
+		if (next instanceof String)
+		{
+			return (String)next;
+		}
+		
+		incoming.add(next); // Keep the end of stream marker for further reads
+		if (next instanceof IOException)
+		{
+			SocketException e = new SocketException(((IOException)next).getMessage());
+			e.initCause((IOException)next);
+			throw e;
+		}
+		return null;
+	}
+	
+	public void startReading(final LineHandler lineHandler) throws IOException
+	{
+		// Switch on the reactor thread, so queued and new lines keep their order.
+		reactor.execute(new Runnable()
+		{
+			public void run()
+			{
+				Object next;
+				try
+				{
+					while ((next = incoming.poll()) != null)
+					{
+						if (next instanceof String)
+						{
+							lineHandler.lineReceived((String)next);
+						}
+						else
+						{
+							lineHandler.readFailed(next instanceof IOException ? (IOException)next : null);
+							return;
+						}
+					}
+				}
+				catch (RuntimeException e)
+				{
+					handler = lineHandler;
+					shutdown(new IOException("Exception startReading(): " + e.toString(), e));
+					return;
+				}
+				handler = lineHandler;
+			}
+		});
+	}
+	
+	public void writeLine(String line) throws IOException
+	{
+		if (closed)
+			throw new EOFException("writeLine(): Connection already closed!");
+		
+		ByteBuffer buffer = LineFramer.UTF8.encode(line + "\n");
+		boolean wakeup;
+		
+		synchronized (outgoing)
+		{
+			// Write directly if possible, the reactor only writes what did not fit into the socket buffer.
+			if (outgoing.isEmpty())
+			{
+				channel.write(buffer);
+			}
+			
+			if (!buffer.hasRemaining())
+			{
+				return;
+			}
+			
+			wakeup = outgoing.isEmpty();
+			outgoing.add(buffer);
+		}
+		
+		if (wakeup)
+		{
+			reactor.execute(new Runnable()
+			{
+				public void run()
+				{
+					if (key != null && key.isValid())
+					{
+						key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					}
+				}
+			});
+		}
+	}
+	
+	public long getLastReadTime()
+	{
+		return lastReadTime;
+	}
+	
+	public void setReadTimeout(int timeout) throws IOException
+	{
+		readTimeout = timeout;
+	}
+	
+	public boolean isConnected()
+	{
+		return !closed && channel.isOpen();
+	}
+	
+	public void close() throws IOException
+	{
+		if (closed)
+			return;
+		
+		closed = true;
+		reactor.execute(new Runnable()
+		{
+			public void run()
+			{
+				shutdown(null);
+			}
+		});
+		
+		if (!reactor.isRunning())
+		{
+			// A stopped reactor does not run the task anymore, so the channel would stay open.
+			shutdown(null);
+		}
+	}
+}
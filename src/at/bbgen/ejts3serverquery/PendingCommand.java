@@ -0,0 +1,131 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A command which was sent to the TS3 server and is waiting for its response.<br>
+ * The server answers commands in the order they were sent, so pending commands are kept in a FIFO queue and the
+ * response lines are always added to the oldest one until its <code>error</code> line arrives.
+ * The command is completed with the same HashMap doCommand() returns.
+ * @since 1.2
+ */
+final class PendingCommand extends CompletableFuture<HashMap<String, String>>
+{
+	private final String command;
+	private final StringBuilder response = new StringBuilder();
+	private final ListEntryHandler entryHandler;
+	private int entryCount = 0;
+	private RuntimeException entryHandlerException = null;
+	private volatile long sentTime = 0;
+	private long sentNanos = 0;
+	
+	PendingCommand(String command)
+	{
+		this(command, null);
+	}
+	
+	/**
+	 * @param entryHandler Receives the entries of the response while it is read, instead of collecting the response.
+	 */
+	PendingCommand(String command, ListEntryHandler entryHandler)
+	{
+		this.command = command;
+		this.entryHandler = entryHandler;
+	}
+	
+	String getCommand()
+	{
+		return command;
+	}
+	
+	void markSent()
+	{
+		sentNanos = System.nanoTime();
+		sentTime = System.currentTimeMillis();
+	}
+	
+	/**
+	 * @return The nanoseconds since the command was written to the TS3 server.
+	 */
+	long getElapsedNanos()
+	{
+		return System.nanoTime() - sentNanos;
+	}
+	
+	/**
+	 * @return The time the command was written to the TS3 server, or 0 if it is still waiting for the flood protection.
+	 */
+	long getSentTime()
+	{
+		return sentTime;
+	}
+	
+	void appendResponse(String line)
+	{
+		if (response.length() != 0)
+		{
+			response.append(System.getProperty("line.separator", "\n"));
+		}
+		response.append(line);
+	}
+	
+	String getResponse()
+	{
+		return response.toString();
+	}
+	
+	boolean isStreaming()
+	{
+		return entryHandler != null;
+	}
+	
+	/**
+	 * Pass an entry to the ListEntryHandler. After the handler threw an exception, all following entries are dropped.
+	 */
+	void deliverEntry(HashMap<String, String> entry)
+	{
+		if (entry == null || entryHandlerException != null)
+		{
+			return;
+		}
+		
+		try
+		{
+			entryHandler.listEntryReceived(entry);
+			entryCount++;
+		}
+		catch (RuntimeException e)
+		{
+			entryHandlerException = e;
+		}
+	}
+	
+	int getEntryCount()
+	{
+		return entryCount;
+	}
+	
+	RuntimeException getEntryHandlerException()
+	{
+		return entryHandlerException;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * All permissions of a TS3 server, indexed by permission ID and name.<br><br>
+ * The catalogue is loaded once by getPermissionCatalogue() and never changes afterwards, so it can be used by many threads without synchronization.
+ * Call refreshPermissionCatalogue() to load it again, for example after a TS3 server update.
+ * @since 1.2
+ * @see EJTS3ServerQuery#getPermissionCatalogue()
+ * @see EJTS3ServerQuery#refreshPermissionCatalogue()
+ */
+public final class PermissionCatalogue
+{
+	/* Open addressing with linear probing, permission ID 0 is never used by the TS3 server and marks empty slots. */
+	private final int[] ids;
+	private final PermissionInfo[] entries;
+	private final int mask;
+	private final HashMap<String, PermissionInfo> byName;
+	private final Vector<PermissionInfo> permissions;
+	
+	PermissionCatalogue(Vector<PermissionInfo> permissions)
+	{
+		int capacity = 16;
+		while (capacity < permissions.size() * 2)
+		{
+			capacity <<= 1;
+		}
+		
+		this.ids = new int[capacity];
+		this.entries = new PermissionInfo[capacity];
+		this.mask = capacity - 1;
+		this.byName = new HashMap<String, PermissionInfo>(permissions.size() * 2);
+		this.permissions = permissions;
+		
+		for (PermissionInfo permInfo : permissions)
+		{
+			int permID = permInfo.getPermissionID();
+			if (permID > 0)
+			{
+				int slot = slot(permID);
+				while (ids[slot] != 0 && ids[slot] != permID)
+				{
+					slot = (slot + 1) & mask;
+				}
+				
+				ids[slot] = permID;
+				entries[slot] = permInfo;
+			}
+			
+			if (permInfo.getName() != null)
+			{
+				byName.put(permInfo.getName(), permInfo);
+			}
+		}
+	}
+	
+	private int slot(int permID)
+	{
+		int h = permID * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+	
+	/**
+	 * Get a permission by ID.
+	 * @param permID A permission ID
+	 * @return The permission or <code>null</code> if the TS3 server does not know this permission ID.
+	 */
+	public PermissionInfo get(int permID)
+	{
+		if (permID <= 0)
+		{
+			return null;
+		}
+		
+		int slot = slot(permID);
+		while (ids[slot] != 0)
+		{
+			if (ids[slot] == permID)
+			{
+				return entries[slot];
+			}
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Get a permission by name.
+	 * @param permName A permission name, like <code>i_client_talk_power</code>
+	 * @return The permission or <code>null</code> if the TS3 server does not know this permission name.
+	 */
+	public PermissionInfo get(String permName)
+	{
+		return byName.get(permName);
+	}
+	
+	/**
+	 * Get the ID of a permission name.
+	 * @param permName A permission name, like <code>i_client_talk_power</code>
+	 * @return The permission ID or -1 if the TS3 server does not know this permission name.
+	 */
+	public int getPermissionID(String permName)
+	{
+		PermissionInfo permInfo = byName.get(permName);
+		return (permInfo == null) ? -1 : permInfo.getPermissionID();
+	}
+	
+	/**
+	 * @return All permissions in the order of the TS3 server response.
+	 */
+	public Collection<PermissionInfo> getPermissions()
+	{
+		return Collections.unmodifiableList(permissions);
+	}
+	
+	/**
+	 * @return The number of permissions.
+	 */
+	public int size()
+	{
+		return permissions.size();
+	}
+}
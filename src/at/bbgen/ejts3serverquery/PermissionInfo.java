@@ -0,0 +1,84 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * An entry of <code>permissionlist</code>.<br><br>
+ * Returned by getAllPermissions().
+ * All other keys of the TS3 server response can be read with get(), getInt() and getLong().
+ * @since 1.2
+ */
+public final class PermissionInfo extends QueryEntry
+{
+	static final Rows<PermissionInfo> ROWS = new Rows<PermissionInfo>()
+	{
+		public PermissionInfo newRow()
+		{
+			return new PermissionInfo();
+		}
+	};
+	
+	private int permissionID = -1;
+	private String name = null;
+	private String description = null;
+	
+	PermissionInfo()
+	{
+	}
+	
+	void setField(String key, String value)
+	{
+		if (key.equals("permid"))
+		{
+			permissionID = parseInt(value, -1);
+		}
+		else if (key.equals("permname"))
+		{
+			name = value;
+		}
+		else if (key.equals("permdesc"))
+		{
+			description = value;
+		}
+	}
+	
+	/**
+	 * @return The permission ID.
+	 */
+	public int getPermissionID()
+	{
+		return permissionID;
+	}
+	
+	/**
+	 * @return The permission name, like <code>i_client_talk_power</code>.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * @return The permission description, may be empty.
+	 */
+	public String getDescription()
+	{
+		return description;
+	}
+}
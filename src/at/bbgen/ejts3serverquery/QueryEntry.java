@@ -0,0 +1,266 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+
+/**
+ * Base class of the typed entries returned by getClientList(), getChannelList(), getServerInfo() and the other typed methods.<br><br>
+ * The most used values are parsed once into int / long fields of the subclasses.
+ * All key / value pairs of the TS3 server response are kept in a single array and can still be read with get(), getInt() and getLong().
+ * @since 1.2
+ */
+public abstract class QueryEntry
+{
+	private static final String[] NO_FIELDS = new String[0];
+	
+	/** Rows with more fields than this get a hashed index, smaller ones are scanned. */
+	private static final int INDEX_THRESHOLD = 8;
+	
+	/** Keys at even, values at odd indexes. */
+	private String[] fields = NO_FIELDS;
+	private int fieldCount = 0;
+	/** Key to its index in fields, <code>null</code> until the row has more than INDEX_THRESHOLD fields. */
+	private HashMap<String, Integer> index = null;
+	
+	QueryEntry()
+	{
+	}
+	
+	/**
+	 * Store a key / value pair, replacing the value if the key already exists, and let the subclass pick up its typed values.
+	 * Used when entries are copied or changed, like by the VirtualServerMirror.
+	 */
+	void addField(String key, String value)
+	{
+		int pos = indexOf(key);
+		if (pos >= 0)
+		{
+			fields[pos + 1] = value;
+			setField(key, value);
+		}
+		else
+		{
+			appendField(key, value);
+		}
+	}
+	
+	/**
+	 * Store a key / value pair without looking for an existing key, used while parsing a TS3 server response.
+	 * If the response contains a key twice, get() returns the last value like a HashMap would.
+	 */
+	void appendField(String key, String value)
+	{
+		if (fieldCount * 2 == fields.length)
+		{
+			String[] newFields = new String[Math.max(16, fields.length * 2)];
+			System.arraycopy(fields, 0, newFields, 0, fields.length);
+			fields = newFields;
+		}
+		
+		fields[fieldCount * 2] = key;
+		fields[fieldCount * 2 + 1] = value;
+		fieldCount++;
+		
+		if (index != null)
+		{
+			index.put(key, fieldCount * 2 - 2);
+		}
+		else if (fieldCount > INDEX_THRESHOLD)
+		{
+			index = new HashMap<String, Integer>(fieldCount * 4);
+			for (int i = 0; i < fieldCount * 2; i += 2)
+			{
+				index.put(fields[i], i);
+			}
+		}
+		
+		setField(key, value);
+	}
+	
+	/**
+	 * Called for every key / value pair of the entry, subclasses store the values they know in typed fields.
+	 */
+	abstract void setField(String key, String value);
+	
+	private int indexOf(String key)
+	{
+		if (index != null)
+		{
+			Integer pos = index.get(key);
+			return (pos != null) ? pos.intValue() : -1;
+		}
+		
+		// Backwards, so the last of duplicate keys wins like in the index.
+		for (int i = fieldCount * 2 - 2; i >= 0; i -= 2)
+		{
+			if (fields[i].equals(key))
+			{
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Get a value of this entry like in the TS3 server response.
+	 * @param key The key name, like <code>client_nickname</code>
+	 * @return The value or <code>null</code> if the TS3 server did not send this key.
+	 */
+	public String get(String key)
+	{
+		int index = indexOf(key);
+		return (index >= 0) ? fields[index + 1] : null;
+	}
+	
+	/**
+	 * Get a numeric value of this entry.
+	 * @param key The key name, like <code>client_idle_time</code>
+	 * @param defaultValue Returned if the key is missing or not a number
+	 * @return The value of the key
+	 */
+	public int getInt(String key, int defaultValue)
+	{
+		return parseInt(get(key), defaultValue);
+	}
+	
+	/**
+	 * Get a numeric value of this entry.
+	 * @param key The key name, like <code>virtualserver_uptime</code>
+	 * @param defaultValue Returned if the key is missing or not a number
+	 * @return The value of the key
+	 */
+	public long getLong(String key, long defaultValue)
+	{
+		return parseLong(get(key), defaultValue);
+	}
+	
+	/**
+	 * Check if the TS3 server sent a key.
+	 * @param key The key name
+	 * @return <code>true</code> if the key exists in this entry
+	 */
+	public boolean containsKey(String key)
+	{
+		return indexOf(key) >= 0;
+	}
+	
+	String keyAt(int index)
+	{
+		return fields[index * 2];
+	}
+	
+	String valueAt(int index)
+	{
+		return fields[index * 2 + 1];
+	}
+	
+	/**
+	 * Add all key / value pairs of this entry to another entry.
+	 */
+	void copyFieldsTo(QueryEntry target)
+	{
+		for (int i = 0; i < fieldCount; i++)
+		{
+			target.addField(keyAt(i), valueAt(i));
+		}
+	}
+	
+	/**
+	 * @return The number of key / value pairs of this entry.
+	 */
+	public int size()
+	{
+		return fieldCount;
+	}
+	
+	/**
+	 * @return A new HashMap with all key / value pairs, like they are returned by getList() and getInfo().
+	 */
+	public HashMap<String, String> toHashMap()
+	{
+		HashMap<String, String> map = new HashMap<String, String>();
+		for (int i = 0; i < fieldCount * 2; i += 2)
+		{
+			map.put(fields[i], fields[i + 1]);
+		}
+		
+		return map;
+	}
+	
+	public String toString()
+	{
+		return toHashMap().toString();
+	}
+	
+	static int parseInt(String value, int defaultValue)
+	{
+		long result = parseLong(value, Long.MIN_VALUE);
+		if (result == Long.MIN_VALUE || result < Integer.MIN_VALUE || result > Integer.MAX_VALUE)
+		{
+			return defaultValue;
+		}
+		
+		return (int)result;
+	}
+	
+	/**
+	 * Parse a decimal number without creating an exception for invalid values.
+	 */
+	static long parseLong(String value, long defaultValue)
+	{
+		if (value == null || value.length() == 0 || value.length() > 19)
+		{
+			return defaultValue;
+		}
+		
+		boolean negative = (value.charAt(0) == '-');
+		int pos = negative ? 1 : 0;
+		if (pos == value.length())
+		{
+			return defaultValue;
+		}
+		
+		long result = 0;
+		for (; pos < value.length(); pos++)
+		{
+			char c = value.charAt(pos);
+			if (c < '0' || c > '9')
+			{
+				return defaultValue;
+			}
+			
+			result = result * 10 + (c - '0');
+		}
+		
+		return negative ? -result : result;
+	}
+	
+	/**
+	 * Creates and fills entries of one type while the parser walks through the response.
+	 */
+	abstract static class Rows<T extends QueryEntry> implements TS3Codec.RowBuilder<T>
+	{
+		public void addField(T row, String key, String value)
+		{
+			row.appendField(key, value);
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single I/O thread which drives the connections of many EJTS3ServerQuery instances using non-blocking sockets.<br><br>
+ * Create one reactor and pass it to connectTS3Query() of every EJTS3ServerQuery instance that should use it.
+ * Incoming data is read and split into lines by the reactor thread, so no thread per connection is needed for reading.
+ * <br><br>
+ * <b>Notice:</b><br>
+ * The reactor thread is a daemon thread. Call shutdown() to close all connections and stop the thread.
+ * @since 1.2
+ * @see EJTS3ServerQuery#connectTS3Query(String, int, QueryReactor)
+ */
+public class QueryReactor
+{
+	private final Selector selector;
+	private final Thread ioThread;
+	private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final AtomicInteger connectionCount = new AtomicInteger(0);
+	private volatile boolean running = true;
+	
+	/**
+	 * Open a selector and start the reactor thread.
+	 * @throws EJTS3ServerQueryException
+	 */
+	public QueryReactor() throws EJTS3ServerQueryException
+	{
+		try
+		{
+			selector = Selector.open();
+		}
+		catch (IOException e)
+		{
+			throw new EJTS3ServerQueryException("Exception QueryReactor(): " + e.toString());
+		}
+		
+		ioThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				runLoop();
+			}
+		}, "EJTS3ServerQuery-Reactor");
+		ioThread.setDaemon(true);
+		ioThread.start();
+	}
+	
+	/**
+	 * Returns the number of connections currently driven by this reactor.
+	 * @return The number of open connections.
+	 */
+	public int getConnectionCount()
+	{
+		return connectionCount.get();
+	}
+	
+	/**
+	 * Check if the reactor thread is still running.
+	 * @return <code>true</code> if running, <code>false</code> after shutdown().
+	 */
+	public boolean isRunning()
+	{
+		return running && ioThread.isAlive();
+	}
+	
+	/**
+	 * Close all connections of this reactor and stop the reactor thread.
+	 */
+	public void shutdown()
+	{
+		running = false;
+		selector.wakeup();
+	}
+	
+	NioQueryTransport open(String ip, int queryport) throws IOException
+	{
+		if (!running)
+			throw new IOException("open(): QueryReactor already shut down!");
+		
+		SocketChannel channel = SocketChannel.open(new InetSocketAddress(ip, queryport));  // Blocking connect, the reactor only handles established connections
+		final NioQueryTransport transport;
+		try
+		{
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			transport = new NioQueryTransport(this, channel);
+		}
+		catch (IOException e)
+		{
+			channel.close();
+			throw e;
+		}
+		
+		connectionCount.incrementAndGet();
+		execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					transport.register(selector);
+				}
+				catch (IOException e)
+				{
+					transport.shutdown(e);
+				}
+			}
+		});
+		
+		return transport;
+	}
+	
+	void execute(Runnable task)
+	{
+		tasks.add(task);
+		selector.wakeup();
+	}
+	
+	void unregistered(NioQueryTransport transport)
+	{
+		connectionCount.decrementAndGet();
+	}
+	
+	private void runLoop()
+	{
+		IOException failure = null;
+		
+		while (running)
+		{
+			try
+			{
+				selector.select();
+			}
+			catch (IOException e)
+			{
+				// The selector is broken, so none of the connections can be served anymore.
+				failure = e;
+				running = false;
+				break;
+			}
+			
+			runTasks();
+			
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext())
+			{
+				SelectionKey key = keys.next();
+				keys.remove();
+				
+				NioQueryTransport transport = (NioQueryTransport)key.attachment();
+				try
+				{
+					if (key.isValid() && key.isReadable())
+					{
+						transport.handleRead();
+					}
+					if (key.isValid() && key.isWritable())
+					{
+						transport.handleWrite();
+					}
+				}
+				catch (RuntimeException e)
+				{
+					// Close only this connection, the others of the reactor keep working.
+					transport.shutdown(new IOException("Exception QueryReactor: " + e.toString(), e));
+				}
+			}
+		}
+		
+		runTasks();
+		
+		for (SelectionKey key : selector.keys())
+		{
+			if (key.isValid())
+			{
+				((NioQueryTransport)key.attachment()).shutdown(failure);
+			}
+		}
+		
+		try
+		{
+			selector.close();
+		}
+		catch (IOException e)
+		{
+			// Nothing left to clean up, the reactor thread ends anyway.
+		}
+	}
+	
+	/**
+	 * Run the queued tasks. A failing task must not stop the reactor thread, so its exception is passed to the uncaught exception handler of the thread.
+	 */
+	private void runTasks()
+	{
+		Runnable task;
+		while ((task = tasks.poll()) != null)
+		{
+			try
+			{
+				task.run();
+			}
+			catch (RuntimeException e)
+			{
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,648 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A pool of logged in query connections, each bound to a virtual server.<br><br>
+ * Every selectVirtualServer() needs two round trips, and switching between many virtual servers on a single connection costs more time than the commands itself.
+ * The pool keeps the connections on their virtual server and hands out a connection which is already on the wanted virtual server.
+ * If all connections of the wanted virtual server are in use and no new connection can be opened, acquire() waits for one of them.
+ * Only if no connection is on the wanted virtual server, an idle connection of another virtual server is switched over.<br><br>
+ * Example:<br>
+ * <code>
+ * QuerySessionPool pool = new QuerySessionPool("127.0.0.1", 10011, "serveradmin", "password", "Bot");<br>
+ * pool.execute(7, query -&gt; query.getClientList(null));
+ * </code><br><br>
+ * <b>Notice:</b><br>
+ * The TS3 server limits the number of connections per IP address and bans clients which exceed it, so keep setMaxSessions() below this limit.<br>
+ * The TS3 server also closes query connections which are idle for some minutes, so idle connections of the pool send a <code>whoami</code> from time to time,
+ * see setKeepAliveInterval(). Idle connections closed anyway are removed from the pool before they are handed out.
+ * @since 1.2
+ */
+public final class QuerySessionPool
+{
+	/**
+	 * Work with a query connection of the pool.
+	 */
+	public interface SessionCallback<T>
+	{
+		/**
+		 * Called with a connection which is already on the requested virtual server.
+		 * The connection must not be closed or used after this method returned.
+		 * @param query The query connection
+		 * @return Any result, returned by QuerySessionPool.execute()
+		 * @throws EJTS3ServerQueryException 
+		 */
+		public T execute(EJTS3ServerQuery query) throws EJTS3ServerQueryException;
+	}
+	
+	private final String ip;
+	private final int queryport;
+	private final String loginName;
+	private final String password;
+	private final String displayName;
+	
+	private QueryReactor reactor = null;
+	private boolean pipelining = false;
+	private QueryStatistics statistics = null;
+	private int maxSessions = 8;
+	private long acquireTimeout = 10000;
+	private long keepAliveInterval = 60000;
+	private Thread keepAliveThread = null;
+	
+	private final HashMap<Integer, LinkedList<EJTS3ServerQuery>> idleSessions = new HashMap<Integer, LinkedList<EJTS3ServerQuery>>();
+	/* Number of connections on each virtual server, in use or idle, including connections being opened. */
+	private final HashMap<Integer, Integer> boundSessions = new HashMap<Integer, Integer>();
+	/* The virtual server each connection in use was acquired for. */
+	private final HashMap<EJTS3ServerQuery, Integer> bindings = new HashMap<EJTS3ServerQuery, Integer>();
+	/* The time each idle connection was returned or kept alive. */
+	private final HashMap<EJTS3ServerQuery, Long> idleSince = new HashMap<EJTS3ServerQuery, Long>();
+	private int idleCount = 0;
+	private int sessionCount = 0;
+	private boolean closed = false;
+	
+	/**
+	 * Create a pool. No connection is opened before the first acquire().
+	 * @param ip IP or Host address to the TS3 server
+	 * @param queryport Query Port of the TS3 server
+	 * @param loginName The login name, or <code>null</code> if the connections should not login.
+	 * @param password The login password
+	 * @param displayName The display name of the connections on the virtual servers, or <code>null</code> to keep the default name.
+	 */
+	public QuerySessionPool(String ip, int queryport, String loginName, String password, String displayName)
+	{
+		this.ip = ip;
+		this.queryport = queryport;
+		this.loginName = loginName;
+		this.password = password;
+		this.displayName = displayName;
+	}
+	
+	/**
+	 * Use a QueryReactor for all connections of the pool, so they share one I/O thread.
+	 * @param reactor The QueryReactor or <code>null</code> to use blocking sockets (default).
+	 * @see QueryReactor
+	 */
+	public synchronized void setReactor(QueryReactor reactor)
+	{
+		this.reactor = reactor;
+	}
+	
+	/**
+	 * Enable pipelining for new connections of the pool.
+	 * @param pipelining <code>true</code> to enable pipelining, default is <code>false</code>.
+	 * @see EJTS3ServerQuery#setPipelining(boolean)
+	 */
+	public synchronized void setPipelining(boolean pipelining)
+	{
+		this.pipelining = pipelining;
+	}
+	
+	/**
+	 * Collect the performance values of all new connections of the pool in one QueryStatistics object.
+	 * @param statistics The QueryStatistics object or <code>null</code> to collect no values (default).
+	 * @see EJTS3ServerQuery#setStatistics(QueryStatistics)
+	 */
+	public synchronized void setStatistics(QueryStatistics statistics)
+	{
+		this.statistics = statistics;
+	}
+	
+	/**
+	 * Set the maximum number of connections of the pool.
+	 * @param maxSessions The maximum number of connections, default is 8.
+	 */
+	public synchronized void setMaxSessions(int maxSessions)
+	{
+		this.maxSessions = maxSessions;
+		notifyAll();
+	}
+	
+	/**
+	 * Set how long acquire() waits for a connection, if all connections are in use.
+	 * @param acquireTimeout The timeout in milliseconds, default is 10000.
+	 */
+	public synchronized void setAcquireTimeout(long acquireTimeout)
+	{
+		this.acquireTimeout = acquireTimeout;
+	}
+	
+	/**
+	 * Set how often idle connections send a <code>whoami</code>, so the TS3 server does not close them.
+	 * The TS3 server closes idle query connections after 10 minutes by default.
+	 * @param keepAliveInterval The time in milliseconds a connection may be idle before it sends a command, default is 60000. Use 0 to disable.
+	 */
+	public synchronized void setKeepAliveInterval(long keepAliveInterval)
+	{
+		this.keepAliveInterval = keepAliveInterval;
+		if (keepAliveThread != null)
+		{
+			keepAliveThread.interrupt();
+		}
+		startKeepAlive();
+	}
+	
+	/**
+	 * Get a connection on a virtual server. The connection must be returned with release().
+	 * @param serverID A virtual server ID
+	 * @return A connected and logged in connection, which has selected the virtual server.
+	 * @throws EJTS3ServerQueryException 
+	 * @see QuerySessionPool#release(EJTS3ServerQuery)
+	 * @see QuerySessionPool#execute(int, SessionCallback)
+	 */
+	public EJTS3ServerQuery acquire(int serverID) throws EJTS3ServerQueryException
+	{
+		EJTS3ServerQuery session = null;
+		boolean openNew = false;
+		Vector<EJTS3ServerQuery> deadSessions = new Vector<EJTS3ServerQuery>();
+		
+		try
+		{
+			synchronized (this)
+			{
+				long deadline = System.currentTimeMillis() + acquireTimeout;
+				while (true)
+				{
+					if (closed)
+						throw new EJTS3ServerQueryException("acquire(): Pool is closed!");
+					
+					session = takeIdle(serverID, deadSessions);
+					if (session != null)
+					{
+						break;
+					}
+					
+					if (sessionCount < maxSessions)
+					{
+						// Reserve the place, the connection is opened outside of the lock.
+						sessionCount++;
+						bind(serverID, 1);
+						openNew = true;
+						break;
+					}
+					
+					if (getBoundCount(serverID) == 0)
+					{
+						session = takeIdleOfAnyServer(deadSessions);
+						if (session != null)
+						{
+							bind(session.getCurrentQueryClientServerID(), -1);
+							bind(serverID, 1);
+							break;
+						}
+					}
+					
+					long wait = deadline - System.currentTimeMillis();
+					if (wait <= 0)
+						throw new EJTS3ServerQueryException("acquire(): No connection available within " + acquireTimeout + " ms!");
+					
+					try
+					{
+						wait(wait);
+					}
+					catch (InterruptedException e)
+					{
+						throw new EJTS3ServerQueryException("acquire(): Interrupted while waiting for a connection!");
+					}
+				}
+			}
+		}
+		finally
+		{
+			for (EJTS3ServerQuery deadSession : deadSessions)
+			{
+				closeQuietly(deadSession);
+			}
+		}
+		
+		if (openNew)
+		{
+			try
+			{
+				session = openSession();
+			}
+			catch (EJTS3ServerQueryException e)
+			{
+				discard(null, serverID);
+				throw e;
+			}
+		}
+		
+		try
+		{
+			if (session.getCurrentQueryClientServerID() != serverID)
+			{
+				// The display name belongs to the virtual server, so it is set again after every switch.
+				session.selectVirtualServer(serverID);
+				if (displayName != null)
+				{
+					session.setDisplayName(displayName);
+				}
+			}
+		}
+		catch (EJTS3ServerQueryException e)
+		{
+			discard(session, serverID);
+			throw e;
+		}
+		
+		synchronized (this)
+		{
+			bindings.put(session, serverID);
+		}
+		
+		return session;
+	}
+	
+	/**
+	 * Return a connection to the pool. Closed connections are removed from the pool.
+	 * @param session A connection of acquire()
+	 */
+	public void release(EJTS3ServerQuery session)
+	{
+		if (session == null)
+		{
+			return;
+		}
+		
+		boolean close = false;
+		synchronized (this)
+		{
+			Integer boundServerID = bindings.remove(session);
+			if (boundServerID == null)
+			{
+				return;
+			}
+			bind(boundServerID, -1);
+			
+			if (closed || !session.isConnected() || sessionCount > maxSessions)
+			{
+				sessionCount--;
+				close = true;
+			}
+			else
+			{
+				// The callback may have selected another virtual server.
+				int serverID = session.getCurrentQueryClientServerID();
+				bind(serverID, 1);
+				LinkedList<EJTS3ServerQuery> idle = idleSessions.get(serverID);
+				if (idle == null)
+				{
+					idle = new LinkedList<EJTS3ServerQuery>();
+					idleSessions.put(serverID, idle);
+				}
+				idle.addLast(session);
+				idleCount++;
+				idleSince.put(session, System.currentTimeMillis());
+				startKeepAlive();
+			}
+			notifyAll();
+		}
+		
+		if (close)
+		{
+			closeQuietly(session);
+		}
+	}
+	
+	/**
+	 * Iterate over the whole client database of a virtual server, with the pages requested by different connections of the pool at the same time.<br><br>
+	 * Every requested page uses one connection until its response was received, so up to parallelPages + 1 connections are used at the same time,
+	 * but never more than allowed by setMaxSessions().
+	 * @param serverID A virtual server ID
+	 * @param pageSize The number of entries requested with one command, at most 200.
+	 * @param parallelPages The number of pages requested before they are needed, at least 1.
+	 * @return An iterator over all entries of the client database.
+	 * @see ClientDBIterator
+	 * @see EJTS3ServerQuery#getClientDBIterator(int, int)
+	 */
+	public ClientDBIterator getClientDBIterator(final int serverID, int pageSize, int parallelPages)
+	{
+		return new ClientDBIterator(new ClientDBIterator.PageSource()
+		{
+			public CompletableFuture<Vector<ClientInfo>> fetchPage(int start, int duration)
+			{
+				final EJTS3ServerQuery session;
+				try
+				{
+					session = acquire(serverID);
+				}
+				catch (EJTS3ServerQueryException e)
+				{
+					CompletableFuture<Vector<ClientInfo>> failed = new CompletableFuture<Vector<ClientInfo>>();
+					failed.completeExceptionally(e);
+					return failed;
+				}
+				
+				CompletableFuture<Vector<ClientInfo>> page = session.getClientDBPageAsync(start, duration);
+				page.whenComplete((entries, e) -> release(session));
+				return page;
+			}
+		}, pageSize, parallelPages);
+	}
+	
+	/**
+	 * Run a callback with a connection on a virtual server and return the connection to the pool afterwards.
+	 * @param serverID A virtual server ID
+	 * @param callback Works with the connection
+	 * @return The result of the callback
+	 * @throws EJTS3ServerQueryException 
+	 */
+	public <T> T execute(int serverID, SessionCallback<T> callback) throws EJTS3ServerQueryException
+	{
+		EJTS3ServerQuery session = acquire(serverID);
+		try
+		{
+			return callback.execute(session);
+		}
+		finally
+		{
+			release(session);
+		}
+	}
+	
+	/**
+	 * @return The number of open connections, in use or idle.
+	 */
+	public synchronized int getSessionCount()
+	{
+		return sessionCount;
+	}
+	
+	/**
+	 * @return The number of idle connections.
+	 */
+	public synchronized int getIdleSessionCount()
+	{
+		return idleCount;
+	}
+	
+	/**
+	 * Close all idle connections and all connections returned later. The pool cannot be used afterwards.
+	 */
+	public void close()
+	{
+		Vector<EJTS3ServerQuery> toClose = new Vector<EJTS3ServerQuery>();
+		synchronized (this)
+		{
+			closed = true;
+			for (LinkedList<EJTS3ServerQuery> idle : idleSessions.values())
+			{
+				toClose.addAll(idle);
+			}
+			idleSessions.clear();
+			idleSince.clear();
+			boundSessions.clear();
+			for (Integer serverID : bindings.values())
+			{
+				bind(serverID, 1);
+			}
+			sessionCount -= idleCount;
+			idleCount = 0;
+			if (keepAliveThread != null)
+			{
+				keepAliveThread.interrupt();
+			}
+			notifyAll();
+		}
+		
+		for (EJTS3ServerQuery session : toClose)
+		{
+			closeQuietly(session);
+		}
+	}
+	
+	/**
+	 * Take an idle connection of a virtual server. Connections closed by the TS3 server meanwhile are removed from the pool and added to deadSessions.
+	 */
+	private EJTS3ServerQuery takeIdle(int serverID, Vector<EJTS3ServerQuery> deadSessions)
+	{
+		LinkedList<EJTS3ServerQuery> idle = idleSessions.get(serverID);
+		while (idle != null && !idle.isEmpty())
+		{
+			EJTS3ServerQuery session = idle.removeLast();
+			idleCount--;
+			idleSince.remove(session);
+			
+			if (session.isConnected())
+			{
+				return session;
+			}
+			
+			// Free the place of the closed connection, so a new one can be opened.
+			sessionCount--;
+			bind(serverID, -1);
+			deadSessions.addElement(session);
+		}
+		
+		return null;
+	}
+	
+	private EJTS3ServerQuery takeIdleOfAnyServer(Vector<EJTS3ServerQuery> deadSessions)
+	{
+		for (Integer serverID : idleSessions.keySet())
+		{
+			EJTS3ServerQuery session = takeIdle(serverID, deadSessions);
+			if (session != null)
+			{
+				return session;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Start the keep alive thread, if it is enabled and not running yet. Called while holding the lock.
+	 */
+	private void startKeepAlive()
+	{
+		if (keepAliveThread != null || keepAliveInterval <= 0 || closed || idleCount == 0)
+		{
+			return;
+		}
+		
+		Thread thread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				while (true)
+				{
+					long interval;
+					synchronized (QuerySessionPool.this)
+					{
+						interval = keepAliveInterval;
+						if (closed || interval <= 0 || keepAliveThread != Thread.currentThread())
+						{
+							if (keepAliveThread == Thread.currentThread())
+							{
+								keepAliveThread = null;
+							}
+							return;
+						}
+					}
+					
+					try
+					{
+						Thread.sleep(interval);
+					}
+					catch (InterruptedException e)
+					{
+						// The interval was changed or the pool was closed, check again.
+						continue;
+					}
+					
+					keepAlive();
+				}
+			}
+		}, "EJTS3ServerQuery-PoolKeepAlive");
+		thread.setDaemon(true);
+		keepAliveThread = thread;
+		thread.start();
+	}
+	
+	/**
+	 * Send a <code>whoami</code> with every connection idle for longer than the keep alive interval.
+	 * The connections are taken out of the pool meanwhile, like acquired connections.
+	 */
+	private void keepAlive()
+	{
+		Vector<EJTS3ServerQuery> sessions = new Vector<EJTS3ServerQuery>();
+		synchronized (this)
+		{
+			long idleLimit = System.currentTimeMillis() - keepAliveInterval;
+			for (Map.Entry<Integer, LinkedList<EJTS3ServerQuery>> entry : idleSessions.entrySet())
+			{
+				Iterator<EJTS3ServerQuery> idle = entry.getValue().iterator();
+				while (idle.hasNext())
+				{
+					EJTS3ServerQuery session = idle.next();
+					Long since = idleSince.get(session);
+					if (since != null && since <= idleLimit)
+					{
+						idle.remove();
+						idleCount--;
+						idleSince.remove(session);
+						bindings.put(session, entry.getKey());
+						sessions.addElement(session);
+					}
+				}
+			}
+		}
+		
+		for (EJTS3ServerQuery session : sessions)
+		{
+			try
+			{
+				session.doCommand("whoami");
+			}
+			catch (EJTS3ServerQueryException e)
+			{
+				// release() removes the connection from the pool, if it is not connected anymore.
+				closeQuietly(session);
+			}
+			release(session);
+		}
+	}
+	
+	private EJTS3ServerQuery openSession() throws EJTS3ServerQueryException
+	{
+		QueryReactor sessionReactor;
+		boolean sessionPipelining;
+		QueryStatistics sessionStatistics;
+		synchronized (this)
+		{
+			sessionReactor = reactor;
+			sessionPipelining = pipelining;
+			sessionStatistics = statistics;
+		}
+		
+		EJTS3ServerQuery session = new EJTS3ServerQuery();
+		session.setPipelining(sessionPipelining);
+		session.setStatistics(sessionStatistics);
+		session.connectTS3Query(ip, queryport, sessionReactor);
+		if (loginName != null)
+		{
+			try
+			{
+				session.loginTS3(loginName, password);
+			}
+			catch (EJTS3ServerQueryException e)
+			{
+				closeQuietly(session);
+				throw e;
+			}
+		}
+		
+		return session;
+	}
+	
+	private void bind(int serverID, int delta)
+	{
+		int count = getBoundCount(serverID) + delta;
+		if (count > 0)
+		{
+			boundSessions.put(serverID, count);
+		}
+		else
+		{
+			boundSessions.remove(serverID);
+		}
+	}
+	
+	private int getBoundCount(int serverID)
+	{
+		Integer count = boundSessions.get(serverID);
+		return (count == null) ? 0 : count;
+	}
+	
+	private void discard(EJTS3ServerQuery session, int serverID)
+	{
+		synchronized (this)
+		{
+			sessionCount--;
+			bind(serverID, -1);
+			notifyAll();
+		}
+		
+		if (session != null)
+		{
+			closeQuietly(session);
+		}
+	}
+	
+	private void closeQuietly(EJTS3ServerQuery session)
+	{
+		try
+		{
+			session.closeTS3Connection();
+		}
+		catch (EJTS3ServerQueryException e)
+		{
+			// The connection is gone anyway.
+		}
+	}
+}
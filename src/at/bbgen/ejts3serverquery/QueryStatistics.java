@@ -0,0 +1,505 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+/**
+ * Performance values of one or more query connections: latency histograms for each command type, bytes, rows, error ids, connects and events.<br><br>
+ * Enable it with EJTS3ServerQuery.setStatistics(). One instance can be shared by many connections, for example all connections of a QuerySessionPool.
+ * The values can be read with the methods of this class or by JMX after registerMBean() was called.
+ * @since 1.2
+ * @see EJTS3ServerQuery#setStatistics(QueryStatistics)
+ */
+public final class QueryStatistics implements QueryStatisticsMBean
+{
+	/**
+	 * The values of one command type, like <code>clientlist</code>.
+	 * The latencies are measured from writing the command until its <code>error</code> line was received.
+	 */
+	public static final class CommandStatistics
+	{
+		/* Bucket i counts latencies from 2^i to 2^(i+1) microseconds. */
+		private static final int BUCKETS = 40;
+		
+		private final String command;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder totalLatency = new LongAdder();
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+		private volatile long maxLatency = 0;
+		
+		CommandStatistics(String command)
+		{
+			this.command = command;
+		}
+		
+		void record(long latencyMicros, int rowCount, boolean error)
+		{
+			count.increment();
+			rows.add(rowCount);
+			totalLatency.add(latencyMicros);
+			if (error)
+			{
+				errors.increment();
+			}
+			
+			int bucket = 63 - Long.numberOfLeadingZeros(Math.max(1, latencyMicros));
+			histogram.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+			
+			// A lost update only happens with two new maximums at once.
+			if (latencyMicros > maxLatency)
+			{
+				maxLatency = latencyMicros;
+			}
+		}
+		
+		/**
+		 * @return The command name
+		 */
+		public String getCommand()
+		{
+			return command;
+		}
+		
+		/**
+		 * @return The number of completed commands.
+		 */
+		public long getCount()
+		{
+			return count.sum();
+		}
+		
+		/**
+		 * @return The number of commands answered with an error id other than 0.
+		 */
+		public long getErrorCount()
+		{
+			return errors.sum();
+		}
+		
+		/**
+		 * @return The number of entries in all responses of this command.
+		 */
+		public long getRowCount()
+		{
+			return rows.sum();
+		}
+		
+		/**
+		 * @return The average latency in microseconds.
+		 */
+		public long getAverageLatency()
+		{
+			long n = count.sum();
+			return (n == 0) ? 0 : totalLatency.sum() / n;
+		}
+		
+		/**
+		 * @return The highest latency in microseconds.
+		 */
+		public long getMaxLatency()
+		{
+			return maxLatency;
+		}
+		
+		/**
+		 * Get a latency percentile from the histogram. The result is the upper limit of the histogram bucket, so it is up to twice the exact value.
+		 * @param percentile A value between 0 and 100, like 50 or 99
+		 * @return The latency in microseconds below which the given percentage of commands completed.
+		 */
+		public long getLatencyPercentile(double percentile)
+		{
+			long[] snapshot = new long[BUCKETS];
+			long total = 0;
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				snapshot[i] = histogram.get(i);
+				total += snapshot[i];
+			}
+			
+			if (total == 0)
+			{
+				return 0;
+			}
+			
+			long threshold = (long)Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				seen += snapshot[i];
+				if (seen >= threshold && seen > 0)
+				{
+					return Math.min(1L << (i + 1), maxLatency);
+				}
+			}
+			
+			return maxLatency;
+		}
+		
+		/**
+		 * @return The histogram, element i contains the number of commands with a latency from 2^i to 2^(i+1) microseconds.
+		 */
+		public long[] getLatencyHistogram()
+		{
+			long[] snapshot = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				snapshot[i] = histogram.get(i);
+			}
+			return snapshot;
+		}
+		
+		public String toString()
+		{
+			return command + " count=" + getCount() + " errors=" + getErrorCount() + " rows=" + getRowCount()
+				+ " avg=" + getAverageLatency() + "us p50=" + getLatencyPercentile(50) + "us p99=" + getLatencyPercentile(99) + "us max=" + getMaxLatency() + "us";
+		}
+	}
+	
+	private static final int RATE_SECONDS = 60;
+	
+	private volatile ConcurrentHashMap<String, CommandStatistics> commands = new ConcurrentHashMap<String, CommandStatistics>();
+	private volatile ConcurrentHashMap<String, LongAdder> errorIDs = new ConcurrentHashMap<String, LongAdder>();
+	private final LongAdder commandCount = new LongAdder();
+	private final LongAdder errorCount = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder rowsReceived = new LongAdder();
+	private final LongAdder eventCount = new LongAdder();
+	private final LongAdder droppedEventCount = new LongAdder();
+	private final LongAdder connectCount = new LongAdder();
+	private final LongAdder connectionLostCount = new LongAdder();
+	
+	/* Events of the last seconds, slot (second % RATE_SECONDS) belongs to the second in eventSeconds. */
+	private final AtomicLongArray eventSlots = new AtomicLongArray(RATE_SECONDS);
+	private final AtomicLongArray eventSeconds = new AtomicLongArray(RATE_SECONDS);
+	
+	private ObjectName mbeanName = null;
+	
+	/**
+	 * Create an empty statistics object.
+	 */
+	public QueryStatistics()
+	{
+	}
+	
+	void commandSent(String command)
+	{
+		bytesSent.add(utf8Length(command) + 1);
+	}
+	
+	void commandCompleted(String command, long latencyNanos, int rows, String errorID)
+	{
+		int end = command.indexOf(' ');
+		String name = (end == -1) ? command : command.substring(0, end);
+		
+		CommandStatistics stats = commands.get(name);
+		if (stats == null)
+		{
+			CommandStatistics newStats = new CommandStatistics(name);
+			stats = commands.putIfAbsent(name, newStats);
+			if (stats == null)
+			{
+				stats = newStats;
+			}
+		}
+		
+		boolean error = !"0".equals(errorID);
+		stats.record(latencyNanos / 1000, rows, error);
+		commandCount.increment();
+		rowsReceived.add(rows);
+		
+		if (error)
+		{
+			errorCount.increment();
+			LongAdder counter = errorIDs.get(errorID);
+			if (counter == null)
+			{
+				LongAdder newCounter = new LongAdder();
+				counter = errorIDs.putIfAbsent(errorID, newCounter);
+				if (counter == null)
+				{
+					counter = newCounter;
+				}
+			}
+			counter.increment();
+		}
+	}
+	
+	void dataReceived(String data)
+	{
+		bytesReceived.add(utf8Length(data) + 1);
+	}
+	
+	void dataReceived(int byteCount)
+	{
+		bytesReceived.add(byteCount + 1);
+	}
+	
+	void eventReceived()
+	{
+		eventCount.increment();
+		
+		long second = System.currentTimeMillis() / 1000;
+		int slot = (int)(second % RATE_SECONDS);
+		long slotSecond = eventSeconds.get(slot);
+		if (slotSecond != second && eventSeconds.compareAndSet(slot, slotSecond, second))
+		{
+			eventSlots.set(slot, 0);
+		}
+		eventSlots.incrementAndGet(slot);
+	}
+	
+	void eventDropped()
+	{
+		droppedEventCount.increment();
+	}
+	
+	void connected()
+	{
+		connectCount.increment();
+	}
+	
+	void connectionLost()
+	{
+		connectionLostCount.increment();
+	}
+	
+	/**
+	 * Count the entries of an unparsed response.
+	 */
+	static int countRows(String response)
+	{
+		if (response.length() == 0)
+		{
+			return 0;
+		}
+		
+		int rows = 1;
+		for (int i = response.indexOf('|'); i != -1; i = response.indexOf('|', i + 1))
+		{
+			rows++;
+		}
+		return rows;
+	}
+	
+	static int utf8Length(String str)
+	{
+		int length = str.length();
+		for (int i = 0; i < str.length(); i++)
+		{
+			char c = str.charAt(i);
+			if (c >= 0x80)
+			{
+				// Surrogate pairs count 2 + 2, which is the 4 bytes of their code point.
+				length += (c >= 0x800 && !Character.isSurrogate(c)) ? 2 : 1;
+			}
+		}
+		return length;
+	}
+	
+	public long getCommandCount()
+	{
+		return commandCount.sum();
+	}
+	
+	public long getErrorCount()
+	{
+		return errorCount.sum();
+	}
+	
+	public long getBytesSent()
+	{
+		return bytesSent.sum();
+	}
+	
+	public long getBytesReceived()
+	{
+		return bytesReceived.sum();
+	}
+	
+	public long getRowsReceived()
+	{
+		return rowsReceived.sum();
+	}
+	
+	public long getEventCount()
+	{
+		return eventCount.sum();
+	}
+	
+	public long getDroppedEventCount()
+	{
+		return droppedEventCount.sum();
+	}
+	
+	public double getEventsPerSecond()
+	{
+		long now = System.currentTimeMillis() / 1000;
+		long events = 0;
+		for (int i = 0; i < RATE_SECONDS; i++)
+		{
+			if (now - eventSeconds.get(i) < RATE_SECONDS)
+			{
+				events += eventSlots.get(i);
+			}
+		}
+		return events / (double)RATE_SECONDS;
+	}
+	
+	public long getConnectCount()
+	{
+		return connectCount.sum();
+	}
+	
+	public long getConnectionLostCount()
+	{
+		return connectionLostCount.sum();
+	}
+	
+	/**
+	 * Get the values of a command type.
+	 * @param command The command name, like <code>clientlist</code>
+	 * @return The values or <code>null</code> if this command was not used yet.
+	 */
+	public CommandStatistics getCommandStatistics(String command)
+	{
+		return commands.get(command);
+	}
+	
+	/**
+	 * @return The values of all used command types.
+	 */
+	public Collection<CommandStatistics> getCommandStatistics()
+	{
+		return new TreeMap<String, CommandStatistics>(commands).values();
+	}
+	
+	/**
+	 * @return The number of occurrences of each error id other than 0.
+	 */
+	public Map<String, Long> getErrorIDs()
+	{
+		HashMap<String, Long> result = new HashMap<String, Long>();
+		for (Map.Entry<String, LongAdder> entry : errorIDs.entrySet())
+		{
+			result.put(entry.getKey(), entry.getValue().sum());
+		}
+		return result;
+	}
+	
+	public String[] getCommandSummaries()
+	{
+		Collection<CommandStatistics> stats = getCommandStatistics();
+		String[] summaries = new String[stats.size()];
+		int i = 0;
+		for (CommandStatistics commandStats : stats)
+		{
+			summaries[i++] = commandStats.toString();
+		}
+		return summaries;
+	}
+	
+	public String[] getErrorSummaries()
+	{
+		TreeMap<String, Long> errors = new TreeMap<String, Long>(getErrorIDs());
+		String[] summaries = new String[errors.size()];
+		int i = 0;
+		for (Map.Entry<String, Long> entry : errors.entrySet())
+		{
+			summaries[i++] = "id=" + entry.getKey() + " count=" + entry.getValue();
+		}
+		return summaries;
+	}
+	
+	public void reset()
+	{
+		commands = new ConcurrentHashMap<String, CommandStatistics>();
+		errorIDs = new ConcurrentHashMap<String, LongAdder>();
+		commandCount.reset();
+		errorCount.reset();
+		bytesSent.reset();
+		bytesReceived.reset();
+		rowsReceived.reset();
+		eventCount.reset();
+		droppedEventCount.reset();
+		connectCount.reset();
+		connectionLostCount.reset();
+		for (int i = 0; i < RATE_SECONDS; i++)
+		{
+			eventSlots.set(i, 0);
+		}
+	}
+	
+	/**
+	 * Register this object at the platform MBean server, so the values can be read by JMX tools like JConsole.
+	 * @param name A name to tell apart many statistics objects, used as <code>name</code> property of the ObjectName <code>at.bbgen.ejts3serverquery:type=QueryStatistics</code>.
+	 * @throws EJTS3ServerQueryException 
+	 * @see QueryStatistics#unregisterMBean()
+	 */
+	public synchronized void registerMBean(String name) throws EJTS3ServerQueryException
+	{
+		if (mbeanName != null)
+			throw new EJTS3ServerQueryException("registerMBean(): Already registered!");
+		
+		try
+		{
+			ObjectName objectName = new ObjectName("at.bbgen.ejts3serverquery:type=QueryStatistics,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			mbeanName = objectName;
+		}
+		catch (Exception e)
+		{
+			throw new EJTS3ServerQueryException("Exception registerMBean(): " + e.toString());
+		}
+	}
+	
+	/**
+	 * Remove this object from the platform MBean server.
+	 * @throws EJTS3ServerQueryException 
+	 */
+	public synchronized void unregisterMBean() throws EJTS3ServerQueryException
+	{
+		if (mbeanName == null)
+		{
+			return;
+		}
+		
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+			mbeanName = null;
+		}
+		catch (Exception e)
+		{
+			throw new EJTS3ServerQueryException("Exception unregisterMBean(): " + e.toString());
+		}
+	}
+}
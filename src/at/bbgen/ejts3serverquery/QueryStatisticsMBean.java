@@ -0,0 +1,92 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * JMX management interface of QueryStatistics.
+ * @since 1.2
+ * @see QueryStatistics#registerMBean(String)
+ */
+public interface QueryStatisticsMBean
+{
+	/**
+	 * @return The number of commands sent to the TS3 server.
+	 */
+	public long getCommandCount();
+	
+	/**
+	 * @return The number of commands answered with an error id other than 0.
+	 */
+	public long getErrorCount();
+	
+	/**
+	 * @return The number of bytes sent to the TS3 server.
+	 */
+	public long getBytesSent();
+	
+	/**
+	 * @return The number of bytes received from the TS3 server.
+	 */
+	public long getBytesReceived();
+	
+	/**
+	 * @return The number of entries in all command responses.
+	 */
+	public long getRowsReceived();
+	
+	/**
+	 * @return The number of notify events received.
+	 */
+	public long getEventCount();
+	
+	/**
+	 * @return The number of notify events dropped, because the event listeners could not keep up.
+	 */
+	public long getDroppedEventCount();
+	
+	/**
+	 * @return The average number of notify events per second within the last minute.
+	 */
+	public double getEventsPerSecond();
+	
+	/**
+	 * @return The number of successful connects.
+	 */
+	public long getConnectCount();
+	
+	/**
+	 * @return The number of connections lost by read errors or timeouts.
+	 */
+	public long getConnectionLostCount();
+	
+	/**
+	 * @return A line for each command type with count, errors, rows and latencies.
+	 */
+	public String[] getCommandSummaries();
+	
+	/**
+	 * @return A line for each error id with the number of occurrences.
+	 */
+	public String[] getErrorSummaries();
+	
+	/**
+	 * Reset all values.
+	 */
+	public void reset();
+}
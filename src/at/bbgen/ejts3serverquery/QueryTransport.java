@@ -0,0 +1,89 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.io.IOException;
+
+/**
+ * Line based connection to the TS3 query port, used internally by EJTS3ServerQuery.
+ * @since 1.2
+ * @see SocketQueryTransport
+ * @see NioQueryTransport
+ */
+interface QueryTransport
+{
+	/**
+	 * Receives the incoming lines after QueryTransport.startReading() was called, in the order they were received.
+	 */
+	interface LineHandler extends LineFramer.Sink
+	{
+		/**
+		 * Called once if the connection was closed or reading failed. No lines are received afterwards.
+		 * @param cause The exception which stopped reading or <code>null</code> if the connection was closed by the server.
+		 */
+		public void readFailed(IOException cause);
+	}
+	
+	/**
+	 * Read the next non empty line sent by the server. Blocks until a line is available or the read timeout expires.
+	 * @return The line without line separator or <code>null</code> if the connection was closed by the server.
+	 * @throws java.net.SocketTimeoutException if the read timeout expired.
+	 * @throws IOException on any other connection error.
+	 */
+	public String readLine() throws IOException;
+	
+	/**
+	 * Stop using readLine() and deliver all further incoming lines to the handler as soon as they arrive.
+	 * Lines already received, but not read yet, are delivered first.
+	 * @param handler The receiver of all further lines.
+	 * @throws IOException
+	 */
+	public void startReading(LineHandler handler) throws IOException;
+	
+	/**
+	 * Send a line to the server, the line separator will be appended. Lines written by concurrent threads are not mixed.
+	 * @param line The line to be sent.
+	 * @throws IOException
+	 */
+	public void writeLine(String line) throws IOException;
+	
+	/**
+	 * Returns the time data was received the last time, used to detect a dead connection while waiting for a long response.
+	 * @return Time in milliseconds like System.currentTimeMillis()
+	 */
+	public long getLastReadTime();
+	
+	/**
+	 * Set the read timeout of readLine().
+	 * @param timeout Timeout in milliseconds, 0 for no timeout.
+	 * @throws IOException
+	 */
+	public void setReadTimeout(int timeout) throws IOException;
+	
+	/**
+	 * @return <code>true</code> if the connection is open.
+	 */
+	public boolean isConnected();
+	
+	/**
+	 * Close the connection.
+	 * @throws IOException
+	 */
+	public void close() throws IOException;
+}
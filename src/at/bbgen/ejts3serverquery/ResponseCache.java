@@ -0,0 +1,324 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A short-lived cache for the responses of info and list commands, like <code>serverinfo</code> or <code>servergrouplist</code>.<br><br>
+ * Responses are cached by virtual server ID and command, only for commands with a time to live, and only successful responses are cached.
+ * If the cache is full, the least recently used response is removed.
+ * Notify events remove the responses which may have changed by the event, for example <code>notifyclientmoved</code> removes the cached <code>clientlist</code>,
+ * but only if the connection registered these events with addEventNotify(). Without events the responses are used until their time to live is over.<br><br>
+ * The default times to live are 1 second for <code>serverinfo</code>, <code>channelinfo</code>, <code>clientinfo</code>, <code>serverlist</code>,
+ * <code>channellist</code> and <code>clientlist</code> and 10 seconds for <code>servergrouplist</code> and <code>channelgrouplist</code>.<br><br>
+ * A ResponseCache can be shared by connections to the same TS3 server, but not by connections to different TS3 servers.
+ * @since 1.2
+ * @see EJTS3ServerQuery#setResponseCache(ResponseCache)
+ */
+public final class ResponseCache
+{
+	private static final class CachedResponse
+	{
+		final String response;
+		final long expires;
+		
+		CachedResponse(String response, long expires)
+		{
+			this.response = response;
+			this.expires = expires;
+		}
+	}
+	
+	private final LinkedHashMap<String, CachedResponse> responses;
+	private final HashMap<String, Long> timesToLive = new HashMap<String, Long>();
+	private final HashMap<String, HashSet<String>> invalidations = new HashMap<String, HashSet<String>>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder invalidated = new LongAdder();
+	
+	/**
+	 * Create a cache with the default times to live and event invalidations.
+	 * @param maxEntries The maximum number of cached responses.
+	 */
+	public ResponseCache(final int maxEntries)
+	{
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("maxEntries has to be at least 1");
+		
+		responses = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+			
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest)
+			{
+				return size() > maxEntries;
+			}
+		};
+		
+		setTimeToLive("serverinfo", 1000);
+		setTimeToLive("channelinfo", 1000);
+		setTimeToLive("clientinfo", 1000);
+		setTimeToLive("serverlist", 1000);
+		setTimeToLive("channellist", 1000);
+		setTimeToLive("clientlist", 1000);
+		setTimeToLive("servergrouplist", 10000);
+		setTimeToLive("channelgrouplist", 10000);
+		
+		String[] clientEvents = { "notifycliententerview", "notifyclientleftview", "notifyclientmoved" };
+		for (String eventType : clientEvents)
+		{
+			addInvalidation(eventType, "clientlist");
+			addInvalidation(eventType, "clientinfo");
+			addInvalidation(eventType, "channellist");
+			addInvalidation(eventType, "serverinfo");
+			addInvalidation(eventType, "serverlist");
+		}
+		
+		String[] channelEvents = { "notifychannelcreated", "notifychanneldeleted", "notifychanneledited", "notifychannelmoved",
+			"notifychanneldescriptionchanged", "notifychannelpasswordchanged" };
+		for (String eventType : channelEvents)
+		{
+			addInvalidation(eventType, "channellist");
+			addInvalidation(eventType, "channelinfo");
+			addInvalidation(eventType, "serverinfo");
+		}
+		
+		addInvalidation("notifyserveredited", "serverinfo");
+		addInvalidation("notifyserveredited", "serverlist");
+	}
+	
+	/**
+	 * Set how long the responses of a command are used.
+	 * @param command The command name, like <code>serverinfo</code>
+	 * @param millis The time to live in milliseconds, 0 to not cache this command.
+	 */
+	public synchronized void setTimeToLive(String command, long millis)
+	{
+		if (millis > 0)
+		{
+			timesToLive.put(command, millis);
+		}
+		else
+		{
+			timesToLive.remove(command);
+			invalidate(null, command);
+		}
+	}
+	
+	/**
+	 * Get how long the responses of a command are used.
+	 * @param command The command name, like <code>serverinfo</code>
+	 * @return The time to live in milliseconds, 0 if this command is not cached.
+	 */
+	public synchronized long getTimeToLive(String command)
+	{
+		Long millis = timesToLive.get(command);
+		return (millis == null) ? 0 : millis;
+	}
+	
+	/**
+	 * Remove the cached responses of a command if an event is received.
+	 * @param eventType The event name, like <code>notifyclientmoved</code>
+	 * @param command The command name, like <code>clientlist</code>
+	 */
+	public synchronized void addInvalidation(String eventType, String command)
+	{
+		HashSet<String> commands = invalidations.get(eventType);
+		if (commands == null)
+		{
+			commands = new HashSet<String>();
+			invalidations.put(eventType, commands);
+		}
+		commands.add(command);
+	}
+	
+	/**
+	 * Remove all cached responses.
+	 */
+	public synchronized void invalidate()
+	{
+		invalidated.add(responses.size());
+		responses.clear();
+	}
+	
+	/**
+	 * Remove the cached responses of one virtual server.
+	 * @param serverID A virtual server ID
+	 */
+	public synchronized void invalidate(int serverID)
+	{
+		invalidate(getKey(serverID, ""), null);
+	}
+	
+	/**
+	 * @return The number of requests answered from the cache.
+	 */
+	public long getHitCount()
+	{
+		return hits.sum();
+	}
+	
+	/**
+	 * @return The number of requests of cached commands sent to the TS3 server, because the response was not cached or expired.
+	 */
+	public long getMissCount()
+	{
+		return misses.sum();
+	}
+	
+	/**
+	 * @return The number of cached responses removed by events or invalidate().
+	 */
+	public long getInvalidationCount()
+	{
+		return invalidated.sum();
+	}
+	
+	/**
+	 * @return The number of cached responses, including expired ones.
+	 */
+	public synchronized int size()
+	{
+		return responses.size();
+	}
+	
+	/**
+	 * Get a cached response.
+	 * @return The response or <code>null</code> if the command has no time to live or the response is not cached or expired.
+	 */
+	synchronized String get(int serverID, String command)
+	{
+		if (!timesToLive.containsKey(getCommandName(command)))
+		{
+			return null;
+		}
+		
+		String key = getKey(serverID, command);
+		CachedResponse cached = responses.get(key);
+		if (cached != null && cached.expires - System.nanoTime() > 0)
+		{
+			hits.increment();
+			return cached.response;
+		}
+		
+		if (cached != null)
+		{
+			responses.remove(key);
+		}
+		misses.increment();
+		return null;
+	}
+	
+	/**
+	 * Cache a successful response, if the command has a time to live.
+	 */
+	synchronized void put(int serverID, String command, String response)
+	{
+		Long millis = timesToLive.get(getCommandName(command));
+		if (millis != null && response != null)
+		{
+			responses.put(getKey(serverID, command), new CachedResponse(response, System.nanoTime() + millis * 1000000L));
+		}
+	}
+	
+	/**
+	 * Check an undecoded notify line, only events which remove cached responses have to be decoded.
+	 * @return <code>true</code> if the event type removes any command from the cache and responses are cached.
+	 */
+	synchronized boolean wantsEvent(byte[] line, int length)
+	{
+		if (responses.isEmpty())
+		{
+			return false;
+		}
+		
+		int end = 0;
+		while (end < length && line[end] != ' ')
+		{
+			end++;
+		}
+		
+		return invalidations.containsKey(new String(line, 0, end, LineFramer.UTF8));
+	}
+	
+	/**
+	 * Remove the responses which may have changed by a notify event.
+	 * @param serverID The virtual server ID of the connection which received the event.
+	 * @param actionLine The unparsed notify line
+	 */
+	synchronized void eventReceived(int serverID, String actionLine)
+	{
+		if (responses.isEmpty())
+		{
+			return;
+		}
+		
+		HashSet<String> commands = invalidations.get(getCommandName(actionLine));
+		if (commands != null)
+		{
+			for (String command : commands)
+			{
+				invalidate(getKey(serverID, ""), command);
+			}
+		}
+	}
+	
+	/**
+	 * Remove cached responses.
+	 * @param prefix The key prefix of a virtual server or <code>null</code> for all virtual servers.
+	 * @param command A command name or <code>null</code> for all commands.
+	 */
+	private void invalidate(String prefix, String command)
+	{
+		Iterator<String> keys = responses.keySet().iterator();
+		while (keys.hasNext())
+		{
+			String key = keys.next();
+			if (prefix != null && !key.startsWith(prefix))
+			{
+				continue;
+			}
+			
+			if (command != null && !getCommandName(key.substring(key.indexOf(' ') + 1)).equals(command))
+			{
+				continue;
+			}
+			
+			keys.remove();
+			invalidated.increment();
+		}
+	}
+	
+	private static String getKey(int serverID, String command)
+	{
+		return Integer.toString(serverID) + " " + command;
+	}
+	
+	private static String getCommandName(String command)
+	{
+		int pos = command.indexOf(' ');
+		return (pos == -1) ? command : command.substring(0, pos);
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+
+/**
+ * Blocking transport using a plain java.net.Socket. Each connection needs its own thread reading from it.
+ * @since 1.2
+ */
+class SocketQueryTransport implements QueryTransport
+{
+	private Socket socket = null;
+	private InputStream in = null;
+	private OutputStream out = null;
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+	private final LineFramer framer = new LineFramer();
+	private final LinkedList<String> lines = new LinkedList<String>();
+	private volatile long lastReadTime = System.currentTimeMillis();
+	private final LineFramer.Sink lineQueue = new LineFramer.Sink()
+	{
+		public boolean wantsLine(int lineType, byte[] line, int length)
+		{
+			return true;
+		}
+		
+		public void lineReceived(String line)
+		{
+			lines.add(line);
+		}
+		
+		public boolean wantsEntries()
+		{
+			return false;
+		}
+		
+		public void entryReceived(String entry)
+		{
+		}
+	};
+	
+	SocketQueryTransport(String ip, int queryport) throws IOException
+	{
+		socket = new Socket(ip, queryport);  // Open socket connection to TS3 telnet port
+		try
+		{
+			in = socket.getInputStream();
+			out = socket.getOutputStream();
+		}
+		catch (IOException e)
+		{
+			socket.close();
+			throw e;
+		}
+	}
+	
+	public String readLine() throws IOException
+	{
+		while (lines.isEmpty())
+		{
+			if (!fillBuffer())
+			{
+				return null;
+			}
+			framer.frame(readBuffer, lineQueue);
+		}
+		
+		return lines.removeFirst();
+	}
+	
+	/**
+	 * Read the next bytes into the read buffer.
+	 * @return <code>false</code> if the connection was closed by the server.
+	 */
+	private boolean fillBuffer() throws IOException
+	{
+		int count = in.read(readBuffer.array(), 0, readBuffer.capacity());
+		if (count == -1)
+		{
+			return false;
+		}
+		
+		lastReadTime = System.currentTimeMillis();
+		readBuffer.position(0);
+		readBuffer.limit(count);
+		return true;
+	}
+	
+	public void startReading(final LineHandler handler) throws IOException
+	{
+		socket.setSoTimeout(0);  // Waiting for lines is no error anymore
+		
+		Thread reader = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					while (!lines.isEmpty())
+					{
+						handler.lineReceived(lines.removeFirst());
+					}
+					
+					while (fillBuffer())
+					{
+						framer.frame(readBuffer, handler);
+					}
+					handler.readFailed(null);
+				}
+				catch (IOException e)
+				{
+					handler.readFailed(e);
+				}
+				catch (RuntimeException e)
+				{
+					// A failing line handler would leave the connection in an unknown state, so close it.
+					handler.readFailed(new IOException("Exception startReading(): " + e.toString(), e));
+				}
+			}
+		}, "EJTS3ServerQuery-Reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+	
+	public synchronized void writeLine(String line) throws IOException
+	{
+		out.write((line + "\n").getBytes(LineFramer.UTF8));
+		out.flush();
+	}
+	
+	public long getLastReadTime()
+	{
+		return lastReadTime;
+	}
+	
+	public void setReadTimeout(int timeout) throws IOException
+	{
+		socket.setSoTimeout(timeout);
+	}
+	
+	public boolean isConnected()
+	{
+		return socket.isConnected() && !socket.isClosed();
+	}
+	
+	public void close() throws IOException
+	{
+		socket.close();
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * Parser and escaping for the TS3 ServerQuery format.<br>
+ * Entries are separated by <code>|</code>, key / value pairs by space and values are escaped with backslash sequences.
+ * The parser splits entries, keys and values and unescapes the values in a single pass over the String.
+ * Escaping and unescaping use lookup tables, so every character is checked only once.
+ * @since 1.2
+ */
+final class TS3Codec
+{
+	/** Escape letter for each ASCII character, 0 if the character is not escaped. */
+	private static final char[] ESCAPE = new char[128];
+	
+	/** Character for each escape letter, 0 if the escape sequence is unknown. */
+	private static final char[] UNESCAPE = new char[128];
+	
+	static
+	{
+		addEscape('\\', '\\');
+		addEscape(' ', 's');
+		addEscape('/', '/');
+		addEscape('|', 'p');
+		addEscape('\b', 'b');
+		addEscape('\f', 'f');
+		addEscape('\n', 'n');
+		addEscape('\r', 'r');
+		addEscape('\t', 't');
+		addEscape((char)7, 'a'); // \a (not supported by Java)
+		addEscape((char)11, 'v'); // \v (not supported by Java)
+	}
+	
+	private static void addEscape(char c, char letter)
+	{
+		ESCAPE[c] = letter;
+		UNESCAPE[letter] = c;
+	}
+	
+	/**
+	 * Creates the objects for the parsed entries, so the parser can fill any kind of entry directly.
+	 */
+	interface RowBuilder<T>
+	{
+		/**
+		 * @return A new empty entry
+		 */
+		public T newRow();
+		
+		/**
+		 * Add a key / value pair to the entry. The value is already unescaped.
+		 */
+		public void addField(T row, String key, String value);
+	}
+	
+	/** Builds the HashMaps returned by EJTS3ServerQuery.parseRawData(). */
+	static final RowBuilder<HashMap<String, String>> HASHMAP_ROWS = new RowBuilder<HashMap<String, String>>()
+	{
+		public HashMap<String, String> newRow()
+		{
+			return new HashMap<String, String>();
+		}
+		
+		public void addField(HashMap<String, String> row, String key, String value)
+		{
+			row.put(key, value);
+		}
+	};
+	
+	private TS3Codec()
+	{
+	}
+	
+	/**
+	 * Parse all entries of a response.
+	 * @param rawData The unformatted TS3 server response
+	 * @return A Vector which contains a HashMap for each entry, or <code>null</code> if rawData is <code>null</code>.
+	 * @see EJTS3ServerQuery#parseRawData(String)
+	 */
+	static Vector<HashMap<String, String>> parseRows(String rawData)
+	{
+		return parseRows(rawData, HASHMAP_ROWS);
+	}
+	
+	/**
+	 * Parse all entries of a response.
+	 * @param rawData The unformatted TS3 server response
+	 * @param builder Creates and fills the entries
+	 * @return A Vector which contains an entry for each entry of the response, or <code>null</code> if rawData is <code>null</code>.
+	 */
+	static <T> Vector<T> parseRows(String rawData, RowBuilder<T> builder)
+	{
+		if (rawData == null)
+		{
+			return null;
+		}
+		
+		Vector<T> formattedData = new Vector<T>();
+		StringBuilder buffer = new StringBuilder();
+		int length = rawData.length();
+		int pos = 0;
+		
+		while (pos < length)
+		{
+			if (rawData.charAt(pos) == '|')
+			{
+				pos++;
+				continue;
+			}
+			
+			T entry = builder.newRow();
+			pos = parseFields(rawData, pos, true, builder, entry, buffer);
+			formattedData.addElement(entry);
+		}
+		
+		return formattedData;
+	}
+	
+	/**
+	 * Parse a single line of key / value pairs. A <code>|</code> is no separator here, it stays part of the value.
+	 * @param line The line to be parsed
+	 * @return A HashMap with the key / value pairs or <code>null</code> if no line given.
+	 */
+	static HashMap<String, String> parseLine(String line)
+	{
+		return parseLine(line, HASHMAP_ROWS);
+	}
+	
+	/**
+	 * Parse a single line of key / value pairs into an entry. A <code>|</code> is no separator here, it stays part of the value.
+	 * @param line The line to be parsed
+	 * @param builder Creates and fills the entry
+	 * @return The entry or <code>null</code> if no line given.
+	 */
+	static <T> T parseLine(String line, RowBuilder<T> builder)
+	{
+		if (line == null || line.length() == 0)
+		{
+			return null;
+		}
+		
+		T retValue = builder.newRow();
+		parseFields(line, 0, false, builder, retValue, null);
+		return retValue;
+	}
+	
+	/**
+	 * Parse the key / value pairs starting at <code>start</code> into the entry.
+	 * Keys without value get an empty String as value.
+	 * @param splitRows <code>true</code> to stop at the next <code>|</code>
+	 * @param buffer A buffer for unescaping values, can be <code>null</code>
+	 * @return The position of the <code>|</code> which ended the entry, or the length of data.
+	 */
+	private static <T> int parseFields(String data, int start, boolean splitRows, RowBuilder<T> builder, T target, StringBuilder buffer)
+	{
+		int length = data.length();
+		int pos = start;
+		
+		while (pos < length)
+		{
+			char c = data.charAt(pos);
+			if (c == '|' && splitRows)
+			{
+				return pos;
+			}
+			if (c == ' ')
+			{
+				pos++;
+				continue;
+			}
+			
+			// Key
+			int keyStart = pos;
+			while (pos < length)
+			{
+				c = data.charAt(pos);
+				if (c == '=' || c == ' ' || (c == '|' && splitRows))
+				{
+					break;
+				}
+				pos++;
+			}
+			
+			if (pos == length || c != '=')
+			{
+				builder.addField(target, data.substring(keyStart, pos), "");
+				continue;
+			}
+			
+			String key = data.substring(keyStart, pos);
+			
+			// Value, copied to the buffer only after the first escape sequence
+			int valueStart = ++pos;
+			boolean escaped = false;
+			while (pos < length)
+			{
+				c = data.charAt(pos);
+				if (c == ' ' || (c == '|' && splitRows))
+				{
+					break;
+				}
+				
+				if (c == '\\')
+				{
+					if (!escaped)
+					{
+						if (buffer == null)
+						{
+							buffer = new StringBuilder();
+						}
+						buffer.setLength(0);
+						buffer.append(data, valueStart, pos);
+						escaped = true;
+					}
+					
+					if (pos + 1 < length)
+					{
+						char replacement = unescape(data.charAt(pos + 1));
+						if (replacement != 0)
+						{
+							buffer.append(replacement);
+							pos += 2;
+							continue;
+						}
+					}
+					
+					buffer.append(c);
+				}
+				else if (escaped)
+				{
+					buffer.append(c);
+				}
+				pos++;
+			}
+			
+			builder.addField(target, key, escaped ? buffer.toString() : data.substring(valueStart, pos));
+		}
+		
+		return pos;
+	}
+	
+	/**
+	 * Convert escaped characters to normal characters.
+	 * @param str The String which should be unescaped.
+	 * @return The unescaped String, the same instance if it contains no escape sequence.
+	 * @see EJTS3ServerQuery#decodeTS3String(String)
+	 */
+	static String decode(String str)
+	{
+		int pos = str.indexOf('\\');
+		if (pos == -1)
+		{
+			return str;
+		}
+		
+		int length = str.length();
+		StringBuilder buffer = new StringBuilder(length);
+		buffer.append(str, 0, pos);
+		
+		while (pos < length)
+		{
+			char c = str.charAt(pos);
+			if (c == '\\' && pos + 1 < length)
+			{
+				char replacement = unescape(str.charAt(pos + 1));
+				if (replacement != 0)
+				{
+					buffer.append(replacement);
+					pos += 2;
+					continue;
+				}
+			}
+			buffer.append(c);
+			pos++;
+		}
+		
+		return buffer.toString();
+	}
+	
+	/**
+	 * @return The character of the escape sequence <code>\c</code> or 0 if unknown.
+	 */
+	private static char unescape(char c)
+	{
+		return (c < 128 ? UNESCAPE[c] : 0);
+	}
+	
+	/**
+	 * Escape all special characters for the TS3 server.
+	 * @param str The String which should be escaped.
+	 * @return The escaped String, the same instance if nothing needs to be escaped.
+	 * @see EJTS3ServerQuery#encodeTS3String(String)
+	 */
+	static String encode(String str)
+	{
+		int length = str.length();
+		int pos = 0;
+		while (pos < length && !needsEscape(str.charAt(pos)))
+		{
+			pos++;
+		}
+		
+		if (pos == length)
+		{
+			return str;
+		}
+		
+		StringBuilder buffer = new StringBuilder(length + 16);
+		buffer.append(str, 0, pos);
+		appendEscaped(str, pos, buffer);
+		return buffer.toString();
+	}
+	
+	/**
+	 * Escape all special characters for the TS3 server and append the result to the buffer.
+	 * Use this to build commands without creating an extra String for every value.
+	 * @param str The String which should be escaped.
+	 * @param buffer The buffer which receives the escaped String.
+	 * @return The buffer
+	 */
+	static StringBuilder encode(String str, StringBuilder buffer)
+	{
+		appendEscaped(str, 0, buffer);
+		return buffer;
+	}
+	
+	private static void appendEscaped(String str, int start, StringBuilder buffer)
+	{
+		int length = str.length();
+		for (int pos = start; pos < length; pos++)
+		{
+			char c = str.charAt(pos);
+			if (needsEscape(c))
+			{
+				buffer.append('\\').append(ESCAPE[c]);
+			}
+			else
+			{
+				buffer.append(c);
+			}
+		}
+	}
+	
+	private static boolean needsEscape(char c)
+	{
+		return c < 128 && ESCAPE[c] != 0;
+	}
+}
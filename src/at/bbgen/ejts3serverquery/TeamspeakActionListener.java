@@ -22,11 +22,13 @@ package at.bbgen.ejts3serverquery;
 import java.util.HashMap;
 
 /**
- * Implement this interface, if you want to receive notify events from Teamspeak 3 server.
+ * Implement this interface, if you want to receive notify events from Teamspeak 3 server.<br>
+ * The events are delivered by the event executor of EJTS3ServerQuery, so this method can be called by several threads at once.
  * @author Stefan Martens
  * @since 0.7
  * @see EJTS3ServerQuery#setTeamspeakActionListener(TeamspeakActionListener)
  * @see EJTS3ServerQuery#removeTeamspeakActionListener()
+ * @see EJTS3ServerQuery#setEventExecutor(java.util.concurrent.Executor)
  */
 public interface TeamspeakActionListener
 {
@@ -0,0 +1,176 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.Vector;
+
+/**
+ * A notify event of the TS3 server, with the values already parsed.<br><br>
+ * The common events have own subclasses: ClientEnterEvent, ClientLeaveEvent, ClientMoveEvent, TextMessageEvent and ChannelEvent.
+ * All other events are delivered as TeamspeakEvent. All keys of the event can be read with get(), getInt() and getLong().<br><br>
+ * Events are shared by all listeners, so they must not be changed.
+ * @since 1.2
+ * @see TeamspeakEventListener
+ * @see EJTS3ServerQuery#addEventListener(Class, TeamspeakEventListener, EventFilter)
+ */
+public class TeamspeakEvent extends QueryEntry
+{
+	private final String eventType;
+	private int invokerID = -1;
+	private String invokerName = null;
+	private String invokerUniqueIdentifier = null;
+	private int reasonID = -1;
+	
+	TeamspeakEvent(String eventType)
+	{
+		this.eventType = eventType;
+	}
+	
+	void setField(String key, String value)
+	{
+		if (key.equals("invokerid"))
+		{
+			invokerID = parseInt(value, -1);
+		}
+		else if (key.equals("invokername"))
+		{
+			invokerName = value;
+		}
+		else if (key.equals("invokeruid"))
+		{
+			invokerUniqueIdentifier = value;
+		}
+		else if (key.equals("reasonid"))
+		{
+			reasonID = parseInt(value, -1);
+		}
+	}
+	
+	/**
+	 * Parse a notify line into events. Lines with many entries separated by <code>|</code>, like <code>notifyclientmoved</code> with many clients, return one event per entry.
+	 * Values of the first entry missing in the following entries are copied to them.
+	 * @param actionLine The unparsed notify line
+	 * @return The events of the line
+	 */
+	static Vector<TeamspeakEvent> parse(String actionLine)
+	{
+		int pos = actionLine.indexOf(' ');
+		final String eventType = (pos == -1) ? actionLine : actionLine.substring(0, pos);
+		
+		Vector<TeamspeakEvent> events = TS3Codec.parseRows((pos == -1) ? "" : actionLine.substring(pos + 1), new Rows<TeamspeakEvent>()
+		{
+			public TeamspeakEvent newRow()
+			{
+				return create(eventType);
+			}
+		});
+		
+		if (events == null || events.isEmpty())
+		{
+			events = new Vector<TeamspeakEvent>();
+			events.addElement(create(eventType));
+		}
+		
+		TeamspeakEvent first = events.firstElement();
+		for (int i = 1; i < events.size(); i++)
+		{
+			TeamspeakEvent event = events.elementAt(i);
+			for (int j = 0; j < first.size(); j++)
+			{
+				if (!event.containsKey(first.keyAt(j)))
+				{
+					event.addField(first.keyAt(j), first.valueAt(j));
+				}
+			}
+		}
+		
+		return events;
+	}
+	
+	private static TeamspeakEvent create(String eventType)
+	{
+		if (eventType.equals("notifycliententerview"))
+		{
+			return new ClientEnterEvent(eventType);
+		}
+		else if (eventType.equals("notifyclientleftview"))
+		{
+			return new ClientLeaveEvent(eventType);
+		}
+		else if (eventType.equals("notifyclientmoved"))
+		{
+			return new ClientMoveEvent(eventType);
+		}
+		else if (eventType.equals("notifytextmessage"))
+		{
+			return new TextMessageEvent(eventType);
+		}
+		else if (eventType.startsWith("notifychannel"))
+		{
+			return new ChannelEvent(eventType);
+		}
+		
+		return new TeamspeakEvent(eventType);
+	}
+	
+	/**
+	 * @return The type of the event, like <code>notifycliententerview</code>.
+	 */
+	public String getEventType()
+	{
+		return eventType;
+	}
+	
+	/**
+	 * @return The client ID of the client who caused the event, or -1 if not included.
+	 */
+	public int getInvokerID()
+	{
+		return invokerID;
+	}
+	
+	/**
+	 * @return The nickname of the client who caused the event, or <code>null</code> if not included.
+	 */
+	public String getInvokerName()
+	{
+		return invokerName;
+	}
+	
+	/**
+	 * @return The unique identifier of the client who caused the event, or <code>null</code> if not included.
+	 */
+	public String getInvokerUniqueIdentifier()
+	{
+		return invokerUniqueIdentifier;
+	}
+	
+	/**
+	 * @return The reason ID of the event, like 0 for a client switching the channel, 4 for a kick from a channel or 5 for a kick from the server, or -1 if not included.
+	 */
+	public int getReasonID()
+	{
+		return reasonID;
+	}
+	
+	public String toString()
+	{
+		return eventType + " " + super.toString();
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * Receives typed notify events of the TS3 server. Any number of listeners can be added to a connection,
+ * every event is parsed only once and the same event object is passed to all listeners.<br>
+ * The events are delivered by the event executor of EJTS3ServerQuery, so this method can be called by several threads at once.
+ * @param <T> The event class the listener was added for
+ * @since 1.2
+ * @see EJTS3ServerQuery#addEventListener(Class, TeamspeakEventListener, EventFilter)
+ * @see EJTS3ServerQuery#setEventExecutor(java.util.concurrent.Executor)
+ */
+public interface TeamspeakEventListener<T extends TeamspeakEvent>
+{
+	/**
+	 * Called for every received event of the event class the listener was added for.
+	 * @param event The event, shared with the other listeners, so it must not be changed.
+	 */
+	public void eventReceived(T event);
+}
@@ -0,0 +1,85 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * The event <code>notifytextmessage</code>, a chat message was received or sent.
+ * @since 1.2
+ * @see EJTS3ServerQuery#EVENT_MODE_TEXTPRIVATE
+ * @see EJTS3ServerQuery#EVENT_MODE_TEXTCHANNEL
+ * @see EJTS3ServerQuery#EVENT_MODE_TEXTSERVER
+ */
+public final class TextMessageEvent extends TeamspeakEvent
+{
+	private int targetMode = -1;
+	private int targetID = -1;
+	private String message = null;
+	
+	TextMessageEvent(String eventType)
+	{
+		super(eventType);
+	}
+	
+	void setField(String key, String value)
+	{
+		if (key.equals("targetmode"))
+		{
+			targetMode = parseInt(value, -1);
+		}
+		else if (key.equals("target"))
+		{
+			targetID = parseInt(value, -1);
+		}
+		else if (key.equals("msg"))
+		{
+			message = value;
+		}
+		else
+		{
+			super.setField(key, value);
+		}
+	}
+	
+	/**
+	 * @return The target mode, like the TEXTMESSAGE_TARGET constants: 1 for a private, 2 for a channel and 3 for a server message.
+	 * @see EJTS3ServerQuery#TEXTMESSAGE_TARGET_CLIENT
+	 * @see EJTS3ServerQuery#TEXTMESSAGE_TARGET_CHANNEL
+	 * @see EJTS3ServerQuery#TEXTMESSAGE_TARGET_VIRTUALSERVER
+	 */
+	public int getTargetMode()
+	{
+		return targetMode;
+	}
+	
+	/**
+	 * @return The client ID of the receiver of a private message, or -1 if not included.
+	 */
+	public int getTargetID()
+	{
+		return targetID;
+	}
+	
+	/**
+	 * @return The message
+	 */
+	public String getMessage()
+	{
+		return message;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * A virtual server entry of <code>serverlist</code> or <code>serverinfo</code>.<br><br>
+ * Returned by getServerList() or getServerInfo().
+ * All other keys of the TS3 server response can be read with get(), getInt() and getLong().
+ * @since 1.2
+ */
+public final class VirtualServerInfo extends QueryEntry
+{
+	static final Rows<VirtualServerInfo> ROWS = new Rows<VirtualServerInfo>()
+	{
+		public VirtualServerInfo newRow()
+		{
+			return new VirtualServerInfo();
+		}
+	};
+	
+	private int serverID = -1;
+	private int port = -1;
+	private int clientsOnline = -1;
+	private int maxClients = -1;
+	private long uptime = -1;
+	private String status = null;
+	private String name = null;
+	
+	VirtualServerInfo()
+	{
+	}
+	
+	void setField(String key, String value)
+	{
+		if (key.equals("virtualserver_id"))
+		{
+			serverID = parseInt(value, -1);
+		}
+		else if (key.equals("virtualserver_port"))
+		{
+			port = parseInt(value, -1);
+		}
+		else if (key.equals("virtualserver_clientsonline"))
+		{
+			clientsOnline = parseInt(value, -1);
+		}
+		else if (key.equals("virtualserver_maxclients"))
+		{
+			maxClients = parseInt(value, -1);
+		}
+		else if (key.equals("virtualserver_uptime"))
+		{
+			uptime = parseLong(value, -1);
+		}
+		else if (key.equals("virtualserver_status"))
+		{
+			status = value;
+		}
+		else if (key.equals("virtualserver_name"))
+		{
+			name = value;
+		}
+	}
+	
+	/**
+	 * @return The virtual server ID.
+	 */
+	public int getServerID()
+	{
+		return serverID;
+	}
+	
+	/**
+	 * @return The UDP port of the virtual server.
+	 */
+	public int getPort()
+	{
+		return port;
+	}
+	
+	/**
+	 * @return The number of clients online, or -1 if not included.
+	 */
+	public int getClientsOnline()
+	{
+		return clientsOnline;
+	}
+	
+	/**
+	 * @return The maximum number of clients, or -1 if not included.
+	 */
+	public int getMaxClients()
+	{
+		return maxClients;
+	}
+	
+	/**
+	 * @return The uptime in seconds, or -1 if not included.
+	 */
+	public long getUptime()
+	{
+		return uptime;
+	}
+	
+	/**
+	 * @return The status, like <code>online</code>.
+	 */
+	public String getStatus()
+	{
+		return status;
+	}
+	
+	/**
+	 * @return The virtual server name.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+}
@@ -0,0 +1,340 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A local copy of the clients and channels of a virtual server.<br><br>
+ * The mirror is filled once with <code>clientlist</code> and <code>channellist</code> and then kept current by the notify events of the TS3 server,
+ * so all methods of this class answer from memory without sending any command.
+ * The entries are replaced on every change and never modified afterwards, so they can be kept and used by any thread.<br><br>
+ * <b>Notice:</b><br>
+ * The mirror only follows the virtual server which was selected when it was started, the connection cannot select another virtual server while the mirror runs.
+ * The value <code>total_clients</code> of the channels is not updated by events, use getClientCount(int) instead.
+ * @since 1.2
+ * @see EJTS3ServerQuery#startServerMirror()
+ */
+public final class VirtualServerMirror
+{
+	private final int serverID;
+	private final ConcurrentHashMap<Integer, ClientInfo> clients = new ConcurrentHashMap<Integer, ClientInfo>();
+	private final ConcurrentHashMap<Integer, ChannelInfo> channels = new ConcurrentHashMap<Integer, ChannelInfo>();
+	private final ConcurrentHashMap<Integer, Set<Integer>> channelClients = new ConcurrentHashMap<Integer, Set<Integer>>();
+	
+	/* Events received before the matching list was parsed are already part of the list. */
+	private volatile boolean clientsSeeded = false;
+	private volatile boolean channelsSeeded = false;
+	private volatile long lastUpdate = 0;
+	
+	VirtualServerMirror(int serverID)
+	{
+		this.serverID = serverID;
+	}
+	
+	/**
+	 * Called by the reader thread with the parsed <code>clientlist</code>, before any later event is handled.
+	 */
+	void seedClients(Vector<ClientInfo> clientList)
+	{
+		for (ClientInfo client : clientList)
+		{
+			putClient(client);
+		}
+		
+		clientsSeeded = true;
+		lastUpdate = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Called by the reader thread with the parsed <code>channellist</code>, before any later event is handled.
+	 */
+	void seedChannels(Vector<ChannelInfo> channelList)
+	{
+		for (ChannelInfo channel : channelList)
+		{
+			channels.put(channel.getChannelID(), channel);
+		}
+		
+		channelsSeeded = true;
+		lastUpdate = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Apply a notify event to the mirror. Called by the reader thread, so the events are applied in the order the TS3 server sent them.
+	 * @param actionLine The complete notify line
+	 */
+	void eventReceived(String actionLine)
+	{
+		int pos = actionLine.indexOf(' ');
+		if (pos == -1)
+		{
+			return;
+		}
+		
+		String eventType = actionLine.substring(0, pos);
+		String data = actionLine.substring(pos + 1);
+		
+		if (clientsSeeded)
+		{
+			if (eventType.equals("notifycliententerview"))
+			{
+				// Only the first entry of many clients entering at once contains the channel.
+				String targetChannel = null;
+				for (ClientInfo client : TS3Codec.parseRows(data, ClientInfo.ROWS))
+				{
+					if (client.get("ctid") != null)
+					{
+						targetChannel = client.get("ctid");
+					}
+					
+					// Without any channel the client cannot be placed, so the entry is skipped.
+					if (targetChannel != null)
+					{
+						client.addField("cid", targetChannel);
+						putClient(client);
+					}
+				}
+			}
+			else if (eventType.equals("notifyclientleftview"))
+			{
+				for (ClientInfo client : TS3Codec.parseRows(data, ClientInfo.ROWS))
+				{
+					removeClient(client.getClientID());
+				}
+			}
+			else if (eventType.equals("notifyclientmoved"))
+			{
+				// Only the first entry of a move with many clients contains the target channel.
+				String targetChannel = null;
+				for (ClientInfo client : TS3Codec.parseRows(data, ClientInfo.ROWS))
+				{
+					if (client.get("ctid") != null)
+					{
+						targetChannel = client.get("ctid");
+					}
+					
+					ClientInfo oldClient = clients.get(client.getClientID());
+					if (oldClient != null && targetChannel != null)
+					{
+						ClientInfo movedClient = new ClientInfo();
+						oldClient.copyFieldsTo(movedClient);
+						movedClient.addField("cid", targetChannel);
+						putClient(movedClient);
+					}
+				}
+			}
+		}
+		
+		if (channelsSeeded)
+		{
+			if (eventType.equals("notifychannelcreated"))
+			{
+				ChannelInfo channel = TS3Codec.parseLine(data, ChannelInfo.ROWS);
+				if (channel.get("cpid") != null)
+				{
+					channel.addField("pid", channel.get("cpid"));
+				}
+				channels.put(channel.getChannelID(), channel);
+			}
+			else if (eventType.equals("notifychanneldeleted"))
+			{
+				for (ChannelInfo channel : TS3Codec.parseRows(data, ChannelInfo.ROWS))
+				{
+					channels.remove(channel.getChannelID());
+				}
+			}
+			else if (eventType.equals("notifychanneledited") || eventType.equals("notifychannelmoved"))
+			{
+				ChannelInfo changes = TS3Codec.parseLine(data, ChannelInfo.ROWS);
+				ChannelInfo oldChannel = channels.get(changes.getChannelID());
+				if (oldChannel != null)
+				{
+					ChannelInfo channel = new ChannelInfo();
+					oldChannel.copyFieldsTo(channel);
+					for (int i = 0; i < changes.size(); i++)
+					{
+						String key = changes.keyAt(i);
+						if (key.startsWith("channel_"))
+						{
+							channel.addField(key, changes.valueAt(i));
+						}
+					}
+					
+					if (changes.get("cpid") != null)
+					{
+						channel.addField("pid", changes.get("cpid"));
+					}
+					if (changes.get("order") != null)
+					{
+						channel.addField("channel_order", changes.get("order"));
+					}
+					channels.put(channel.getChannelID(), channel);
+				}
+			}
+		}
+		
+		lastUpdate = System.currentTimeMillis();
+	}
+	
+	private void putClient(ClientInfo client)
+	{
+		ClientInfo oldClient = clients.put(client.getClientID(), client);
+		if (oldClient != null && oldClient.getChannelID() != client.getChannelID())
+		{
+			Set<Integer> oldMembers = channelClients.get(oldClient.getChannelID());
+			if (oldMembers != null)
+			{
+				oldMembers.remove(client.getClientID());
+			}
+		}
+		
+		Set<Integer> members = channelClients.get(client.getChannelID());
+		if (members == null)
+		{
+			Set<Integer> newMembers = ConcurrentHashMap.newKeySet();
+			members = channelClients.putIfAbsent(client.getChannelID(), newMembers);
+			if (members == null)
+			{
+				members = newMembers;
+			}
+		}
+		members.add(client.getClientID());
+	}
+	
+	private void removeClient(int clientID)
+	{
+		ClientInfo client = clients.remove(clientID);
+		if (client != null)
+		{
+			Set<Integer> members = channelClients.get(client.getChannelID());
+			if (members != null)
+			{
+				members.remove(clientID);
+			}
+		}
+	}
+	
+	/**
+	 * @return The virtual server ID this mirror follows.
+	 */
+	public int getServerID()
+	{
+		return serverID;
+	}
+	
+	/**
+	 * @return <code>true</code> if the client and channel lists were loaded.
+	 */
+	public boolean isSeeded()
+	{
+		return clientsSeeded && channelsSeeded;
+	}
+	
+	/**
+	 * @return The time of the last change as returned by System.currentTimeMillis().
+	 */
+	public long getLastUpdate()
+	{
+		return lastUpdate;
+	}
+	
+	/**
+	 * Get a client.
+	 * @param clientID A client ID
+	 * @return The client or <code>null</code> if the client is not on the virtual server.
+	 */
+	public ClientInfo getClient(int clientID)
+	{
+		return clients.get(clientID);
+	}
+	
+	/**
+	 * Get a channel.
+	 * @param channelID A channel ID
+	 * @return The channel or <code>null</code> if the channel does not exist.
+	 */
+	public ChannelInfo getChannel(int channelID)
+	{
+		return channels.get(channelID);
+	}
+	
+	/**
+	 * @return All clients on the virtual server, including query clients.
+	 */
+	public Collection<ClientInfo> getClients()
+	{
+		return Collections.unmodifiableCollection(clients.values());
+	}
+	
+	/**
+	 * @return All channels of the virtual server.
+	 */
+	public Collection<ChannelInfo> getChannels()
+	{
+		return Collections.unmodifiableCollection(channels.values());
+	}
+	
+	/**
+	 * Get all clients in a channel.
+	 * @param channelID A channel ID
+	 * @return A Vector with the clients in the channel, empty if there are none.
+	 */
+	public Vector<ClientInfo> getClientsInChannel(int channelID)
+	{
+		Vector<ClientInfo> result = new Vector<ClientInfo>();
+		Set<Integer> members = channelClients.get(channelID);
+		if (members != null)
+		{
+			for (Integer clientID : members)
+			{
+				ClientInfo client = clients.get(clientID);
+				if (client != null && client.getChannelID() == channelID)
+				{
+					result.addElement(client);
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Get the number of clients in a channel.
+	 * @param channelID A channel ID
+	 * @return The number of clients in the channel.
+	 */
+	public int getClientCount(int channelID)
+	{
+		Set<Integer> members = channelClients.get(channelID);
+		return (members == null) ? 0 : members.size();
+	}
+	
+	/**
+	 * @return The number of clients on the virtual server, including query clients.
+	 */
+	public int getClientCount()
+	{
+		return clients.size();
+	}
+}
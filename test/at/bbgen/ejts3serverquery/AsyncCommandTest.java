@@ -0,0 +1,95 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Futures of the asynchronous methods are completed by the async executor, so their continuations may call blocking methods.
+ */
+public class AsyncCommandTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		server.start();
+		try
+		{
+			EJTS3ServerQuery query = new EJTS3ServerQuery();
+			query.connectTS3Query("127.0.0.1", server.getPort());
+			try
+			{
+				continuationsMayBlock(query);
+				errorsFailTheFuture(query);
+			}
+			finally
+			{
+				query.closeTS3Connection();
+			}
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+	
+	private static void continuationsMayBlock(final EJTS3ServerQuery query) throws Exception
+	{
+		CompletableFuture<String> chained = query.doCommandAsync("version").thenApply(version ->
+		{
+			check(!Thread.currentThread().getName().startsWith("EJTS3ServerQuery"), "continuation runs on " + Thread.currentThread().getName());
+			try
+			{
+				return query.doCommand("whoami").get("id");
+			}
+			catch (EJTS3ServerQueryException e)
+			{
+				throw new RuntimeException(e);
+			}
+		});
+		
+		check("0".equals(chained.get(5, TimeUnit.SECONDS)), "blocking command in the continuation failed");
+	}
+	
+	private static void errorsFailTheFuture(EJTS3ServerQuery query) throws Exception
+	{
+		CompletableFuture<HashMap<String, String>> info = query.getInfoAsync(EJTS3ServerQuery.INFOMODE_SERVERINFO, 0);
+		try
+		{
+			info.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("serverinfo without selected server succeeded");
+		}
+		catch (ExecutionException e)
+		{
+			check(e.getCause() instanceof EJTS3ServerQueryException, "unexpected cause " + e.getCause());
+		}
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
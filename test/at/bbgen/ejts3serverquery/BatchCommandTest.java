@@ -0,0 +1,122 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * executeBatch() splits the targets into several commands and reports the result of every target.
+ */
+public class BatchCommandTest
+{
+	private static final int TARGETS = 500;
+	private static final String FAILING_TARGET = "123";
+	
+	public static void main(String[] args) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		final Vector<String> received = new Vector<String>();
+		server.setCommandHandler("clientpoke", new MockServerQueryServer.CommandHandler()
+		{
+			public String handleCommand(MockServerQueryServer.Session session, HashMap<String, String> parameters) throws MockServerQueryServer.CommandException
+			{
+				if (!"hello world".equals(parameters.get("msg")))
+					throw new MockServerQueryServer.CommandException(1538, "invalid parameter");
+				
+				String[] targets = parameters.get("clid").split("\\|");
+				for (String target : targets)
+				{
+					if (target.equals(FAILING_TARGET))
+						throw new MockServerQueryServer.CommandException(512, "invalid clientID");
+				}
+				for (String target : targets)
+				{
+					received.addElement(target);
+				}
+				return "";
+			}
+		});
+		server.start();
+		try
+		{
+			EJTS3ServerQuery query = new EJTS3ServerQuery();
+			query.connectTS3Query("127.0.0.1", server.getPort());
+			query.selectVirtualServer(1);
+			
+			BatchCommand batch = new BatchCommand("clientpoke", "clid").setParameter("msg", "hello world").setMaxLineLength(1000);
+			for (int i = 1; i <= TARGETS; i++)
+			{
+				batch.addTarget(i);
+			}
+			
+			BatchResult result = query.executeBatch(batch);
+			check(result.getTargetCount() == TARGETS, "result has " + result.getTargetCount() + " targets");
+			check(result.getCommandCount() > 1, "targets were not split");
+			check(!result.isSuccessful(), "failing target not reported");
+			check(result.getFailedCount() > 1, "without isolation all targets of the failed command fail");
+			check(result.getFailedTargets().contains(FAILING_TARGET), "failing target missing");
+			check(received.size() == TARGETS - result.getFailedCount(), "server received " + received.size() + " targets");
+			
+			received.clear();
+			result = query.executeBatch(batch.setIsolateFailures(true));
+			check(result.getFailedCount() == 1 && result.getFailedTargets().elementAt(0).equals(FAILING_TARGET), "isolated failures: " + result.getFailedTargets());
+			check(received.size() == TARGETS - 1, "server received " + received.size() + " isolated targets");
+			for (int i = 0; i < TARGETS; i++)
+			{
+				check(result.getTarget(i).equals(Integer.toString(i + 1)), "targets out of order");
+				check(result.isSuccessful(i) == !result.getTarget(i).equals(FAILING_TARGET), "wrong result for target " + result.getTarget(i));
+			}
+			
+			// Multi-byte targets are measured in UTF-8 bytes, a target longer than a line on its own is not sent.
+			String umlauts = "\u00e4\u00f6\u00fc\u00e4\u00f6\u00fc\u00e4\u00f6\u00fc\u00e4";
+			String tooLong = umlauts + umlauts + umlauts + umlauts + umlauts;
+			batch = new BatchCommand("clientpoke", "clid").setParameter("msg", "hello world").setMaxLineLength(100);
+			batch.addTarget(umlauts).addTarget(umlauts).addTarget(tooLong).addTarget(umlauts).addTarget(umlauts).addTarget(umlauts);
+			int[] bounds = batch.split();
+			for (int i = 0; i < bounds.length - 1; i++)
+			{
+				int length = batch.buildCommand(bounds[i], bounds[i + 1]).getBytes("UTF-8").length;
+				check(length <= 100 || (bounds[i + 1] - bounds[i] == 1 && !batch.fits(bounds[i])), "command line has " + length + " bytes");
+			}
+			
+			received.clear();
+			result = query.executeBatch(batch);
+			check(result.getFailedCount() == 1 && result.getFailedTargets().elementAt(0).equals(TS3Codec.encode(tooLong)), "failed targets: " + result.getFailedTargets());
+			check(result.getResult(2).get("id").equals("-1"), "too long target was sent: " + result.getResult(2));
+			check(received.size() == 5 && !received.contains(tooLong), "server received " + received);
+			check(result.getCommandCount() == 3, "sent " + result.getCommandCount() + " commands");
+			
+			query.closeTS3Connection();
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * ClientDBIterator returns every client database entry exactly once and in order, from one connection and from a pool.
+ */
+public class ClientDBIteratorTest
+{
+	private static final int ENTRIES = 1234;
+	
+	public static void main(String[] args) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		server.setClientDBCount(ENTRIES);
+		server.start();
+		try
+		{
+			EJTS3ServerQuery query = new EJTS3ServerQuery();
+			query.connectTS3Query("127.0.0.1", server.getPort());
+			query.selectVirtualServer(1);
+			iterate(query.getClientDBIterator(100, 3), "connection");
+			// More than the server allows per command, the iterator has to continue with smaller pages.
+			iterate(query.getClientDBIterator(500, 2), "large pages");
+			query.closeTS3Connection();
+			
+			QuerySessionPool pool = new QuerySessionPool("127.0.0.1", server.getPort(), null, null, null);
+			try
+			{
+				iterate(pool.getClientDBIterator(1, 77, 4), "pool");
+			}
+			finally
+			{
+				pool.close();
+			}
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+	
+	private static void iterate(ClientDBIterator iterator, String name)
+	{
+		int expected = 1;
+		while (iterator.hasNext())
+		{
+			ClientInfo client = iterator.next();
+			check(client.getDatabaseID() == expected, name + ": got entry " + client.getDatabaseID() + " instead of " + expected);
+			expected++;
+		}
+		
+		check(expected - 1 == ENTRIES, name + ": got " + (expected - 1) + " of " + ENTRIES + " entries");
+		check(iterator.getCount() == ENTRIES, name + ": getCount() is " + iterator.getCount());
+		iterator.close();
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
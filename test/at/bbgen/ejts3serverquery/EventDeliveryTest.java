@@ -0,0 +1,154 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Event listeners may send commands from their callbacks, and events the listeners cannot take anymore are dropped and counted,
+ * with and without ordered delivery.
+ */
+public class EventDeliveryTest
+{
+	private static final int LISTENER_EVENTS = 50;
+	
+	public static void main(String[] args) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		server.start();
+		try
+		{
+			listenerSendsCommands(server);
+			dropsWhenFull(server, false);
+			dropsWhenFull(server, true);
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+	
+	private static void listenerSendsCommands(MockServerQueryServer server) throws Exception
+	{
+		final EJTS3ServerQuery query = connect(server);
+		try
+		{
+			final CountDownLatch answered = new CountDownLatch(LISTENER_EVENTS);
+			final AtomicInteger failed = new AtomicInteger(0);
+			query.addEventListener(TextMessageEvent.class, new TeamspeakEventListener<TextMessageEvent>()
+			{
+				public void eventReceived(TextMessageEvent event)
+				{
+					try
+					{
+						query.doCommand("version");
+					}
+					catch (EJTS3ServerQueryException e)
+					{
+						failed.incrementAndGet();
+					}
+					answered.countDown();
+				}
+			});
+			
+			MockServerQueryServer.Session session = server.getSessions().lastElement();
+			for (int i = 0; i < LISTENER_EVENTS; i++)
+			{
+				session.sendLine("notifytextmessage targetmode=3 msg=hello invokerid=" + i);
+			}
+			
+			check(answered.await(5, TimeUnit.SECONDS), "listeners could not send commands, " + answered.getCount() + " left");
+			check(failed.get() == 0, failed.get() + " commands of listeners failed");
+			check(query.isConnected(), "connection closed");
+		}
+		finally
+		{
+			query.closeTS3Connection();
+		}
+	}
+	
+	private static void dropsWhenFull(MockServerQueryServer server, boolean ordered) throws Exception
+	{
+		final int extraEvents = 25;
+		final int events = EventDispatcher.DEFAULT_QUEUE_SIZE + extraEvents;
+		EJTS3ServerQuery query = connect(server);
+		try
+		{
+			QueryStatistics statistics = new QueryStatistics();
+			query.setStatistics(statistics);
+			
+			// Never runs the callbacks, so all of them stay pending.
+			final Vector<Runnable> parked = new Vector<Runnable>();
+			query.setEventExecutor(new Executor()
+			{
+				public void execute(Runnable task)
+				{
+					parked.addElement(task);
+				}
+			});
+			query.setOrderedEventDelivery(ordered);
+			query.addEventListener(new TeamspeakEventListener<TeamspeakEvent>()
+			{
+				public void eventReceived(TeamspeakEvent event)
+				{
+				}
+			});
+			
+			MockServerQueryServer.Session session = server.getSessions().lastElement();
+			for (int i = 0; i < events; i++)
+			{
+				session.sendLine("notifyclientmoved ctid=1 reasonid=0 clid=" + i);
+			}
+			
+			long deadline = System.currentTimeMillis() + 10000;
+			while (statistics.getEventCount() < events && System.currentTimeMillis() < deadline)
+			{
+				Thread.sleep(10);
+			}
+			
+			check(statistics.getEventCount() == events, "received " + statistics.getEventCount() + " of " + events + " events");
+			check(statistics.getDroppedEventCount() == extraEvents, (ordered ? "ordered: " : "") + "dropped " + statistics.getDroppedEventCount() + " events instead of " + extraEvents);
+			check(query.isConnected(), "connection closed");
+		}
+		finally
+		{
+			query.closeTS3Connection();
+		}
+	}
+	
+	private static EJTS3ServerQuery connect(MockServerQueryServer server) throws EJTS3ServerQueryException
+	{
+		EJTS3ServerQuery query = new EJTS3ServerQuery();
+		query.connectTS3Query("127.0.0.1", server.getPort());
+		query.selectVirtualServer(1);
+		return query;
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
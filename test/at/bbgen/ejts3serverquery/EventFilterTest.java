@@ -0,0 +1,105 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listeners with an EventFilter only get the events of the selected types with the selected values.
+ */
+public class EventFilterTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		EventFilter filter = new EventFilter().addEvent("notifytextmessage", "targetmode=1").addEvent("notifyclientmoved", "ctid=5", "invokerid");
+		check(filter.matches("notifytextmessage targetmode=1 msg=hi"), "matching text message");
+		check(!filter.matches("notifytextmessage targetmode=11 msg=hi"), "prefix of a value matched");
+		check(!filter.matches("notifytextmessage msg=targetmode=1"), "condition matched inside a value");
+		check(!filter.matches("notifytextmessages targetmode=1"), "prefix of an event type matched");
+		check(filter.matches("notifyclientmoved ctid=4 invokerid=1 clid=1|ctid=5 clid=2"), "condition in a later entry");
+		check(!filter.matches("notifyclientmoved ctid=5 clid=2"), "key condition missing");
+		check(new EventFilter().addEvent("notifytextmessage", "msg=a b|c").matches("notifytextmessage msg=a\\sb\\pc"), "escaped condition value");
+		
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		server.start();
+		try
+		{
+			EJTS3ServerQuery query = new EJTS3ServerQuery();
+			query.connectTS3Query("127.0.0.1", server.getPort());
+			query.selectVirtualServer(1);
+			final Vector<String> typed = new Vector<String>();
+			final CountDownLatch typedDone = new CountDownLatch(2);
+			query.addEventListener(TextMessageEvent.class, new TeamspeakEventListener<TextMessageEvent>()
+			{
+				public void eventReceived(TextMessageEvent event)
+				{
+					typed.addElement(event.getMessage());
+					typedDone.countDown();
+				}
+			}, new EventFilter().addEvent("notifytextmessage", "targetmode=1"));
+			
+			final Vector<String> actions = new Vector<String>();
+			final CountDownLatch actionsDone = new CountDownLatch(2);
+			query.setTeamspeakActionListener(new TeamspeakActionListener()
+			{
+				public void teamspeakActionPerformed(String eventType, HashMap<String, String> eventInfo)
+				{
+					actions.addElement(eventType + " " + eventInfo.get("clid"));
+					actionsDone.countDown();
+				}
+			}, new EventFilter().addEvent("notifyclientmoved", "ctid=5"));
+			
+			MockServerQueryServer.Session session = server.getSessions().lastElement();
+			session.sendLine("notifytextmessage targetmode=3 msg=server");
+			session.sendLine("notifytextmessage targetmode=1 msg=private");
+			session.sendLine("notifyclientmoved ctid=4 reasonid=0 clid=1");
+			session.sendLine("notifyclientmoved ctid=5 reasonid=0 clid=2");
+			session.sendLine("notifycliententerview ctid=5 reasonid=0 clid=3");
+			session.sendLine("notifytextmessage targetmode=1 msg=end");
+			session.sendLine("notifyclientmoved ctid=5 reasonid=0 clid=99");
+			
+			check(typedDone.await(5, TimeUnit.SECONDS) && actionsDone.await(5, TimeUnit.SECONDS), "events missing");
+			// Events of different clients may be delivered in any order, and events passing the filter by mistake could still arrive.
+			Thread.sleep(100);
+			Collections.sort(typed);
+			Collections.sort(actions);
+			check(typed.toString().equals("[end, private]"), "typed listener got " + typed);
+			check(actions.toString().equals("[notifyclientmoved 2, notifyclientmoved 99]"), "action listener got " + actions);
+			
+			query.closeTS3Connection();
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
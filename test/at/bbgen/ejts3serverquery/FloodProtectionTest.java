@@ -0,0 +1,90 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Sends more commands than the flood limit of the MockServerQueryServer allows, with the flood protection set to exactly that limit.
+ * The TS3 server must not report flooding (error 524) for any of them.
+ */
+public class FloodProtectionTest
+{
+	private static final int FLOOD_COMMANDS = 10;
+	private static final int FLOOD_SECONDS = 3;
+	private static final int COMMANDS = 30;
+	
+	public static void main(String[] args) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		server.setFloodLimit(FLOOD_COMMANDS, FLOOD_SECONDS);
+		server.start();
+		
+		EJTS3ServerQuery query = new EJTS3ServerQuery();
+		try
+		{
+			query.setPipelining(true);
+			query.connectTS3Query("127.0.0.1", server.getPort());
+			query.setFloodProtection(FLOOD_COMMANDS, FLOOD_SECONDS);
+			query.selectVirtualServer(1);
+			
+			Vector<CompletableFuture<Void>> results = new Vector<CompletableFuture<Void>>();
+			for (int i = 0; i < COMMANDS; i++)
+			{
+				results.addElement(query.sendTextMessageAsync(1, EJTS3ServerQuery.TEXTMESSAGE_TARGET_VIRTUALSERVER, "message " + i));
+			}
+			
+			int floodErrors = 0;
+			for (CompletableFuture<Void> result : results)
+			{
+				try
+				{
+					result.join();
+				}
+				catch (CompletionException e)
+				{
+					if (e.getCause() == null || !String.valueOf(e.getCause().getMessage()).contains("524"))
+					{
+						throw e;
+					}
+					floodErrors++;
+				}
+			}
+			
+			check(floodErrors == 0, floodErrors + " of " + COMMANDS + " commands got error 524");
+			check(query.getFloodErrorCount() == 0, "flood protection counted " + query.getFloodErrorCount() + " flood errors");
+			check(query.getFloodQueueSize() == 0, "commands left in the flood queue");
+		}
+		finally
+		{
+			query.closeTS3Connection();
+			server.stop();
+		}
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+import java.nio.ByteBuffer;
+import java.util.Vector;
+
+/**
+ * LineFramer finds the same lines and entries however the bytes are split into reads, and skipped lines are never decoded.
+ */
+public class LineFramerTest
+{
+	private static final String INPUT = "TS3\n\r"
+			+ "clid=1 client_nickname=J\u00F6rg\\s\u20AC|clid=2 client_nickname=\uD834\uDD1E\n\r"
+			+ "error id=0 msg=ok\n\r"
+			+ "notifytextmessage targetmode=1 msg=a|b\n\r"
+			+ "notifyclientmoved ctid=2 clid=1|clid=2\n\r"
+			+ "version=3.0.0\n\r"
+			+ "error id=0 msg=ok\n\r";
+	
+	/**
+	 * Records the lines, wants the entries of the first response and skips <code>notifytextmessage</code>.
+	 */
+	private static final class RecordingSink implements LineFramer.Sink
+	{
+		final Vector<String> received = new Vector<String>();
+		final Vector<Integer> lineTypes = new Vector<Integer>();
+		private boolean firstResponse = true;
+		
+		public boolean wantsLine(int lineType, byte[] line, int length)
+		{
+			lineTypes.addElement(lineType);
+			if (lineType == LineFramer.LINE_ERROR)
+			{
+				firstResponse = false;
+			}
+			return !new String(line, 0, length, LineFramer.UTF8).startsWith("notifytextmessage");
+		}
+		
+		public void lineReceived(String line)
+		{
+			received.addElement("line " + line);
+		}
+		
+		public boolean wantsEntries()
+		{
+			return firstResponse;
+		}
+		
+		public void entryReceived(String entry)
+		{
+			received.addElement("entry " + entry);
+		}
+	}
+	
+	public static void main(String[] args) throws Exception
+	{
+		byte[] bytes = INPUT.getBytes(LineFramer.UTF8);
+		RecordingSink expected = frame(bytes, bytes.length);
+		
+		Vector<String> lines = new Vector<String>();
+		lines.addElement("line TS3");
+		lines.addElement("entry clid=1 client_nickname=J\u00F6rg\\s\u20AC");
+		lines.addElement("entry clid=2 client_nickname=\uD834\uDD1E");
+		lines.addElement("line error id=0 msg=ok");
+		lines.addElement("line notifyclientmoved ctid=2 clid=1|clid=2");
+		lines.addElement("line version=3.0.0");
+		lines.addElement("line error id=0 msg=ok");
+		check(expected.received.equals(lines), "framed " + expected.received);
+		
+		Vector<Integer> lineTypes = new Vector<Integer>();
+		lineTypes.addElement(LineFramer.LINE_DATA);
+		lineTypes.addElement(LineFramer.LINE_ERROR);
+		lineTypes.addElement(LineFramer.LINE_NOTIFY);
+		lineTypes.addElement(LineFramer.LINE_NOTIFY);
+		lineTypes.addElement(LineFramer.LINE_DATA);
+		lineTypes.addElement(LineFramer.LINE_ERROR);
+		check(expected.lineTypes.equals(lineTypes), "line types " + expected.lineTypes);
+		
+		// Every read size splits lines, escapes and multi-byte characters at other positions.
+		for (int readSize = 1; readSize <= 17; readSize++)
+		{
+			RecordingSink sink = frame(bytes, readSize);
+			check(sink.received.equals(expected.received), "read size " + readSize + " framed " + sink.received);
+		}
+	}
+	
+	private static RecordingSink frame(byte[] bytes, int readSize)
+	{
+		LineFramer framer = new LineFramer();
+		RecordingSink sink = new RecordingSink();
+		for (int pos = 0; pos < bytes.length; pos += readSize)
+		{
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, pos, Math.min(readSize, bytes.length - pos));
+			framer.frame(buffer, sink);
+		}
+		
+		return sink;
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
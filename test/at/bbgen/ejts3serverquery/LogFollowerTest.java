@@ -0,0 +1,207 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * LogFollower requests only new log lines, including repeated lines and bursts of more than 500 lines,
+ * from TS3 servers returning the newest or the oldest lines after a time stamp, and keeps the newest entries in its ring buffer.
+ */
+public class LogFollowerTest
+{
+	/** 2024-01-01 00:00:00 UTC */
+	private static final long START = 1704067200L;
+	
+	/**
+	 * Answers <code>logview</code> like the TS3 server: at most limitcount lines before or after the time stamp, newest first.
+	 */
+	private static final class MockLog implements MockServerQueryServer.CommandHandler
+	{
+		private final boolean newestLines;
+		private final Vector<Long> seconds = new Vector<Long>();
+		private final Vector<String> lines = new Vector<String>();
+		
+		/**
+		 * @param newestLines <code>true</code> to return the newest matching lines, <code>false</code> to return the oldest ones.
+		 */
+		MockLog(boolean newestLines)
+		{
+			this.newestLines = newestLines;
+		}
+		
+		synchronized void add(long second, String message)
+		{
+			seconds.addElement(second);
+			lines.addElement(String.format("2024-01-01 %02d:%02d:%02d.000000|INFO    |VirtualServer |  1| %s",
+					(second - START) / 3600, (second - START) / 60 % 60, (second - START) % 60, message));
+		}
+		
+		public synchronized String handleCommand(MockServerQueryServer.Session session, HashMap<String, String> parameters) throws MockServerQueryServer.CommandException
+		{
+			int limit = QueryEntry.parseInt(parameters.get("limitcount"), 100);
+			String comparator = parameters.get("comparator");
+			long timestamp = QueryEntry.parseLong(parameters.get("timestamp"), -1);
+			
+			Vector<Integer> matching = new Vector<Integer>();
+			for (int i = 0; i < lines.size(); i++)
+			{
+				long second = seconds.elementAt(i);
+				if (comparator == null || (comparator.equals(">") && second > timestamp) || (comparator.equals("<") && second < timestamp))
+				{
+					matching.addElement(i);
+				}
+			}
+			
+			int from = newestLines ? Math.max(0, matching.size() - limit) : 0;
+			int to = newestLines ? matching.size() : Math.min(limit, matching.size());
+			Vector<Map<String, String>> entries = new Vector<Map<String, String>>();
+			for (int i = to - 1; i >= from; i--)
+			{
+				LinkedHashMap<String, String> entry = new LinkedHashMap<String, String>();
+				entry.put("l", lines.elementAt(matching.elementAt(i)));
+				entries.addElement(entry);
+			}
+			
+			if (entries.isEmpty())
+				throw new MockServerQueryServer.CommandException(1281, "database empty result set");
+			return MockServerQueryServer.formatEntries(entries);
+		}
+	}
+	
+	public static void main(String[] args) throws Exception
+	{
+		follow(true);
+		follow(false);
+	}
+	
+	private static void follow(boolean newestLines) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		MockLog log = new MockLog(newestLines);
+		server.setCommandHandler("logview", log);
+		server.start();
+		try
+		{
+			EJTS3ServerQuery query = new EJTS3ServerQuery();
+			query.connectTS3Query("127.0.0.1", server.getPort());
+			String mode = newestLines ? "newest lines: " : "oldest lines: ";
+			
+			LogFollower follower = new LogFollower(query, 4);
+			check(follower.poll().isEmpty(), mode + "entries in an empty log");
+			
+			log.add(START, "first");
+			log.add(START, "second");
+			log.add(START + 1, "third");
+			Vector<LogEntry> entries = follower.poll();
+			checkMessages(mode, entries, "first", "second", "third");
+			check(entries.elementAt(0).getTimestamp() == START * 1000, mode + "wrong time stamp " + entries.elementAt(0).getTimestamp());
+			check(entries.elementAt(0).getLevel().equals("INFO") && entries.elementAt(0).getServerID() == 1, mode + "line not parsed: " + entries.elementAt(0));
+			check(follower.getCursor() == (START + 1) * 1000, mode + "cursor at " + follower.getCursor());
+			
+			log.add(START + 1, "fourth");
+			log.add(START + 2, "fifth");
+			checkMessages(mode, follower.poll(), "fourth", "fifth");
+			checkMessages(mode, follower.poll());
+			
+			check(follower.getLastSequence() == 5, mode + "last sequence is " + follower.getLastSequence());
+			check(follower.size() == 4 && follower.getDroppedCount() == 1, mode + "ring buffer holds " + follower.size() + ", dropped " + follower.getDroppedCount());
+			entries = follower.getEntriesAfter(0);
+			checkMessages(mode, entries, "second", "third", "fourth", "fifth");
+			check(entries.elementAt(0).getSequence() == 2, mode + "oldest sequence is " + entries.elementAt(0).getSequence());
+			checkMessages(mode, follower.getEntriesAfter(4), "fifth");
+			
+			// The same line written several times within a second, received by different polls.
+			log.add(START + 3, "repeated");
+			log.add(START + 3, "repeated");
+			checkMessages(mode, follower.poll(), "repeated", "repeated");
+			log.add(START + 3, "repeated");
+			checkMessages(mode, follower.poll(), "repeated");
+			
+			// More lines than one logview returns, spread over many seconds and continuing the cursor second.
+			int burst = 1234;
+			Vector<String> expected = new Vector<String>();
+			for (int i = 0; i < burst; i++)
+			{
+				log.add(START + 3 + i / 100, "burst " + i);
+				expected.addElement("burst " + i);
+			}
+			checkMessages(mode, follower.poll(), expected.toArray(new String[burst]));
+			check(follower.getGapCount() == 0, mode + "gap reported");
+			
+			// More lines within a single second than one logview returns, the lines out of reach are reported as gap.
+			long second = START + 3 + burst / 100 + 1;
+			expected.clear();
+			for (int i = 0; i < 600; i++)
+			{
+				log.add(second, "flood " + i);
+				if (newestLines ? i >= 100 : i < 500)
+				{
+					expected.addElement("flood " + i);
+				}
+			}
+			checkMessages(mode, follower.poll(), expected.toArray(new String[expected.size()]));
+			check(follower.getGapCount() == 1, mode + "gap count is " + follower.getGapCount());
+			
+			log.add(second + 1, "after flood");
+			checkMessages(mode, follower.poll(), "after flood");
+			checkMessages(mode, follower.poll());
+			check(follower.getGapCount() == 1, mode + "gap count is " + follower.getGapCount());
+			
+			query.closeTS3Connection();
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+	
+	private static void checkMessages(String mode, Vector<LogEntry> entries, String... messages)
+	{
+		Vector<String> received = new Vector<String>();
+		for (LogEntry entry : entries)
+		{
+			received.addElement(entry.getMessage());
+		}
+		
+		Vector<String> expected = new Vector<String>();
+		for (String message : messages)
+		{
+			expected.addElement(message);
+		}
+		
+		if (!received.equals(expected))
+		{
+			String got = (received.size() > 10) ? received.size() + " lines from " + received.firstElement() + " to " + received.lastElement() : received.toString();
+			throw new AssertionError(mode + "got " + got + " instead of " + expected.size() + " lines");
+		}
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
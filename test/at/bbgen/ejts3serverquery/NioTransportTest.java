@@ -0,0 +1,113 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several connections driven by one QueryReactor get their own responses and events.
+ */
+public class NioTransportTest
+{
+	private static final int CONNECTIONS = 5;
+	
+	public static void main(String[] args) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		server.setClientCount(2000);
+		server.start();
+		QueryReactor reactor = new QueryReactor();
+		try
+		{
+			Vector<EJTS3ServerQuery> queries = new Vector<EJTS3ServerQuery>();
+			final CountDownLatch events = new CountDownLatch(CONNECTIONS);
+			for (int i = 0; i < CONNECTIONS; i++)
+			{
+				EJTS3ServerQuery query = new EJTS3ServerQuery();
+				query.connectTS3Query("127.0.0.1", server.getPort(), reactor);
+				query.selectVirtualServer(1);
+				query.addEventListener(TextMessageEvent.class, new TeamspeakEventListener<TextMessageEvent>()
+				{
+					public void eventReceived(TextMessageEvent event)
+					{
+						events.countDown();
+					}
+				});
+				queries.addElement(query);
+			}
+			check(reactor.getConnectionCount() == CONNECTIONS, "reactor has " + reactor.getConnectionCount() + " connections");
+			
+			for (EJTS3ServerQuery query : queries)
+			{
+				check(query.getCurrentQueryClientID() > 0, "no client ID");
+				// Large enough to arrive in many reads.
+				check(query.getClientList(null).size() >= 2000, "client list incomplete");
+			}
+			
+			for (MockServerQueryServer.Session session : server.getSessions())
+			{
+				session.sendLine("notifytextmessage targetmode=3 msg=hello\\sall invokerid=1");
+			}
+			check(events.await(5, TimeUnit.SECONDS), events.getCount() + " connections got no event");
+			
+			for (EJTS3ServerQuery query : queries)
+			{
+				query.closeTS3Connection();
+			}
+			// The reactor thread closes the channels after closeTS3Connection() returned.
+			long deadline = System.currentTimeMillis() + 5000;
+			while (reactor.getConnectionCount() > 0 && System.currentTimeMillis() < deadline)
+			{
+				Thread.sleep(10);
+			}
+			check(reactor.getConnectionCount() == 0, "reactor still has " + reactor.getConnectionCount() + " connections");
+			
+			// A connection which was opened while the reactor stopped is never registered, close() has to close the channel itself.
+			reactor.shutdown();
+			deadline = System.currentTimeMillis() + 5000;
+			while (reactor.isRunning() && System.currentTimeMillis() < deadline)
+			{
+				Thread.sleep(10);
+			}
+			SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getPort()));
+			channel.configureBlocking(false);
+			NioQueryTransport transport = new NioQueryTransport(reactor, channel);
+			transport.close();
+			check(!channel.isOpen(), "channel still open after close()");
+		}
+		finally
+		{
+			reactor.shutdown();
+			server.stop();
+		}
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
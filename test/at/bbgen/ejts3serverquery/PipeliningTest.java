@@ -0,0 +1,116 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * With pipelining, commands of many threads are in flight at once and every thread gets the response of its own command.
+ */
+public class PipeliningTest
+{
+	private static final int THREADS = 8;
+	private static final int COMMANDS = 20;
+	private static final long LATENCY = 5;
+	
+	public static void main(String[] args) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		server.setDefaultLatency(LATENCY);
+		server.start();
+		try
+		{
+			final EJTS3ServerQuery query = new EJTS3ServerQuery();
+			query.connectTS3Query("127.0.0.1", server.getPort());
+			query.selectVirtualServer(1);
+			query.setPipelining(true);
+			check(query.isPipelining(), "pipelining not enabled");
+			
+			final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+			Vector<Thread> threads = new Vector<Thread>();
+			for (int i = 0; i < THREADS; i++)
+			{
+				final int number = i;
+				Thread thread = new Thread(new Runnable()
+				{
+					public void run()
+					{
+						try
+						{
+							for (int j = 0; j < COMMANDS; j++)
+							{
+								if (number % 2 == 0)
+								{
+									HashMap<String, String> response = query.doCommand("version");
+									check(response.get("response").startsWith("version="), "version answered with " + response.get("response"));
+								}
+								else
+								{
+									HashMap<String, String> response = query.doCommand("whoami");
+									check(response.get("response").contains("client_id="), "whoami answered with " + response.get("response"));
+								}
+							}
+						}
+						catch (Throwable e)
+						{
+							failure.compareAndSet(null, e);
+						}
+					}
+				});
+				thread.start();
+				threads.addElement(thread);
+			}
+			
+			int maxPending = 0;
+			for (Thread thread : threads)
+			{
+				while (thread.isAlive())
+				{
+					maxPending = Math.max(maxPending, query.getPendingCommandCount());
+					thread.join(5);
+				}
+			}
+			
+			if (failure.get() != null)
+			{
+				throw new AssertionError("command failed: " + failure.get(), failure.get());
+			}
+			check(query.getPendingCommandCount() == 0, query.getPendingCommandCount() + " commands still pending");
+			// Without pipelining only one command is sent at a time.
+			check(maxPending > 1, "commands were not pipelined");
+			
+			query.closeTS3Connection();
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
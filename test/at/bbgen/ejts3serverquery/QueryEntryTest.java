@@ -0,0 +1,89 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * Parsed entries return the same values with and without the hashed index, and copies still replace existing keys.
+ */
+public class QueryEntryTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		for (int fields : new int[] {1, 8, 9, 40})
+		{
+			lookup(fields);
+		}
+		
+		ClientInfo duplicate = TS3Codec.parseLine("clid=1 cid=2 cid=3", ClientInfo.ROWS);
+		check("3".equals(duplicate.get("cid")), "last duplicate key does not win in a small row");
+		check("3".equals(duplicate.toHashMap().get("cid")), "toHashMap() does not keep the last duplicate key");
+		
+		StringBuilder line = new StringBuilder("clid=1 cid=2");
+		for (int i = 0; i < 20; i++)
+		{
+			line.append(" key").append(i).append("=").append(i);
+		}
+		line.append(" cid=3");
+		check("3".equals(TS3Codec.parseLine(line.toString(), ClientInfo.ROWS).get("cid")), "last duplicate key does not win in a large row");
+		
+		for (int fields : new int[] {2, 20})
+		{
+			ClientInfo client = TS3Codec.parseLine(row(fields), ClientInfo.ROWS);
+			ClientInfo copy = new ClientInfo();
+			client.copyFieldsTo(copy);
+			copy.addField("key1", "changed");
+			copy.addField("cid", "7");
+			check(copy.size() == fields + 1, fields + " fields: copy has " + copy.size() + " fields");
+			check("changed".equals(copy.get("key1")), fields + " fields: addField() did not replace the value");
+			check("7".equals(copy.get("cid")) && copy.getChannelID() == 7, fields + " fields: addField() did not add the key");
+		}
+	}
+	
+	private static void lookup(int fields)
+	{
+		ClientInfo client = TS3Codec.parseLine(row(fields), ClientInfo.ROWS);
+		check(client.size() == fields, fields + " fields: size() is " + client.size());
+		for (int i = 0; i < fields; i++)
+		{
+			check(Integer.toString(i).equals(client.get("key" + i)), fields + " fields: wrong value of key" + i);
+			check(client.containsKey("key" + i), fields + " fields: key" + i + " missing");
+		}
+		check(client.get("missing") == null && !client.containsKey("missing"), fields + " fields: found a missing key");
+	}
+	
+	private static String row(int fields)
+	{
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < fields; i++)
+		{
+			line.append(i == 0 ? "" : " ").append("key").append(i).append("=").append(i);
+		}
+		
+		return line.toString();
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The pool hands out connections already on the requested virtual server, reuses them and never opens more than allowed.
+ */
+public class QuerySessionPoolTest
+{
+	private static final int MAX_SESSIONS = 3;
+	private static final int THREADS = 10;
+	
+	public static void main(String[] args) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		server.setServerCount(2);
+		server.setLatency("version", 5);
+		server.start();
+		final QuerySessionPool pool = new QuerySessionPool("127.0.0.1", server.getPort(), null, null, null);
+		try
+		{
+			pool.setMaxSessions(MAX_SESSIONS);
+			
+			EJTS3ServerQuery first = pool.acquire(2);
+			check(first.getCurrentQueryClientServerID() == 2, "connection not on virtual server 2");
+			pool.release(first);
+			check(pool.acquire(2) == first, "idle connection not reused");
+			pool.release(first);
+			
+			final AtomicInteger inUse = new AtomicInteger(0);
+			final AtomicInteger maxInUse = new AtomicInteger(0);
+			final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+			Vector<Thread> threads = new Vector<Thread>();
+			for (int i = 0; i < THREADS; i++)
+			{
+				final int serverID = 1 + i % 2;
+				Thread thread = new Thread(new Runnable()
+				{
+					public void run()
+					{
+						try
+						{
+							for (int j = 0; j < 10; j++)
+							{
+								pool.execute(serverID, new QuerySessionPool.SessionCallback<Void>()
+								{
+									public Void execute(EJTS3ServerQuery query) throws EJTS3ServerQueryException
+									{
+										int current = inUse.incrementAndGet();
+										maxInUse.accumulateAndGet(current, Math::max);
+										check(query.getCurrentQueryClientServerID() == serverID, "connection on wrong virtual server");
+										query.doCommand("version");
+										inUse.decrementAndGet();
+										return null;
+									}
+								});
+							}
+						}
+						catch (Throwable e)
+						{
+							failure.compareAndSet(null, e);
+						}
+					}
+				});
+				thread.start();
+				threads.addElement(thread);
+			}
+			for (Thread thread : threads)
+			{
+				thread.join(30000);
+			}
+			
+			if (failure.get() != null)
+			{
+				throw new AssertionError("pool failed: " + failure.get(), failure.get());
+			}
+			check(maxInUse.get() <= MAX_SESSIONS, maxInUse.get() + " connections used at once");
+			check(pool.getSessionCount() <= MAX_SESSIONS, pool.getSessionCount() + " connections opened");
+			check(pool.getIdleSessionCount() == pool.getSessionCount(), "connections not returned");
+		}
+		finally
+		{
+			pool.close();
+			server.stop();
+		}
+		check(pool.getSessionCount() == 0, "connections still open after close()");
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * ResponseCache only asks for the notify lines which remove cached responses, and removes them.
+ */
+public class ResponseCacheTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		ResponseCache cache = new ResponseCache(100);
+		check(!wants(cache, "notifyclientmoved ctid=2 reasonid=0 clid=5"), "event wanted by an empty cache");
+		
+		cache.put(1, "clientlist", "clid=5 cid=1");
+		cache.put(1, "servergrouplist", "sgid=6 name=Server\\sAdmin");
+		check(cache.size() == 2, "cache holds " + cache.size() + " responses");
+		check(!wants(cache, "notifytextmessage targetmode=3 msg=hello invokerid=5"), "text message wanted");
+		check(!wants(cache, "notifyclientmovedx ctid=2"), "unknown event wanted");
+		check(wants(cache, "notifyclientmoved ctid=2 reasonid=0 clid=5"), "client move not wanted");
+		check(wants(cache, "notifyserveredited"), "event without parameters not wanted");
+		
+		cache.addInvalidation("notifytextmessage", "servergrouplist");
+		check(wants(cache, "notifytextmessage targetmode=3 msg=hello invokerid=5"), "added invalidation not wanted");
+		
+		cache.eventReceived(1, "notifyclientmoved ctid=2 reasonid=0 clid=5");
+		check(cache.get(1, "clientlist") == null, "client list not removed");
+		check(cache.get(1, "servergrouplist") != null, "server group list removed");
+		check(cache.getInvalidationCount() == 1, "invalidated " + cache.getInvalidationCount() + " responses");
+	}
+	
+	private static boolean wants(ResponseCache cache, String actionLine)
+	{
+		byte[] line = actionLine.getBytes(LineFramer.UTF8);
+		return cache.wantsEvent(line, line.length);
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+/**
+ * The server mirror follows the events of its virtual server and the connection cannot leave this virtual server while the mirror runs.
+ */
+public class ServerMirrorTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		server.setServerCount(2);
+		server.setClientCount(10);
+		server.setChannelCount(5);
+		server.start();
+		try
+		{
+			EJTS3ServerQuery query = new EJTS3ServerQuery();
+			query.connectTS3Query("127.0.0.1", server.getPort());
+			query.selectVirtualServer(1);
+			VirtualServerMirror mirror = query.startServerMirror();
+			check(mirror.isSeeded() && mirror.getServerID() == 1, "mirror not seeded");
+			int clients = mirror.getClientCount();
+			check(clients >= 10 && mirror.getChannels().size() == 5, "mirror has " + clients + " clients and " + mirror.getChannels().size() + " channels");
+			
+			refused(query, 2, false);
+			refused(query, 9988, true);
+			query.selectVirtualServer(1);
+			check(query.getCurrentQueryClientServerID() == 1, "virtual server changed");
+			
+			MockServerQueryServer.Session session = server.getSessions().lastElement();
+			session.sendLine("notifycliententerview cfid=0 ctid=3 reasonid=0 clid=100 client_nickname=A|clid=101 client_nickname=B");
+			session.sendLine("notifycliententerview cfid=0 reasonid=0 clid=102 client_nickname=C");
+			session.sendLine("notifyclientmoved ctid=4 reasonid=0 clid=100|clid=101");
+			// The response is read after the events, so the reader has applied them.
+			query.doCommand("version");
+			
+			check(mirror.getClientCount() == clients + 2, "mirror has " + mirror.getClientCount() + " clients instead of " + (clients + 2));
+			check(mirror.getClient(102) == null && mirror.getClientCount(-1) == 0, "client without channel added");
+			check(mirror.getClient(101).getChannelID() == 4 && mirror.getClient(101).get("client_nickname").equals("B"), "second client: " + mirror.getClient(101));
+			check(mirror.getClientsInChannel(4).size() == 2 + countIn(mirror, 4), "channel 4 has " + mirror.getClientsInChannel(4).size() + " clients");
+			check(mirror.getClientCount(3) == countIn(mirror, 3), "clients left in channel 3");
+			
+			query.stopServerMirror();
+			query.selectVirtualServer(2);
+			check(query.getCurrentQueryClientServerID() == 2, "virtual server not changed after the mirror was stopped");
+			
+			query.closeTS3Connection();
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+	
+	private static void refused(EJTS3ServerQuery query, int server, boolean selectPort)
+	{
+		try
+		{
+			query.selectVirtualServer(server, selectPort);
+			throw new AssertionError("selected virtual server " + server + " while the mirror runs");
+		}
+		catch (EJTS3ServerQueryException e)
+		{
+			check(e.getMessage().contains("stopServerMirror()"), "unexpected exception " + e);
+		}
+	}
+	
+	/**
+	 * @return The number of clients of the seeded list in the channel.
+	 */
+	private static int countIn(VirtualServerMirror mirror, int channelID)
+	{
+		int count = 0;
+		for (ClientInfo client : mirror.getClients())
+		{
+			if ((client.getClientID() < 100 || client.getClientID() > 102) && client.getChannelID() == channelID)
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
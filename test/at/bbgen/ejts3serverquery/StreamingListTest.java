@@ -0,0 +1,95 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * getList() with a ListEntryHandler passes the same entries in the same order as the collecting getList().
+ */
+public class StreamingListTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		server.setClientDBCount(150);
+		server.setClientCount(3000);
+		server.start();
+		try
+		{
+			EJTS3ServerQuery query = new EJTS3ServerQuery();
+			query.connectTS3Query("127.0.0.1", server.getPort());
+			query.selectVirtualServer(1);
+			
+			compare(query, EJTS3ServerQuery.LISTMODE_CLIENTLIST, "-uid,-away");
+			compare(query, EJTS3ServerQuery.LISTMODE_CLIENTDBLIST, "start=0,duration=150");
+			
+			// The connection is still usable after a handler failed.
+			try
+			{
+				query.getList(EJTS3ServerQuery.LISTMODE_CLIENTLIST, null, new ListEntryHandler()
+				{
+					public void listEntryReceived(HashMap<String, String> entry)
+					{
+						throw new IllegalStateException("handler failure");
+					}
+				});
+				throw new AssertionError("failing handler not reported");
+			}
+			catch (EJTS3ServerQueryException e)
+			{
+				check(e.getMessage().contains("handler failure"), "unexpected exception " + e);
+			}
+			check(query.doCommand("version").get("id").equals("0"), "connection unusable after handler failure");
+			
+			query.closeTS3Connection();
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+	
+	private static void compare(EJTS3ServerQuery query, int listMode, String arguments) throws EJTS3ServerQueryException
+	{
+		Vector<HashMap<String, String>> expected = query.getList(listMode, arguments);
+		final Vector<HashMap<String, String>> streamed = new Vector<HashMap<String, String>>();
+		int count = query.getList(listMode, arguments, new ListEntryHandler()
+		{
+			public void listEntryReceived(HashMap<String, String> entry)
+			{
+				streamed.addElement(entry);
+			}
+		});
+		
+		check(expected.size() > 100, "list " + listMode + " too small");
+		check(count == streamed.size(), "returned " + count + " but passed " + streamed.size() + " entries");
+		check(expected.equals(streamed), "list " + listMode + " differs when streamed");
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}
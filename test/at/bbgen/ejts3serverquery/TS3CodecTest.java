@@ -0,0 +1,189 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+/**
+ * TS3Codec returns the same results as the String replace based escaping and StringTokenizer based parsing of version 1.1.
+ */
+public class TS3CodecTest
+{
+	private static final String BELL = Character.toString((char)7);
+	private static final String VTAB = Character.toString((char)11);
+	
+	/** Escaped values, decoded by both implementations. */
+	private static final String[] ESCAPED = {
+		"",
+		"plain",
+		"a\\sb",
+		"a\\pb",
+		"http:\\/\\/example.com\\/",
+		"back\\\\slash",
+		"\\\\s",
+		"\\\\\\n",
+		"line\\nbreak\\r\\n",
+		"tab\\there",
+		"\\b\\f\\a\\v",
+		"unknown\\x\\q\\S",
+		"trailing\\",
+		"\\",
+		"\\\\",
+		"\\\\\\",
+		"gr\u00FC\\s\u00DFe\\p\u20AC\\s\uD834\uDD1E\\s",
+		"\\\u00E4",
+	};
+	
+	/** Unescaped values, encoded by both implementations. */
+	private static final String[] UNESCAPED = {
+		"",
+		"plain",
+		"a b|c/d\\e",
+		"\n\r\t\b\f" + BELL + VTAB,
+		"\\s",
+		"gr\u00FC\u00DFe \u20AC|\uD834\uDD1E",
+	};
+	
+	/** Raw responses, parsed by both implementations. */
+	private static final String[] RESPONSES = {
+		"",
+		"id=0 msg=ok",
+		"clid=1 client_nickname=a\\sb|clid=2 client_nickname=c\\pd",
+		"a=1||b=2",
+		"|a=1|",
+		"a=1| |b=2",
+		"key_without_value other=1",
+		"empty= other=\\s",
+		"=value",
+		"url=http:\\/\\/x\\/?a=b",
+		"msg=unknown\\xescape end=trailing\\",
+		"  spaces=1   between=2  ",
+		"client_nickname=gr\u00FC\\s\u00DFe channel_name=\u20AC\uD834\uDD1E\\p\u00E4",
+	};
+	
+	public static void main(String[] args) throws Exception
+	{
+		for (String value : ESCAPED)
+		{
+			check(oldDecode(value).equals(TS3Codec.decode(value)), "decode", value, oldDecode(value), TS3Codec.decode(value));
+		}
+		
+		for (String value : UNESCAPED)
+		{
+			check(oldEncode(value).equals(TS3Codec.encode(value)), "encode", value, oldEncode(value), TS3Codec.encode(value));
+			check(value.equals(TS3Codec.decode(TS3Codec.encode(value))), "round trip", value, value, TS3Codec.decode(TS3Codec.encode(value)));
+		}
+		
+		for (String response : RESPONSES)
+		{
+			check(oldParseRawData(response).equals(TS3Codec.parseRows(response)), "parseRows", response, oldParseRawData(response), TS3Codec.parseRows(response));
+			check(equalsOrBothNull(oldParseLine(response), TS3Codec.parseLine(response)), "parseLine", response, oldParseLine(response), TS3Codec.parseLine(response));
+		}
+		check(TS3Codec.parseRows(null) == null, "parseRows", null, null, TS3Codec.parseRows(null));
+	}
+	
+	private static boolean equalsOrBothNull(Object expected, Object actual)
+	{
+		return (expected == null) ? (actual == null) : expected.equals(actual);
+	}
+	
+	private static void check(boolean condition, String method, String input, Object expected, Object actual)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(method + "(" + input + "): expected <" + expected + "> but was <" + actual + ">");
+		}
+	}
+	
+	// The implementation of version 1.1, kept as reference.
+	
+	private static String oldEncode(String str)
+	{
+		str = str.replace("\\", "\\\\");
+		str = str.replace(" ", "\\s");
+		str = str.replace("/", "\\/");
+		str = str.replace("|", "\\p");
+		str = str.replace("\b", "\\b");
+		str = str.replace("\f", "\\f");
+		str = str.replace("\n", "\\n");
+		str = str.replace("\r", "\\r");
+		str = str.replace("\t", "\\t");
+		str = str.replace(BELL, "\\a");
+		str = str.replace(VTAB, "\\v");
+		return str;
+	}
+	
+	private static String oldDecode(String str)
+	{
+		str = str.replace("\\\\", "\\[$mksave]");
+		str = str.replace("\\s", " ");
+		str = str.replace("\\/", "/");
+		str = str.replace("\\p", "|");
+		str = str.replace("\\b", "\b");
+		str = str.replace("\\f", "\f");
+		str = str.replace("\\n", "\n");
+		str = str.replace("\\r", "\r");
+		str = str.replace("\\t", "\t");
+		str = str.replace("\\a", BELL);
+		str = str.replace("\\v", VTAB);
+		str = str.replace("\\[$mksave]", "\\");
+		return str;
+	}
+	
+	private static Vector<HashMap<String, String>> oldParseRawData(String rawData)
+	{
+		Vector<HashMap<String, String>> formattedData = new Vector<HashMap<String, String>>();
+		StringTokenizer stEntries = new StringTokenizer(rawData, "|", false);
+		while (stEntries.hasMoreTokens())
+		{
+			formattedData.addElement(oldParseLine(stEntries.nextToken()));
+		}
+		
+		return formattedData;
+	}
+	
+	private static HashMap<String, String> oldParseLine(String line)
+	{
+		if (line == null || line.length() == 0)
+		{
+			return null;
+		}
+		
+		StringTokenizer st = new StringTokenizer(line, " ", false);
+		HashMap<String, String> retValue = new HashMap<String, String>();
+		while (st.hasMoreTokens())
+		{
+			String temp = st.nextToken();
+			int pos = temp.indexOf("=");
+			if (pos == -1)
+			{
+				retValue.put(temp, "");
+			}
+			else
+			{
+				retValue.put(temp.substring(0, pos), oldDecode(temp.substring(pos + 1)));
+			}
+		}
+		
+		return retValue;
+	}
+}
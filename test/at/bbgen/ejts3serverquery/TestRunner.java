@@ -0,0 +1,70 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package at.bbgen.ejts3serverquery;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * Runs the main() method of every class ending with <code>Test</code> in a class directory.<br>
+ * A test fails by throwing any exception or error from main(). The runner exits with status 1 if any test failed.
+ */
+public class TestRunner
+{
+	public static void main(String[] args) throws Exception
+	{
+		File directory = new File(args[0]);
+		String packageName = TestRunner.class.getPackage().getName();
+		String[] files = new File(directory, packageName.replace('.', File.separatorChar)).list();
+		Arrays.sort(files);
+		
+		Vector<String> failed = new Vector<String>();
+		int count = 0;
+		for (String file : files)
+		{
+			if (!file.endsWith("Test.class") || file.indexOf('$') != -1)
+			{
+				continue;
+			}
+			
+			String className = packageName + "." + file.substring(0, file.length() - 6);
+			count++;
+			long start = System.currentTimeMillis();
+			try
+			{
+				Class.forName(className).getMethod("main", String[].class).invoke(null, (Object)new String[0]);
+				System.out.println("PASSED " + className + " (" + (System.currentTimeMillis() - start) + " ms)");
+			}
+			catch (InvocationTargetException e)
+			{
+				System.out.println("FAILED " + className + ": " + e.getCause());
+				e.getCause().printStackTrace(System.out);
+				failed.addElement(className);
+			}
+		}
+		
+		System.out.println(count + " tests, " + failed.size() + " failed");
+		if (!failed.isEmpty())
+		{
+			System.exit(1);
+		}
+	}
+}
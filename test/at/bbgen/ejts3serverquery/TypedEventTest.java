@@ -0,0 +1,197 @@
+/*
+ *  This file is part of EJTS3ServerQuery.
+ *
+ *  EJTS3ServerQuery is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  EJTS3ServerQuery is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with EJTS3ServerQuery.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package at.bbgen.ejts3serverquery;
+
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events are parsed once into typed objects, shared by all listeners and split into one event per entry.
+ * The events stay registered while any listener needs them.
+ */
+public class TypedEventTest
+{
+	private static final int EVENTS = 8;
+	
+	public static void main(String[] args) throws Exception
+	{
+		MockServerQueryServer server = new MockServerQueryServer(0);
+		server.start();
+		try
+		{
+			EJTS3ServerQuery query = new EJTS3ServerQuery();
+			query.connectTS3Query("127.0.0.1", server.getPort());
+			query.selectVirtualServer(1);
+			query.setOrderedEventDelivery(true);
+			
+			// Only the events of the same client are delivered in order, so the events are looked up by their values.
+			final Vector<TeamspeakEvent> all = new Vector<TeamspeakEvent>();
+			final CountDownLatch done = new CountDownLatch(EVENTS);
+			query.addEventListener(new TeamspeakEventListener<TeamspeakEvent>()
+			{
+				public void eventReceived(TeamspeakEvent event)
+				{
+					all.addElement(event);
+					done.countDown();
+				}
+			});
+			
+			final Vector<ClientEnterEvent> enters = new Vector<ClientEnterEvent>();
+			query.addEventListener(ClientEnterEvent.class, new TeamspeakEventListener<ClientEnterEvent>()
+			{
+				public void eventReceived(ClientEnterEvent event)
+				{
+					enters.addElement(event);
+				}
+			});
+			
+			final Vector<ClientMoveEvent> moves = new Vector<ClientMoveEvent>();
+			TeamspeakEventListener<ClientMoveEvent> moveListener = new TeamspeakEventListener<ClientMoveEvent>()
+			{
+				public void eventReceived(ClientMoveEvent event)
+				{
+					moves.addElement(event);
+				}
+			};
+			query.addEventListener(ClientMoveEvent.class, moveListener);
+			
+			MockServerQueryServer.Session session = server.getSessions().lastElement();
+			session.sendLine("notifycliententerview cfid=0 ctid=7 reasonid=0 clid=10 client_nickname=First\\sClient client_database_id=3 client_type=0"
+					+ "|clid=11 client_nickname=Second client_database_id=4 client_type=0");
+			session.sendLine("notifyclientmoved ctid=8 reasonid=1 invokerid=10 invokername=First clid=10|clid=11|clid=12");
+			session.sendLine("notifyclientleftview cfid=8 ctid=0 reasonid=8 reasonmsg=bye clid=12");
+			session.sendLine("notifychanneledited cid=8 reasonid=10 channel_name=Lobby");
+			session.sendLine("notifytextmessage targetmode=3 msg=done invokerid=10");
+			check(done.await(5, TimeUnit.SECONDS), "events missing");
+			
+			check(all.size() == EVENTS, "got " + all.size() + " events: " + all);
+			check(enters.size() == 2, "got " + enters.size() + " enter events");
+			check(all.contains(enters.elementAt(0)) && all.contains(enters.elementAt(1)), "listeners got different event objects");
+			for (ClientEnterEvent enter : enters)
+			{
+				check(enter.getChannelID() == 7 && enter.getDatabaseID() == enter.getClientID() - 7, "enter event " + enter);
+				check(enter.getNickname().equals(enter.getClientID() == 10 ? "First Client" : "Second"), "enter event " + enter);
+			}
+			
+			check(moves.size() == 3, "got " + moves.size() + " move events");
+			int clientIDs = 0;
+			for (ClientMoveEvent move : moves)
+			{
+				check(move.getChannelID() == 8 && move.getInvokerID() == 10 && move.getReasonID() == 1, "move event " + move);
+				clientIDs |= 1 << (move.getClientID() - 10);
+			}
+			check(clientIDs == 7, "move events for the wrong clients: " + moves);
+			
+			ClientLeaveEvent leave = find(all, ClientLeaveEvent.class);
+			check(leave.getClientID() == 12 && leave.getFromChannelID() == 8 && leave.getReasonMessage().equals("bye"), "leave event " + leave);
+			ChannelEvent channel = find(all, ChannelEvent.class);
+			check(channel.getChannelID() == 8 && channel.getName().equals("Lobby") && channel.getEventType().equals("notifychanneledited"), "channel event " + channel);
+			check(find(all, TextMessageEvent.class).getMessage().equals("done"), "text message event " + find(all, TextMessageEvent.class));
+			
+			check(query.removeEventListener(moveListener), "listener not removed");
+			final CountDownLatch second = new CountDownLatch(1);
+			query.addEventListener(TextMessageEvent.class, new TeamspeakEventListener<TextMessageEvent>()
+			{
+				public void eventReceived(TextMessageEvent event)
+				{
+					second.countDown();
+				}
+			});
+			session.sendLine("notifyclientmoved ctid=9 reasonid=0 clid=10");
+			session.sendLine("notifytextmessage targetmode=3 msg=again invokerid=10");
+			check(second.await(5, TimeUnit.SECONDS), "events after removing a listener missing");
+			check(moves.size() == 3, "removed listener still gets events");
+			
+			query.closeTS3Connection();
+			
+			removeActionListener(server);
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+	
+	/**
+	 * Removing the TeamspeakActionListener unregisters the events only if no other listener needs them.
+	 */
+	private static void removeActionListener(MockServerQueryServer server) throws Exception
+	{
+		EJTS3ServerQuery query = new EJTS3ServerQuery();
+		query.connectTS3Query("127.0.0.1", server.getPort());
+		query.selectVirtualServer(1);
+		MockServerQueryServer.Session session = server.getSessions().lastElement();
+		
+		TeamspeakActionListener actionListener = new TeamspeakActionListener()
+		{
+			public void teamspeakActionPerformed(String eventType, HashMap<String, String> eventInfo)
+			{
+			}
+		};
+		TeamspeakEventListener<TeamspeakEvent> eventListener = new TeamspeakEventListener<TeamspeakEvent>()
+		{
+			public void eventReceived(TeamspeakEvent event)
+			{
+			}
+		};
+		
+		query.setTeamspeakActionListener(actionListener);
+		query.addEventListener(eventListener);
+		query.addEventNotify(EJTS3ServerQuery.EVENT_MODE_SERVER, 0);
+		query.removeTeamspeakActionListener();
+		check(!session.getRegisteredEvents().isEmpty(), "events unregistered while an event listener needs them");
+		
+		query.removeEventListener(eventListener);
+		query.startServerMirror();
+		query.setTeamspeakActionListener(actionListener);
+		query.removeTeamspeakActionListener();
+		check(!session.getRegisteredEvents().isEmpty(), "events unregistered while the server mirror needs them");
+		
+		query.stopServerMirror();
+		query.setTeamspeakActionListener(actionListener);
+		query.removeTeamspeakActionListener();
+		check(session.getRegisteredEvents().isEmpty(), "events still registered without listeners");
+		
+		query.closeTS3Connection();
+	}
+	
+	private static <T extends TeamspeakEvent> T find(Vector<TeamspeakEvent> events, Class<T> eventClass)
+	{
+		for (TeamspeakEvent event : events)
+		{
+			if (eventClass.isInstance(event))
+			{
+				return eventClass.cast(event);
+			}
+		}
+		
+		throw new AssertionError("no " + eventClass.getSimpleName() + " in " + events);
+	}
+	
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+}